@@ -0,0 +1,140 @@
+package cg.sijit.escpos;
+
+import android.Manifest;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.ParcelUuid;
+import android.util.Log;
+
+import androidx.annotation.RequiresPermission;
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Cache des imprimantes Bluetooth appairées.
+ *
+ * La liste des appareils appairés n'est lue qu'une fois ; elle est ensuite
+ * tenue à jour par les broadcasts d'appairage (ACTION_BOND_STATE_CHANGED) et
+ * vidée quand le Bluetooth est coupé.
+ */
+public class BluetoothDeviceRegistry {
+    private static final String TAG = "BluetoothRegistry";
+
+    private final Context context;
+    private final BluetoothAdapter adapter;
+    private final DeviceRegistry<BluetoothDevice> registry = new DeviceRegistry<>();
+    private boolean receiverRegistered = false;
+
+    private final BroadcastReceiver bondReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (BluetoothAdapter.ACTION_STATE_CHANGED.equals(action)) {
+                if (intent.getIntExtra(BluetoothAdapter.EXTRA_STATE, -1) == BluetoothAdapter.STATE_OFF) {
+                    registry.clear();
+                }
+                return;
+            }
+            if (!BluetoothDevice.ACTION_BOND_STATE_CHANGED.equals(action)) return;
+            BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+            if (device == null) return;
+            int state = intent.getIntExtra(BluetoothDevice.EXTRA_BOND_STATE, BluetoothDevice.BOND_NONE);
+            if (state == BluetoothDevice.BOND_BONDED) {
+                try {
+                    registry.put(device.getAddress(), device.getName(), device);
+                } catch (SecurityException e) {
+                    Log.w(TAG, "Pas de permission BLUETOOTH_CONNECT pour lire le nom", e);
+                }
+            } else if (state == BluetoothDevice.BOND_NONE) {
+                registry.remove(device.getAddress());
+            }
+        }
+    };
+
+    public BluetoothDeviceRegistry(Context context, BluetoothAdapter adapter) {
+        this.context = context;
+        this.adapter = adapter;
+    }
+
+    public synchronized void register() {
+        if (receiverRegistered) return;
+        IntentFilter filter = new IntentFilter(BluetoothDevice.ACTION_BOND_STATE_CHANGED);
+        filter.addAction(BluetoothAdapter.ACTION_STATE_CHANGED);
+        ContextCompat.registerReceiver(context, bondReceiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+        receiverRegistered = true;
+    }
+
+    public synchronized void unregister() {
+        if (!receiverRegistered) return;
+        try {
+            context.unregisterReceiver(bondReceiver);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "bondReceiver déjà désenregistré");
+        }
+        receiverRegistered = false;
+    }
+
+    /**
+     * Trouver l'imprimante par adresse MAC (sans lecture de la liste) ou par nom
+     */
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    public DeviceRegistry.Entry<BluetoothDevice> find(String address, String name) throws Exception {
+        if (address != null) {
+            DeviceRegistry.Entry<BluetoothDevice> entry = registry.get(address);
+            if (entry != null) return entry;
+            String normalized = DeviceRegistry.normalizeAddress(address);
+            if (!BluetoothAdapter.checkBluetoothAddress(normalized)) {
+                throw new Exception("Adresse Bluetooth invalide : " + address);
+            }
+            BluetoothDevice device = adapter.getRemoteDevice(normalized);
+            registry.put(normalized, device.getName(), device);
+            return registry.get(normalized);
+        }
+
+        if (!registry.isLoaded()) reload();
+        List<DeviceRegistry.Entry<BluetoothDevice>> matches = registry.findByName(name);
+        if (matches.isEmpty()) {
+            // Imprimante renommée ou appairée avant l'enregistrement du receiver
+            reload();
+            matches = registry.findByName(name);
+        }
+        if (matches.isEmpty()) throw new Exception("Imprimante non trouvée : " + name);
+        if (matches.size() > 1) {
+            throw new Exception("Plusieurs imprimantes nommées " + name + " : utiliser l'adresse");
+        }
+        return matches.get(0);
+    }
+
+    /**
+     * UUID à essayer : le dernier qui a fonctionné, le profil SPP, puis ceux annoncés par l'appareil
+     */
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    public List<UUID> uuidCandidates(BluetoothDevice device) {
+        List<UUID> candidates = new ArrayList<>();
+        candidates.add(BluetoothTransport.SPP_UUID);
+        ParcelUuid[] advertised = device.getUuids();
+        if (advertised != null) {
+            for (ParcelUuid uuid : advertised) candidates.add(uuid.getUuid());
+        }
+        return registry.uuidCandidates(device.getAddress(), candidates.toArray(new UUID[0]));
+    }
+
+    public void markConnected(String address, UUID uuid) {
+        registry.markConnected(address, uuid);
+    }
+
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    private void reload() {
+        for (BluetoothDevice device : adapter.getBondedDevices()) {
+            registry.put(device.getAddress(), device.getName(), device);
+        }
+        registry.setLoaded(true);
+    }
+}
@@ -0,0 +1,190 @@
+package cg.sijit.escpos;
+
+import android.Manifest;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import android.util.Log;
+
+import androidx.annotation.RequiresPermission;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Transport Bluetooth RFCOMM (profil SPP).
+ *
+ * Les écritures sont cadencées par un {@link WritePacer} pour ne pas saturer
+ * le buffer de réception des petites imprimantes thermiques.
+ */
+public class BluetoothTransport implements PrinterTransport {
+    private static final String TAG = "BluetoothTransport";
+
+    public static final UUID SPP_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+    // GS r 1 : état du capteur papier, renvoyé une fois les données précédentes traitées
+    private static final byte[] DRAIN_QUERY = { 0x1D, 0x72, 0x01 };
+    private static final int DRAIN_POLL_MS = 10;
+
+    private final BluetoothSocket socket;
+    private final OutputStream outputStream;
+    private final InputStream inputStream;
+    private final WritePacer pacer;
+    private final TransportStats stats = new TransportStats();
+    private volatile boolean connected;
+    private boolean drainSupported = true;
+    // Octets reçus pendant l'attente de GS r (trames ASB...), rendus par read()
+    private byte[] kept = new byte[16];
+    private int keptLength = 0;
+
+    private BluetoothTransport(BluetoothSocket socket, WritePacer.Options options) throws IOException {
+        this.socket = socket;
+        this.outputStream = socket.getOutputStream();
+        this.inputStream = socket.getInputStream();
+        this.pacer = new WritePacer(options);
+        this.connected = true;
+    }
+
+    /**
+     * Ouvrir une connexion RFCOMM vers l'appareil
+     */
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    public static BluetoothTransport open(BluetoothDevice device) throws IOException {
+        return open(device, new WritePacer.Options());
+    }
+
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    public static BluetoothTransport open(BluetoothDevice device, WritePacer.Options options) throws IOException {
+        return open(device, SPP_UUID, options);
+    }
+
+    /**
+     * Ouvrir une connexion RFCOMM sur un UUID de service précis
+     */
+    @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
+    public static BluetoothTransport open(BluetoothDevice device, UUID uuid, WritePacer.Options options) throws IOException {
+        BluetoothSocket socket = device.createRfcommSocketToServiceRecord(uuid);
+        try {
+            socket.connect();
+            return new BluetoothTransport(socket, options);
+        } catch (IOException e) {
+            try { socket.close(); } catch (IOException ignore) {}
+            throw e;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "bluetooth";
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected && socket.isConnected();
+    }
+
+    @Override
+    public void write(byte[] data, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        int end = off + len;
+        int chunkSize = pacer.chunkSize();
+        for (int pos = off; pos < end; pos += chunkSize) {
+            if (pos > off) pacer.pause();
+            long chunkStart = System.nanoTime();
+            int chunk = Math.min(chunkSize, end - pos);
+            outputStream.write(data, pos, chunk);
+            outputStream.flush();
+            long nanos = System.nanoTime() - chunkStart;
+            pacer.onChunkWritten(nanos);
+            stats.recordChunk(chunk, nanos);
+        }
+        if (pacer.getOptions().waitForDrain && drainSupported) waitForDrain();
+        stats.recordWrite(System.nanoTime() - start);
+    }
+
+    @Override
+    public int read(byte[] buffer, int off, int len, int timeoutMs) throws IOException {
+        if (keptLength > 0) {
+            int n = Math.min(len, keptLength);
+            System.arraycopy(kept, 0, buffer, off, n);
+            System.arraycopy(kept, n, kept, 0, keptLength - n);
+            keptLength -= n;
+            return n;
+        }
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        // Le flux RFCOMM n'a pas de délai de lecture : attente active sur available()
+        while (inputStream.available() == 0) {
+            if (System.currentTimeMillis() >= deadline) return 0;
+            try {
+                Thread.sleep(DRAIN_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Lecture interrompue");
+            }
+        }
+        int read = inputStream.read(buffer, off, Math.min(len, inputStream.available()));
+        if (read < 0) throw new IOException("Connexion Bluetooth fermée");
+        return read;
+    }
+
+    public WritePacer getPacer() {
+        return pacer;
+    }
+
+    /**
+     * Envoyer GS r 1 et attendre la réponse : l'imprimante ne répond qu'après
+     * avoir traité tout ce qui précède. Sans réponse, l'attente est désactivée
+     * pour la suite (imprimante qui ne renvoie rien). Les autres octets reçus
+     * entre-temps (trames ASB, réponses d'état) sont gardés pour le poller.
+     */
+    private void waitForDrain() throws IOException {
+        outputStream.write(DRAIN_QUERY);
+        outputStream.flush();
+        StatusParser.DrainReplyFilter filter = new StatusParser.DrainReplyFilter();
+        long deadline = System.currentTimeMillis() + pacer.getOptions().drainTimeoutMs;
+        while (true) {
+            while (inputStream.available() > 0) {
+                int b = inputStream.read();
+                if (b < 0) throw new IOException("Connexion Bluetooth fermée");
+                if (filter.isDrainReply((byte) b)) return;
+                keep((byte) b);
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                Log.w(TAG, "Pas de réponse à GS r, attente de vidage désactivée");
+                drainSupported = false;
+                return;
+            }
+            try {
+                Thread.sleep(DRAIN_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Attente de l'imprimante interrompue");
+            }
+        }
+    }
+
+    private void keep(byte b) {
+        if (keptLength == kept.length) kept = Arrays.copyOf(kept, kept.length * 2);
+        kept[keptLength++] = b;
+    }
+
+    @Override
+    public TransportStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        connected = false;
+        try {
+            outputStream.close();
+            inputStream.close();
+            socket.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Erreur fermeture Bluetooth", e);
+        }
+    }
+}
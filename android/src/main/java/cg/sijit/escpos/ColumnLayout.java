@@ -0,0 +1,211 @@
+package cg.sijit.escpos;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mise en colonnes de lignes de ticket (article, quantité, prix...).
+ *
+ * Le nombre de caractères par ligne dépend de la largeur du papier, de la
+ * police (A : 12 points, B : 9 points) et du multiplicateur de taille (GS !).
+ * Chaque colonne a une largeur fixe ou une part de la place restante, un
+ * alignement et un traitement du débordement (retour à la ligne, coupe, points
+ * de suspension). Les lignes sont écrites directement dans l'encodeur.
+ *
+ * Un caractère compte pour une colonne : les écritures pleine chasse (CJK) ne
+ * sont pas prises en compte.
+ */
+public class ColumnLayout {
+
+    public enum Align { LEFT, CENTER, RIGHT }
+
+    public enum Overflow { WRAP, TRUNCATE, ELLIPSIS }
+
+    /**
+     * Largeur en points d'un caractère, police A et B
+     */
+    public static final int FONT_A_DOTS = 12;
+    public static final int FONT_B_DOTS = 9;
+
+    static final String ELLIPSIS = "...";
+
+    public static final class Column {
+        /** Largeur en caractères ; 0 = part de la place restante selon weight */
+        public int width = 0;
+        public int weight = 1;
+        public Align align = Align.LEFT;
+        public Overflow overflow = Overflow.WRAP;
+    }
+
+    private final int lineWidth;
+    private final Column[] columns;
+    private final int[] widths;
+    private final int[] starts;
+    // Ligne en cours de construction, réutilisée d'une ligne à l'autre
+    private final char[] line;
+
+    /**
+     * Caractères par ligne pour une largeur de papier (points), une police et une taille (1 à 3)
+     */
+    public static int charsPerLine(int paperWidthDots, boolean fontB, int size) {
+        int charDots = (fontB ? FONT_B_DOTS : FONT_A_DOTS) * Math.max(1, size);
+        return paperWidthDots / charDots;
+    }
+
+    /**
+     * @param gap espaces entre deux colonnes
+     */
+    public ColumnLayout(int lineWidth, int gap, List<Column> columns) {
+        if (columns.isEmpty()) throw new IllegalArgumentException("Aucune colonne");
+        gap = Math.max(0, gap);
+        this.lineWidth = lineWidth;
+        this.columns = columns.toArray(new Column[0]);
+        this.widths = resolveWidths(lineWidth, gap, this.columns);
+        this.starts = new int[widths.length];
+        for (int i = 1; i < widths.length; i++) starts[i] = starts[i - 1] + widths[i - 1] + gap;
+        this.line = new char[lineWidth];
+    }
+
+    public int getLineWidth() {
+        return lineWidth;
+    }
+
+    public int[] getWidths() {
+        return widths.clone();
+    }
+
+    private static int[] resolveWidths(int lineWidth, int gap, Column[] columns) {
+        int[] widths = new int[columns.length];
+        int fixed = gap * (columns.length - 1);
+        int weights = 0;
+        int flex = 0;
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].width > 0) {
+                widths[i] = columns[i].width;
+                fixed += columns[i].width;
+            } else {
+                weights += Math.max(1, columns[i].weight);
+                flex++;
+            }
+        }
+        int remaining = lineWidth - fixed;
+        // Chaque colonne souple doit garder au moins un caractère
+        if (remaining < flex) {
+            throw new IllegalArgumentException("Colonnes trop larges : " + fixed + " caractères pour " + lineWidth);
+        }
+        if (weights == 0) return widths;
+
+        // Un caractère par colonne souple, le reste au prorata des poids ;
+        // les caractères restants vont aux premières colonnes souples
+        int shared = remaining - flex;
+        int given = 0;
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].width > 0) continue;
+            widths[i] = 1 + shared * Math.max(1, columns[i].weight) / weights;
+            given += widths[i];
+        }
+        for (int i = 0; given < remaining; i = (i + 1) % columns.length) {
+            if (columns[i].width > 0) continue;
+            widths[i]++;
+            given++;
+        }
+        return widths;
+    }
+
+    /**
+     * Taille approximative (octets) de n lignes simples, pour dimensionner le buffer à l'avance
+     */
+    public int estimateBytes(int rows) {
+        return rows * (lineWidth + 1);
+    }
+
+    /**
+     * Écrire une ligne du tableau ; une cellule trop longue en mode WRAP prend plusieurs lignes
+     */
+    public void writeRow(EscPosEncoder out, String... cells) {
+        List<List<String>> cellLines = new ArrayList<>(columns.length);
+        int height = 1;
+        for (int i = 0; i < columns.length; i++) {
+            String cell = i < cells.length && cells[i] != null ? cells[i] : "";
+            List<String> lines = fit(cell, widths[i], columns[i].overflow);
+            cellLines.add(lines);
+            height = Math.max(height, lines.size());
+        }
+        for (int row = 0; row < height; row++) {
+            Arrays.fill(line, ' ');
+            for (int i = 0; i < columns.length; i++) {
+                List<String> lines = cellLines.get(i);
+                if (row < lines.size()) place(lines.get(row), starts[i], widths[i], columns[i].align);
+            }
+            // Pas d'espaces en fin de ligne : inutiles sur le papier
+            int end = lineWidth;
+            while (end > 0 && line[end - 1] == ' ') end--;
+            out.text(CharBuffer.wrap(line, 0, end)).raw((byte) '\n');
+        }
+    }
+
+    /**
+     * Ligne de séparation sur toute la largeur
+     */
+    public void writeSeparator(EscPosEncoder out, char c) {
+        Arrays.fill(line, c);
+        out.text(CharBuffer.wrap(line)).raw((byte) '\n');
+    }
+
+    private void place(String text, int start, int width, Align align) {
+        int offset = 0;
+        if (align == Align.RIGHT) offset = width - text.length();
+        else if (align == Align.CENTER) offset = (width - text.length()) / 2;
+        text.getChars(0, text.length(), line, start + offset);
+    }
+
+    /**
+     * Découper une cellule selon la largeur de sa colonne
+     */
+    static List<String> fit(String text, int width, Overflow overflow) {
+        List<String> lines = new ArrayList<>(1);
+        text = text.replace('\n', ' ').trim();
+        if (text.length() <= width || width <= 0) {
+            lines.add(text);
+            return lines;
+        }
+        switch (overflow) {
+            case TRUNCATE:
+                lines.add(text.substring(0, width));
+                return lines;
+            case ELLIPSIS:
+                if (width <= ELLIPSIS.length()) lines.add(text.substring(0, width));
+                else lines.add(text.substring(0, width - ELLIPSIS.length()).trim() + ELLIPSIS);
+                return lines;
+            default:
+                return wrap(text, width);
+        }
+    }
+
+    /**
+     * Retour à la ligne sur les espaces ; un mot plus long que la colonne est coupé
+     */
+    private static List<String> wrap(String text, int width) {
+        List<String> lines = new ArrayList<>();
+        if (width <= 0) {
+            lines.add(text);
+            return lines;
+        }
+        int pos = 0;
+        int len = text.length();
+        while (pos < len) {
+            while (pos < len && text.charAt(pos) == ' ') pos++;
+            if (pos >= len) break;
+            int end = Math.min(pos + width, len);
+            if (end < len && text.charAt(end) != ' ') {
+                int space = text.lastIndexOf(' ', end);
+                if (space > pos) end = space;
+            }
+            lines.add(text.substring(pos, end).trim());
+            pos = end;
+        }
+        return lines;
+    }
+}
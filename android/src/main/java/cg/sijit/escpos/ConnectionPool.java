@@ -0,0 +1,130 @@
+package cg.sijit.escpos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Connexions ouvertes simultanément, indexées par identifiant d'imprimante.
+ *
+ * Chaque session a son propre thread d'écriture : les jobs envoyés à des
+ * imprimantes différentes partent en parallèle.
+ */
+public class ConnectionPool {
+
+    // Identifiants utilisés quand l'appelant ne précise pas de printerId
+    public static final String DEFAULT_BLUETOOTH = "bluetooth";
+    public static final String DEFAULT_WIFI = "wifi";
+    public static final String DEFAULT_USB = "usb";
+
+    private static final String[] DEFAULT_ORDER = { DEFAULT_BLUETOOTH, DEFAULT_WIFI, DEFAULT_USB };
+
+    private final Map<String, PrinterSession> sessions = new ConcurrentHashMap<>();
+    private final PrintQueue.Listener listener;
+    private final SpoolJournal spool;
+    private final PrintMetrics metrics;
+
+    public ConnectionPool(PrintQueue.Listener listener) {
+        this(listener, null, null);
+    }
+
+    /**
+     * Pool dont les jobs sont journalisés dans le spool (null = sans persistance)
+     * et mesurés dans metrics (null = sans mesure)
+     */
+    public ConnectionPool(PrintQueue.Listener listener, SpoolJournal spool, PrintMetrics metrics) {
+        this.listener = listener;
+        this.spool = spool;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Enregistrer une nouvelle connexion ; une session existante avec le même id est fermée.
+     * Les jobs de cette imprimante restés dans le spool sont remis en file.
+     */
+    public PrinterSession open(String printerId, PrinterTransport transport) {
+        PrinterSession session = new PrinterSession(printerId, transport, listener, spool, metrics);
+        PrinterSession previous = sessions.put(printerId, session);
+        if (previous != null) previous.close();
+        if (spool != null) {
+            List<SpoolJournal.Entry> recovered = spool.takeRecovered(printerId);
+            // Tout remettre en file avant d'écrire, pour respecter les priorités
+            session.getQueue().hold();
+            for (SpoolJournal.Entry entry : recovered) {
+                try {
+                    session.getQueue().restore(entry.jobId, entry.priority, entry.data);
+                } catch (Exception e) {
+                    // Session déjà refermée : le job reste dans le journal
+                }
+            }
+            session.getQueue().resume();
+        }
+        return session;
+    }
+
+    public PrinterSession get(String printerId) {
+        return sessions.get(printerId);
+    }
+
+    public boolean isConnected(String printerId) {
+        PrinterSession session = sessions.get(printerId);
+        return session != null && session.isConnected();
+    }
+
+    /**
+     * Session à utiliser pour un appel : celle demandée, sinon la première connectée
+     * (Bluetooth, Wifi puis USB, comme avant le pool)
+     */
+    public PrinterSession resolve(String printerId) throws Exception {
+        if (printerId != null) {
+            PrinterSession session = sessions.get(printerId);
+            if (session == null || !session.isConnected()) {
+                throw new Exception("Imprimante non connectée : " + printerId);
+            }
+            return session;
+        }
+        for (String id : DEFAULT_ORDER) {
+            PrinterSession session = sessions.get(id);
+            if (session != null && session.isConnected()) return session;
+        }
+        for (PrinterSession session : sessions.values()) {
+            if (session.isConnected()) return session;
+        }
+        throw new Exception("Aucune imprimante connectée (Bluetooth, Wifi ou USB)");
+    }
+
+    public void close(String printerId) {
+        PrinterSession session = sessions.remove(printerId);
+        if (session != null) session.close();
+    }
+
+    public void closeAll() {
+        closeAll(false);
+    }
+
+    /**
+     * Tout fermer ; avec keepSpooled (arrêt de l'application), les jobs non envoyés
+     * restent dans le spool pour la prochaine ouverture
+     */
+    public void closeAll(boolean keepSpooled) {
+        for (String id : new ArrayList<>(sessions.keySet())) {
+            PrinterSession session = sessions.remove(id);
+            if (session != null) session.close(keepSpooled);
+        }
+    }
+
+    /**
+     * Annuler un job encore en file, quelle que soit l'imprimante
+     */
+    public boolean cancelJob(String jobId) {
+        for (PrinterSession session : sessions.values()) {
+            if (session.getQueue().cancel(jobId)) return true;
+        }
+        return false;
+    }
+
+    public List<PrinterSession> list() {
+        return new ArrayList<>(sessions.values());
+    }
+}
@@ -0,0 +1,116 @@
+package cg.sijit.escpos;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Annuaire des imprimantes appairées, indexé par adresse MAC.
+ *
+ * Garde le handle de l'appareil et le dernier UUID de service qui a permis
+ * de se connecter : une reconnexion (imprimante rallumée, début de service)
+ * ne repasse ni par la liste des appareils appairés ni par les UUID en échec.
+ * Classe Java pure, le type d'appareil est générique (BluetoothDevice sur Android).
+ */
+public class DeviceRegistry<D> {
+
+    public static final class Entry<D> {
+        public final String address;
+        public final String name;
+        public final D device;
+        private volatile UUID lastGoodUuid;
+
+        Entry(String address, String name, D device) {
+            this.address = address;
+            this.name = name;
+            this.device = device;
+        }
+
+        /**
+         * UUID de la dernière connexion réussie (null si jamais connecté)
+         */
+        public UUID getLastGoodUuid() {
+            return lastGoodUuid;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry<D>> byAddress = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+
+    public static String normalizeAddress(String address) {
+        return address.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Ajouter ou remplacer un appareil ; l'UUID connu est conservé si l'adresse était déjà présente
+     */
+    public void put(String address, String name, D device) {
+        String key = normalizeAddress(address);
+        Entry<D> entry = new Entry<>(key, name, device);
+        Entry<D> previous = byAddress.put(key, entry);
+        if (previous != null) entry.lastGoodUuid = previous.lastGoodUuid;
+    }
+
+    public void remove(String address) {
+        byAddress.remove(normalizeAddress(address));
+    }
+
+    public Entry<D> get(String address) {
+        return byAddress.get(normalizeAddress(address));
+    }
+
+    /**
+     * Appareils portant ce nom (plusieurs imprimantes du même modèle ont souvent le même)
+     */
+    public List<Entry<D>> findByName(String name) {
+        List<Entry<D>> matches = new ArrayList<>(1);
+        for (Entry<D> entry : byAddress.values()) {
+            if (name.equals(entry.name)) matches.add(entry);
+        }
+        return matches;
+    }
+
+    public Collection<Entry<D>> entries() {
+        return byAddress.values();
+    }
+
+    /**
+     * Retenir l'UUID qui a fonctionné pour cette adresse
+     */
+    public void markConnected(String address, UUID uuid) {
+        Entry<D> entry = get(address);
+        if (entry != null) entry.lastGoodUuid = uuid;
+    }
+
+    /**
+     * UUID à essayer dans l'ordre : le dernier qui a fonctionné, puis les candidats, sans doublon
+     */
+    public List<UUID> uuidCandidates(String address, UUID... candidates) {
+        List<UUID> uuids = new ArrayList<>(candidates.length + 1);
+        Entry<D> entry = get(address);
+        if (entry != null && entry.lastGoodUuid != null) uuids.add(entry.lastGoodUuid);
+        for (UUID uuid : candidates) {
+            if (uuid != null && !uuids.contains(uuid)) uuids.add(uuid);
+        }
+        return uuids;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public void setLoaded(boolean loaded) {
+        this.loaded = loaded;
+    }
+
+    /**
+     * Tout oublier (Bluetooth désactivé) : le prochain accès recharge la liste
+     */
+    public void clear() {
+        byAddress.clear();
+        loaded = false;
+    }
+}
@@ -3,15 +3,18 @@ package cg.sijit.escpos;
 import android.Manifest;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
-import android.hardware.usb.*;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.hardware.usb.UsbDevice;
+import android.hardware.usb.UsbManager;
 
 import android.os.Build;
+import android.util.Base64;
 import android.util.Log;
 
 import androidx.annotation.RequiresPermission;
@@ -20,12 +23,21 @@ import androidx.core.content.ContextCompat;
 import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 
-import java.io.OutputStream;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * Implémentation ESC/POS pour imprimantes Bluetooth et Wifi
@@ -33,36 +45,134 @@ import java.util.UUID;
 public class ESCPOSPrinter {
     private static final String TAG = "ESCPOSPrinter";
 
+    static final int DEFAULT_BARCODE_HEIGHT = 80;
+    static final int DEFAULT_BARCODE_MODULE_WIDTH = 3;
+    static final int DEFAULT_QR_MODULE_SIZE = 6;
+
+    /**
+     * Événements remontés au JS (notifyListeners)
+     */
+    public interface EventListener {
+        void onEvent(String eventName, JSObject data);
+    }
+
     private Context context;
+    private final EventListener eventListener;
 
-    private BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
-    private BluetoothSocket socket = null;
-    private OutputStream outputStream = null;
-    private boolean isConnected = false;
+    // Connexions ouvertes, une session (transport + file) par printerId
+    private final ConnectionPool pool;
+
+    // Images déjà tramées (logos, en-têtes répétés sur chaque ticket)
+    private final RasterCache rasterCache = new RasterCache();
+
+    // Durées et compteurs des jobs, par transport (getMetrics)
+    private final PrintMetrics metrics = new PrintMetrics();
+    private volatile Thread metricsReporter;
+
+    // Paragraphes déjà rendus en image (printText en mode raster)
+    private final TextRenderer textRenderer = new TextRenderer();
 
-    private Socket wifiSocket = null;
-    private OutputStream wifiOutputStream = null;
-    private boolean isWifiConnected = false;
+    // Modèles de tickets compilés (registerTemplate)
+    private final Map<String, ReceiptTemplate> templates = new ConcurrentHashMap<>();
+
+    // Flux ouverts par beginStream, jusqu'à leur fin ou leur échec
+    private final Map<String, OpenStream> streams = new ConcurrentHashMap<>();
+
+    // Attente maximale d'une place pour un morceau avant de renvoyer une erreur
+    private static final long STREAM_APPEND_TIMEOUT_MS = 60_000;
+
+    private static final class OpenStream {
+        final PrinterSession session;
+        final StreamJob stream;
+        // appendChunk/endStream de ce flux, dans l'ordre, hors du thread des plugins
+        final Executor writer = new SerialExecutor();
+
+        OpenStream(PrinterSession session, StreamJob stream) {
+            this.session = session;
+            this.stream = stream;
+        }
+    }
+
+    private BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
 
 
 
     private UsbManager usbManager;
-    private UsbDeviceConnection usbConnection = null;
-    private UsbEndpoint usbEndpoint = null;
-    private boolean isUsbConnected = false;
+
+    private final BluetoothDeviceRegistry deviceRegistry;
+
+    // Balayage réseau en cours (null sinon)
+    private volatile NetworkDiscovery discovery;
+
+    // Fichier du spool dans le stockage privé de l'application
+    private static final String SPOOL_FILE = "escpos-spool.bin";
+    // Profils retenus par adresse d'imprimante
+    private static final String PROFILE_FILE = "escpos-profiles.properties";
+    // Profil demandé à l'imprimante (GS I) plutôt qu'imposé
+    private static final String PROFILE_AUTO = "auto";
+
+    private final ProfileCache profileCache;
+    // Adresse (clé du cache de profils) de chaque imprimante connectée
+    private final Map<String, String> profileAddresses = new ConcurrentHashMap<>();
+
+    // Jobs journalisés sur disque (null si le fichier n'a pas pu être ouvert)
+    private final SpoolJournal spool;
 
     private static final String ACTION_USB_PERMISSION = "cg.sijit.escpos.USB_PERMISSION";
 
 
 
 
-    public ESCPOSPrinter(Context context) {
+    public ESCPOSPrinter(Context context, EventListener eventListener) {
         this.context = context;
+        this.eventListener = eventListener;
+        this.spool = openSpool(context);
+        this.profileCache = new ProfileCache(new File(context.getFilesDir(), PROFILE_FILE));
+        this.pool = new ConnectionPool(new PrintQueue.Listener() {
+            @Override
+            public void onJobCompleted(String jobId, int bytes) {
+                streams.remove(jobId);
+                JSObject ret = new JSObject();
+                ret.put("jobId", jobId);
+                ret.put("bytes", bytes);
+                eventListener.onEvent("printJobCompleted", ret);
+            }
+
+            @Override
+            public void onJobFailed(String jobId, Exception error) {
+                Log.e(TAG, "Échec du job " + jobId, error);
+                streams.remove(jobId);
+                JSObject ret = new JSObject();
+                ret.put("jobId", jobId);
+                ret.put("error", error.getMessage());
+                eventListener.onEvent("printJobFailed", ret);
+            }
+        }, spool, metrics);
+        this.deviceRegistry = new BluetoothDeviceRegistry(context, bluetoothAdapter);
+        if (bluetoothAdapter != null) deviceRegistry.register();
         this.usbManager = (UsbManager) context.getSystemService(Context.USB_SERVICE);
         IntentFilter filter = new IntentFilter(ACTION_USB_PERMISSION);
         ContextCompat.registerReceiver(this.context, this.usbPermissionReceiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
     }
 
+    /**
+     * Ouvrir le spool ; les jobs non imprimés lors de la dernière exécution
+     * repartiront à la connexion de leur imprimante
+     */
+    private static SpoolJournal openSpool(Context context) {
+        try {
+            SpoolJournal journal = new SpoolJournal(new File(context.getFilesDir(), SPOOL_FILE));
+            for (SpoolJournal.Entry entry : journal.recovered()) PrintQueue.reserveJobId(entry.jobId);
+            if (!journal.recovered().isEmpty()) {
+                Log.i(TAG, journal.recovered().size() + " job(s) en attente dans le spool");
+            }
+            return journal;
+        } catch (IOException e) {
+            Log.e(TAG, "Spool indisponible, les jobs ne survivront pas à un redémarrage", e);
+            return null;
+        }
+    }
+
     private boolean hasBluetoothConnectPermission() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
             return ContextCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) == PackageManager.PERMISSION_GRANTED;
@@ -102,10 +212,13 @@ public class ESCPOSPrinter {
     }
 
     /**
-     * Se connecter à une imprimante Bluetooth par nom
+     * Se connecter à une imprimante Bluetooth par adresse MAC (prioritaire) ou par nom,
+     * avec le cadencement d'écriture demandé. L'appareil et l'UUID qui a fonctionné
+     * sont mis en cache : une reconnexion va droit au but. Avec profilePacing,
+     * taille des blocs et pause viennent du profil de l'imprimante.
      */
     @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
-    public boolean connect(String deviceName) throws Exception {
+    public boolean connect(String printerId, String deviceName, String address, WritePacer.Options pacing, boolean profilePacing, String profileId) throws Exception {
         if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
             throw new Exception("Bluetooth non disponible ou désactivé");
         }
@@ -113,151 +226,894 @@ public class ESCPOSPrinter {
             throw new Exception("Permission BLUETOOTH_CONNECT manquante");
         }
 
-        BluetoothDevice printer = findDeviceByName(deviceName);
-        if (printer == null) {
-            throw new Exception("Imprimante non trouvée : " + deviceName);
+        PrinterProfile forced = parseProfile(profileId);
+        DeviceRegistry.Entry<BluetoothDevice> printer = deviceRegistry.find(address, deviceName);
+        Exception last = null;
+        for (UUID uuid : deviceRegistry.uuidCandidates(printer.device)) {
+            try {
+                BluetoothTransport transport = BluetoothTransport.open(printer.device, uuid, pacing);
+                deviceRegistry.markConnected(printer.address, uuid);
+                PrinterProfile profile = resolveProfile(printer.address, transport, forced);
+                if (profilePacing) transport.getPacer().retune(profile.chunkSize, profile.chunkDelayMs);
+                openSession(idOrDefault(printerId, ConnectionPool.DEFAULT_BLUETOOTH), transport, printer.address, profile);
+                Log.i(TAG, "Connecté à " + printer.name + " (" + printer.address + ")");
+                return true;
+            } catch (IOException e) {
+                Log.w(TAG, "Échec connexion Bluetooth sur " + uuid, e);
+                last = e;
+            }
+        }
+        throw new Exception("Connexion Bluetooth échouée : " + (last != null ? last.getMessage() : "aucun service"));
+    }
+
+    /**
+     * Profil d'une imprimante qui vient d'être ouverte : imposé par l'application,
+     * retenu à une connexion précédente, sinon demandé à l'imprimante (GS I).
+     * Une imprimante muette garde le profil générique 58 mm.
+     */
+    private PrinterProfile resolveProfile(String address, PrinterTransport transport, PrinterProfile forced) {
+        if (forced != null) {
+            rememberProfile(address, forced);
+            return forced;
         }
+        PrinterProfile cached = profileCache.get(address);
+        if (cached != null) return cached;
+        PrinterProfile detected;
+        try {
+            // Avant l'ouverture de la file : aucun job ne partage encore le transport
+            detected = PrinterProfile.detect(transport);
+        } catch (IOException e) {
+            Log.w(TAG, "Détection du profil impossible pour " + address, e);
+            return PrinterProfile.GENERIC_58;
+        }
+        PrinterProfile profile = detected != null ? detected : PrinterProfile.GENERIC_58;
+        Log.i(TAG, "Profil " + profile.id + (detected != null ? " détecté" : " par défaut") + " pour " + address);
+        rememberProfile(address, profile);
+        return profile;
+    }
 
+    private void rememberProfile(String address, PrinterProfile profile) {
         try {
-            UUID uuid = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB"); // SPP
-            socket = printer.createRfcommSocketToServiceRecord(uuid);
-            socket.connect();
-            outputStream = socket.getOutputStream();
-            isConnected = true;
-            Log.i(TAG, "Connecté à " + deviceName);
-            return true;
-        } catch (Exception e) {
-            Log.e(TAG, "Échec connexion Bluetooth", e);
-            if (socket != null) try { socket.close(); } catch (Exception ignore) {}
-            throw new Exception("Connexion Bluetooth échouée : " + e.getMessage());
+            profileCache.put(address, profile);
+        } catch (IOException e) {
+            Log.w(TAG, "Profil non sauvegardé pour " + address, e);
+        }
+    }
+
+    private void openSession(String printerId, PrinterTransport transport, String address, PrinterProfile profile) {
+        PrinterSession session = pool.open(printerId, transport);
+        session.setProfile(profile);
+        profileAddresses.put(printerId, address);
+    }
+
+    /**
+     * Profil par identifiant ; null pour "auto" (ou absent)
+     */
+    private static PrinterProfile parseProfile(String profileId) throws Exception {
+        if (profileId == null || profileId.isEmpty() || PROFILE_AUTO.equalsIgnoreCase(profileId)) return null;
+        PrinterProfile profile = PrinterProfile.forId(profileId);
+        if (profile == null) throw new Exception("Profil d'imprimante inconnu : " + profileId);
+        return profile;
+    }
+
+    /**
+     * Profils connus (generic-58, epson-80...)
+     */
+    public JSArray listPrinterProfiles() {
+        JSArray profiles = new JSArray();
+        for (PrinterProfile profile : PrinterProfile.all()) profiles.put(profileToJson(profile));
+        return profiles;
+    }
+
+    public JSObject getPrinterProfile(String printerId) throws Exception {
+        return profileToJson(pool.resolve(printerId).getProfile());
+    }
+
+    /**
+     * Imposer un profil, ou le redemander à l'imprimante avec "auto" ; il est
+     * retenu pour les prochaines connexions. Le cadencement Bluetooth du profil
+     * s'applique à la prochaine connexion.
+     */
+    public JSObject setPrinterProfile(String printerId, String profileId) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        PrinterProfile profile = parseProfile(profileId);
+        if (profile == null) {
+            PrinterProfile detected = session.detectProfile();
+            profile = detected != null ? detected : PrinterProfile.GENERIC_58;
         }
+        session.setProfile(profile);
+        String address = profileAddresses.get(session.getId());
+        if (address != null) rememberProfile(address, profile);
+        Log.i(TAG, "Profil " + profile.id + " pour " + session.getId());
+        return profileToJson(profile);
+    }
+
+    private static JSObject profileToJson(PrinterProfile profile) {
+        JSObject ret = new JSObject();
+        ret.put("id", profile.id);
+        ret.put("label", profile.label);
+        ret.put("paperWidth", profile.paperWidthDots);
+        ret.put("maxTextSize", profile.maxTextSize);
+        ret.put("cut", profile.cut == PrinterProfile.Cut.FULL ? "full" : profile.cut == PrinterProfile.Cut.FEED_PARTIAL ? "partial" : "none");
+        ret.put("feedUnitsPerDot", profile.feedUnitsPerDot);
+        ret.put("chunkSize", profile.chunkSize);
+        ret.put("chunkDelay", profile.chunkDelayMs);
+        return ret;
     }
 
     /**
      * Déconnecter proprement Bluetooth
      */
-    public void disconnect() {
+    public void disconnect(String printerId) {
+        pool.close(idOrDefault(printerId, ConnectionPool.DEFAULT_BLUETOOTH));
+        Log.i(TAG, "Déconnecté Bluetooth");
+    }
+
+    /**
+     * Vérifier si connecté
+     */
+    public boolean isConnected(String printerId) {
+        return pool.isConnected(idOrDefault(printerId, ConnectionPool.DEFAULT_BLUETOOTH));
+    }
+
+    /**
+     * Lister les imprimantes connectées
+     */
+    public JSArray listPrinters() {
+        JSArray printers = new JSArray();
+        for (PrinterSession session : pool.list()) {
+            JSObject printer = new JSObject();
+            printer.put("printerId", session.getId());
+            printer.put("transport", session.getTransport().getName());
+            printer.put("connected", session.isConnected());
+            printer.put("state", connectionState(session));
+            printer.put("pendingJobs", session.getQueue().pending());
+            printer.put("held", session.getQueue().isHeld());
+            printers.put(printer);
+        }
+        return printers;
+    }
+
+    /**
+     * Débit (octets/s) et latence par bloc du transport d'une imprimante
+     */
+    public JSObject getTransportStats(String printerId) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        TransportStats.Snapshot stats = session.getTransport().getStats().snapshot();
+        JSObject result = new JSObject();
+        result.put("printerId", session.getId());
+        result.put("transport", session.getTransport().getName());
+        result.put("bytes", stats.bytes);
+        result.put("chunks", stats.chunks);
+        result.put("writes", stats.writes);
+        result.put("retries", stats.retries);
+        result.put("bytesPerSecond", stats.bytesPerSecond);
+        result.put("avgChunkLatencyMs", stats.avgChunkLatencyMs);
+        result.put("maxChunkLatencyMs", stats.maxChunkLatencyMs);
+        result.put("lastChunkLatencyMs", stats.lastChunkLatencyMs);
+        if (session.getTransport() instanceof BluetoothTransport) {
+            result.put("chunkDelayMs", ((BluetoothTransport) session.getTransport()).getPacer().currentDelayMs());
+        }
+        return result;
+    }
+
+    /**
+     * Surveiller l'état (papier, capot, tiroir...) : chaque changement est publié
+     * en événement "printerStatusChange" et les jobs restent en file tant que
+     * l'imprimante ne peut pas imprimer. asb = laisser l'imprimante envoyer ses
+     * changements (GS a) au lieu de l'interroger (DLE EOT).
+     */
+    public void startStatusPolling(String printerId, int intervalMs, boolean asb) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        String id = session.getId();
+        session.startStatusPolling(intervalMs, asb, status -> {
+            Log.i(TAG, "État " + id + " : " + status);
+            JSObject ret = statusToJson(status);
+            ret.put("printerId", id);
+            eventListener.onEvent("printerStatusChange", ret);
+        });
+        Log.i(TAG, "Surveillance de l'état de " + id + " toutes les " + intervalMs + " ms" + (asb ? " (ASB)" : ""));
+    }
+
+    public void stopStatusPolling(String printerId) throws Exception {
+        pool.resolve(printerId).stopStatusPolling();
+    }
+
+    /**
+     * Interroger l'état tout de suite (DLE EOT 1 à 4)
+     */
+    public JSObject getPrinterStatus(String printerId) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        JSObject ret = statusToJson(session.queryStatus());
+        ret.put("printerId", session.getId());
+        return ret;
+    }
+
+    private static JSObject statusToJson(PrinterStatus status) {
+        JSObject ret = new JSObject();
+        ret.put("responding", status.responding);
+        ret.put("online", status.online);
+        ret.put("coverOpen", status.coverOpen);
+        ret.put("paperOut", status.paperOut);
+        ret.put("paperNearEnd", status.paperNearEnd);
+        ret.put("drawerOpen", status.drawerOpen);
+        ret.put("error", status.error);
+        ret.put("canPrint", status.canPrint());
+        return ret;
+    }
+
+    /**
+     * Fermer toutes les connexions
+     */
+    public void disconnectAll() {
+        pool.closeAll();
+    }
+
+    /**
+     * Annuler un job qui n'a pas encore commencé à partir
+     */
+    public boolean cancelJob(String jobId) {
+        if (pool.cancelJob(jobId)) {
+            streams.remove(jobId);
+            return true;
+        }
+        // Flux en cours d'impression : la suite est abandonnée
+        OpenStream open = streams.remove(jobId);
+        if (open == null) return false;
+        open.stream.abort(new Exception("Flux annulé"));
+        return true;
+    }
+
+    /**
+     * Fermer les connexions et désenregistrer les receivers (destruction du plugin).
+     * Les jobs non envoyés restent dans le spool et repartiront au prochain lancement.
+     */
+    public void release() {
+        stopMetricsEvents();
+        pool.closeAll(true);
+        if (spool != null) spool.close();
+        deviceRegistry.unregister();
+        unregisterUsbPermissionReceiver();
+    }
+
+    private static String connectionState(PrinterSession session) {
+        if (session.getTransport() instanceof TcpTransport) {
+            return ((TcpTransport) session.getTransport()).getState().name();
+        }
+        return session.isConnected() ? TcpTransport.State.CONNECTED.name() : TcpTransport.State.DISCONNECTED.name();
+    }
+
+    private static String idOrDefault(String printerId, String defaultId) {
+        return printerId != null ? printerId : defaultId;
+    }
+
+    /**
+     * Imprimer du texte (mis en file, renvoie l'identifiant du job)
+     */
+    public String printText(String printerId, String text, int priority) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        return session.submit(session.obtainEncoder().text(text), priority);
+    }
+
+    /**
+     * Imprimer un ticket complet : toutes les opérations sont encodées
+     * dans un seul buffer puis envoyées en une seule écriture.
+     */
+    public String printBatch(String printerId, JSArray operations, int priority) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        EscPosEncoder encoder = session.obtainEncoder();
         try {
-            if (outputStream != null) outputStream.close();
-            if (socket != null) socket.close();
+            writeOperations(encoder, operations, session.getProfile());
         } catch (Exception e) {
-            Log.e(TAG, "Erreur lors de disconnect", e);
+            encoder.recycle();
+            throw e;
         }
-        isConnected = false;
-        Log.i(TAG, "Déconnecté Bluetooth");
+        Log.i(TAG, "Ticket mis en file : " + operations.length() + " opérations, " + encoder.size() + " octets");
+        return session.submit(encoder, priority);
     }
 
     /**
-     * Vérifier si connecté
+     * Encoder une liste d'opérations (printBatch, morceaux de flux)
      */
-    public boolean isConnected() {
-        return isConnected;
+    private void writeOperations(EscPosEncoder encoder, JSArray operations, PrinterProfile profile) throws Exception {
+        for (int i = 0; i < operations.length(); i++) {
+            JSONObject op = operations.getJSONObject(i);
+            String type = op.optString("type");
+            switch (type) {
+                case "text":
+                    encoder.text(op.optString("text"));
+                    break;
+                case "bold":
+                    encoder.bold(op.optBoolean("bold", false));
+                    break;
+                case "align":
+                    encoder.align(op.optString("align", "left"));
+                    break;
+                case "size":
+                    encoder.textSize(op.optInt("size", 1));
+                    break;
+                case "codePage":
+                    encoder.codePage(parseCodePage(op.optString("codePage")));
+                    break;
+                case "feed":
+                    encoder.feed(op.optInt("lines", 1));
+                    break;
+                case "cut":
+                    encoder.cut();
+                    break;
+                case "table":
+                    writeTable(encoder, op, profile.paperWidthDots);
+                    break;
+                case "rasterText":
+                    textRenderer.render(encoder, op.optString("text"), textStyle(op, profile));
+                    break;
+                case "barcode":
+                    encoder.barcode(
+                        parseBarcodeType(op.optString("barcodeType", "CODE128")),
+                        op.optString("data"),
+                        op.optInt("height", DEFAULT_BARCODE_HEIGHT),
+                        op.optInt("width", DEFAULT_BARCODE_MODULE_WIDTH),
+                        parseHriPosition(op.optString("hriPosition", "below")),
+                        "B".equalsIgnoreCase(op.optString("hriFont", "A")) ? 1 : 0
+                    );
+                    break;
+                case "qrcode":
+                    encoder.qrCode(
+                        op.optString("data"),
+                        op.optInt("model", 2),
+                        op.optInt("size", DEFAULT_QR_MODULE_SIZE),
+                        parseQrErrorCorrection(op.optString("errorCorrection", "M"))
+                    );
+                    break;
+                default:
+                    throw new Exception("Opération inconnue : " + type);
+            }
+        }
     }
 
     /**
-     * Trouver une imprimante déjà appairée par nom
+     * Ouvrir un flux d'impression pour un long document ; renvoie son identifiant (aussi celui du job)
      */
-    private BluetoothDevice findDeviceByName(String name) {
-        if (bluetoothAdapter == null) return null;
-        if (!hasBluetoothConnectPermission()) {
-            Log.w(TAG, "Pas de permission BLUETOOTH_CONNECT pour findDeviceByName");
-            return null;
+    public String beginStream(String printerId, int priority) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        StreamJob stream = session.getQueue().openStream(priority);
+        streams.put(stream.getId(), new OpenStream(session, stream));
+        return stream.getId();
+    }
+
+    /**
+     * Ajouter un morceau au flux. Bloque tant que l'imprimante n'a pas écrit
+     * les morceaux précédents : à appeler hors du thread des plugins.
+     */
+    public void appendChunk(String streamId, String text, JSArray operations) throws Exception {
+        OpenStream open = openStream(streamId);
+        EscPosEncoder encoder = open.session.obtainEncoder();
+        try {
+            if (text != null) encoder.text(text);
+            if (operations != null) writeOperations(encoder, operations, open.session.getProfile());
+        } catch (Exception e) {
+            encoder.recycle();
+            throw e;
         }
+        open.stream.append(encoder, STREAM_APPEND_TIMEOUT_MS);
+    }
 
+    /**
+     * Terminer le flux : le job se termine une fois les derniers morceaux imprimés
+     */
+    public void endStream(String streamId) throws Exception {
+        openStream(streamId).stream.end(STREAM_APPEND_TIMEOUT_MS);
+    }
+
+    /**
+     * Exécuteur propre au flux : garde l'ordre de ses morceaux sans bloquer les autres flux
+     */
+    public Executor streamWriter(String streamId) throws Exception {
+        return openStream(streamId).writer;
+    }
+
+    private OpenStream openStream(String streamId) throws Exception {
+        OpenStream open = streams.get(streamId);
+        if (open == null) throw new Exception("Flux inconnu ou terminé : " + streamId);
+        return open;
+    }
+
+    /**
+     * Imprimer du texte rendu en image (écritures absentes des pages de code de l'imprimante)
+     */
+    public String printRasterText(String printerId, JSONObject options, int priority) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        EscPosEncoder encoder = EscPosEncoder.obtain();
         try {
-            Set<BluetoothDevice> pairedDevices = bluetoothAdapter.getBondedDevices();
-            for (BluetoothDevice device : pairedDevices) {
-                if (device.getName() != null && device.getName().equals(name)) {
-                    return device;
+            textRenderer.render(encoder, options.optString("text"), textStyle(options, session.getProfile()));
+        } catch (Exception e) {
+            encoder.recycle();
+            throw e;
+        }
+        return session.submit(encoder, priority);
+    }
+
+    private static TextRenderer.Style textStyle(JSONObject options, PrinterProfile profile) {
+        TextRenderer.Style style = new TextRenderer.Style();
+        style.widthDots = options.optInt("width", profile.paperWidthDots);
+        // Plus large que la tête d'impression : l'image serait coupée ou illisible
+        if (style.widthDots <= 0 || style.widthDots > profile.paperWidthDots) style.widthDots = profile.paperWidthDots;
+        style.textSize = (float) options.optDouble("fontSize", style.textSize);
+        style.bold = options.optBoolean("bold", false);
+        style.align = options.optString("align", style.align);
+        return style;
+    }
+
+    /**
+     * Compteurs et durées des jobs par transport (encodage, attente en file,
+     * écriture, total), plus les réécritures des connexions ouvertes
+     */
+    public JSObject getMetrics(boolean reset) {
+        Map<String, Long> retries = new HashMap<>();
+        for (PrinterSession session : pool.list()) {
+            String name = session.getTransport().getName();
+            Long previous = retries.get(name);
+            retries.put(name, (previous != null ? previous : 0L) + session.getTransport().getStats().snapshot().retries);
+        }
+        JSObject transports = new JSObject();
+        for (Map.Entry<String, PrintMetrics.Channel> entry : metrics.channels().entrySet()) {
+            PrintMetrics.Channel channel = entry.getValue();
+            JSObject json = new JSObject();
+            json.put("jobs", channel.jobs.sum());
+            json.put("failures", channel.failures.sum());
+            json.put("cancelled", channel.cancelled.sum());
+            json.put("bytes", channel.bytes.sum());
+            Long transportRetries = retries.get(entry.getKey());
+            json.put("retries", transportRetries != null ? transportRetries : 0L);
+            json.put("encode", histogramToJson(channel.encode));
+            json.put("queueWait", histogramToJson(channel.queueWait));
+            json.put("write", histogramToJson(channel.write));
+            json.put("total", histogramToJson(channel.total));
+            transports.put(entry.getKey(), json);
+        }
+        if (reset) metrics.reset();
+        JSObject result = new JSObject();
+        result.put("transports", transports);
+        return result;
+    }
+
+    private static JSObject histogramToJson(LatencyHistogram histogram) {
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        JSObject json = new JSObject();
+        json.put("count", snapshot.count);
+        json.put("meanMs", snapshot.meanMs);
+        json.put("p50Ms", snapshot.p50Ms);
+        json.put("p90Ms", snapshot.p90Ms);
+        json.put("p99Ms", snapshot.p99Ms);
+        json.put("maxMs", snapshot.maxMs);
+        return json;
+    }
+
+    /**
+     * Émettre l'événement "metrics" toutes les intervalMs millisecondes
+     */
+    public synchronized void startMetricsEvents(int intervalMs) {
+        stopMetricsEvents();
+        Thread reporter = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(intervalMs);
+                } catch (InterruptedException e) {
+                    break;
                 }
+                eventListener.onEvent("metrics", getMetrics(false));
             }
-        } catch (SecurityException e) {
-            Log.e(TAG, "Erreur permission findDeviceByName", e);
+        }, "escpos-metrics");
+        reporter.setDaemon(true);
+        reporter.start();
+        metricsReporter = reporter;
+    }
+
+    public synchronized void stopMetricsEvents() {
+        if (metricsReporter == null) return;
+        metricsReporter.interrupt();
+        metricsReporter = null;
+    }
+
+    /**
+     * Taux de réussite des caches d'images et de texte rendu
+     */
+    public JSObject getCacheStats() {
+        JSObject result = new JSObject();
+        result.put("image", cacheStats(rasterCache));
+        result.put("text", cacheStats(textRenderer.getCache()));
+        return result;
+    }
+
+    private static JSObject cacheStats(RasterCache cache) {
+        JSObject stats = new JSObject();
+        stats.put("entries", cache.size());
+        stats.put("bytes", cache.sizeBytes());
+        stats.put("hits", cache.hits());
+        stats.put("misses", cache.misses());
+        stats.put("hitRate", cache.hitRate());
+        return stats;
+    }
+
+    /**
+     * Imprimer un tableau (colonnes alignées, retour à la ligne des cellules trop longues)
+     */
+    public String printTable(String printerId, JSONObject table, int priority) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        EscPosEncoder encoder = session.obtainEncoder();
+        try {
+            writeTable(encoder, table, session.getProfile().paperWidthDots);
+        } catch (Exception e) {
+            encoder.recycle();
+            throw e;
+        }
+        return session.submit(encoder, priority);
+    }
+
+    /**
+     * Encoder un tableau : { columns, rows, header?, font?, size?, paperWidth?, gap? }.
+     * Police et taille sont appliquées le temps du tableau puis remises à la normale.
+     * paperWidth vaut par défaut la largeur du profil de l'imprimante.
+     */
+    private static void writeTable(EscPosEncoder encoder, JSONObject table, int defaultPaperWidth) throws Exception {
+        JSONArray columnSpecs = table.optJSONArray("columns");
+        if (columnSpecs == null || columnSpecs.length() == 0) throw new Exception("Colonnes manquantes");
+        List<ColumnLayout.Column> columns = new ArrayList<>(columnSpecs.length());
+        for (int i = 0; i < columnSpecs.length(); i++) {
+            JSONObject spec = columnSpecs.getJSONObject(i);
+            ColumnLayout.Column column = new ColumnLayout.Column();
+            column.width = spec.optInt("width", 0);
+            column.weight = spec.optInt("weight", 1);
+            column.align = parseEnum(ColumnLayout.Align.class, spec.optString("align", "left"), "Alignement inconnu");
+            column.overflow = parseEnum(ColumnLayout.Overflow.class, spec.optString("overflow", "wrap"), "Débordement inconnu");
+            columns.add(column);
+        }
+        boolean fontB = "B".equalsIgnoreCase(table.optString("font", "A"));
+        int size = Math.max(1, Math.min(table.optInt("size", 1), 3));
+        int paperWidth = table.optInt("paperWidth", defaultPaperWidth);
+        if (paperWidth <= 0) paperWidth = defaultPaperWidth;
+
+        ColumnLayout layout;
+        try {
+            layout = new ColumnLayout(ColumnLayout.charsPerLine(paperWidth, fontB, size), table.optInt("gap", 1), columns);
+        } catch (IllegalArgumentException e) {
+            throw new Exception(e.getMessage());
+        }
+        JSONArray header = table.optJSONArray("header");
+        JSONArray rows = table.optJSONArray("rows");
+        int rowCount = (rows != null ? rows.length() : 0) + (header != null ? 2 : 0);
+        encoder.reserve(layout.estimateBytes(rowCount) + 16);
+
+        encoder.align(EscPosEncoder.ALIGN_LEFT).font(fontB ? EscPosEncoder.FONT_B : EscPosEncoder.FONT_A).textSize(size);
+        if (header != null) {
+            encoder.bold(true);
+            layout.writeRow(encoder, toStrings(header));
+            encoder.bold(false);
+            layout.writeSeparator(encoder, '-');
+        }
+        if (rows != null) {
+            for (int i = 0; i < rows.length(); i++) layout.writeRow(encoder, toStrings(rows.getJSONArray(i)));
+        }
+        encoder.textSize(1).font(EscPosEncoder.FONT_A);
+    }
+
+    private static String[] toStrings(JSONArray array) {
+        String[] values = new String[array.length()];
+        for (int i = 0; i < values.length; i++) values[i] = array.isNull(i) ? "" : array.optString(i);
+        return values;
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String error) throws Exception {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new Exception(error + " : " + value);
         }
-        return null;
     }
 
     /**
-     * Imprimer du texte
+     * Compiler et enregistrer un modèle de ticket (remplace un modèle du même id)
      */
-    public void printText(String text) throws Exception {
-        if (isConnected && outputStream != null) {
-            outputStream.write(text.getBytes(StandardCharsets.UTF_8));
-            outputStream.flush();
-            Log.i(TAG, "Texte imprimé via Bluetooth");
-        } else if (isWifiConnected && wifiOutputStream != null) {
-            wifiOutputStream.write(text.getBytes(StandardCharsets.UTF_8));
-            wifiOutputStream.flush();
-            Log.i(TAG, "Texte imprimé via Wifi");
-        } else if (isUsbConnected && usbConnection != null && usbEndpoint != null) {
-            byte[] data = text.getBytes(StandardCharsets.UTF_8);
-            int result = usbConnection.bulkTransfer(usbEndpoint, data, data.length, 1000);
-            if (result < 0) throw new Exception("USB bulk transfer failed");
-            Log.i(TAG, "Texte imprimé via USB");
+    public void registerTemplate(String templateId, String source) throws Exception {
+        try {
+            templates.put(templateId, ReceiptTemplate.compile(source));
+        } catch (IllegalArgumentException e) {
+            throw new Exception("Modèle invalide : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Imprimer un modèle enregistré : seuls les champs sont encodés, le reste vient du squelette compilé
+     */
+    public String printTemplate(String printerId, String templateId, JSONObject data, int priority) throws Exception {
+        ReceiptTemplate template = templates.get(templateId);
+        if (template == null) throw new Exception("Modèle inconnu : " + templateId);
+        PrinterSession session = pool.resolve(printerId);
+        EscPosEncoder encoder = session.obtainEncoder();
+        try {
+            template.writeTo(encoder, toMap(data));
+        } catch (Exception e) {
+            encoder.recycle();
+            throw e;
+        }
+        return session.submit(encoder, priority);
+    }
+
+    private static Map<String, Object> toMap(JSONObject json) throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        if (json == null) return map;
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            map.put(key, fromJson(json.get(key)));
         }
-        else {
-            throw new Exception("Aucune imprimante connectée (Bluetooth ou Wifi)");
+        return map;
+    }
+
+    private static Object fromJson(Object value) throws Exception {
+        if (value instanceof JSONObject) return toMap((JSONObject) value);
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            List<Object> list = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) list.add(fromJson(array.get(i)));
+            return list;
+        }
+        return value == JSONObject.NULL ? null : value;
+    }
+
+    /**
+     * Mettre en file une commande courte sur l'imprimante demandée
+     */
+    private void submitCommand(String printerId, EscPosEncoder encoder) throws Exception {
+        PrinterSession session;
+        try {
+            session = pool.resolve(printerId);
+        } catch (Exception e) {
+            encoder.recycle();
+            throw e;
         }
+        session.submit(encoder);
     }
 
     /**
      * Changer le style (gras)
      */
-    public void setBold(boolean bold) throws Exception {
-        if (!isConnected || outputStream == null) throw new Exception("Non connecté");
-        byte[] cmd = bold ? new byte[]{0x1B, 0x45, 0x01} : new byte[]{0x1B, 0x45, 0x00};
-        outputStream.write(cmd);
-        outputStream.flush();
+    public void setBold(String printerId, boolean bold) throws Exception {
+        submitCommand(printerId, EscPosEncoder.obtain().bold(bold));
         Log.i(TAG, "Bold " + (bold ? "activé" : "désactivé"));
     }
 
     /**
      * Changer l'alignement
      */
-    public void setAlignment(String align) throws Exception {
-        if (!isConnected || outputStream == null) throw new Exception("Non connecté");
-        byte alignByte = 0;
-        if ("center".equalsIgnoreCase(align)) alignByte = 1;
-        else if ("right".equalsIgnoreCase(align)) alignByte = 2;
-        byte[] cmd = new byte[]{0x1B, 0x61, alignByte};
-        outputStream.write(cmd);
-        outputStream.flush();
+    public void setAlignment(String printerId, String align) throws Exception {
+        submitCommand(printerId, EscPosEncoder.obtain().align(align));
         Log.i(TAG, "Alignement mis à " + align);
     }
 
     /**
-     * Changer taille texte
+     * Changer taille texte (bornée par le profil de l'imprimante)
      */
-    public void setTextSize(int size) throws Exception {
-        if (!isConnected || outputStream == null) throw new Exception("Non connecté");
-        byte sizeByte = (size == 2) ? (byte) 0x11 : (size == 3) ? (byte) 0x22 : 0x00;
-        byte[] cmd = new byte[]{0x1D, 0x21, sizeByte};
-        outputStream.write(cmd);
-        outputStream.flush();
+    public void setTextSize(String printerId, int size) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        session.submit(EscPosEncoder.obtain().profile(session.getProfile()).textSize(size));
         Log.i(TAG, "Taille texte mise à " + size);
     }
 
     /**
-     * Couper le papier
+     * Choisir la page de code du texte (ESC t n) ; "UTF8" revient à l'UTF-8.
+     * Avec autoSwitch, l'encodeur bascule vers une autre page en cours de ligne
+     * quand un caractère manque ; sinon le caractère de remplacement est imprimé.
      */
-    public void cutPaper() throws Exception {
-        if (!isConnected || outputStream == null) throw new Exception("Non connecté");
-        byte[] cmd = new byte[]{0x1D, 0x56, 0x00}; // full cut
-        outputStream.write(cmd);
-        outputStream.flush();
+    public void setCodePage(String printerId, String codePage, boolean autoSwitch, char fallback) throws Exception {
+        CodePage page = parseCodePage(codePage);
+        PrinterSession session = pool.resolve(printerId);
+        if (fallback < 0x20 || fallback >= 0x7F) throw new Exception("Caractère de remplacement non ASCII");
+        session.setCodePage(page, autoSwitch, fallback);
+        if (page != null) session.submit(EscPosEncoder.obtain().codePage(page));
+        Log.i(TAG, "Page de code mise à " + (page != null ? page.label : "UTF-8"));
+    }
+
+    /**
+     * Compactage des images raster de l'imprimante (activé par défaut) ;
+     * feedUnitsPerDot : unités d'avance ESC J par point (2 sur les modèles 180 dpi)
+     */
+    public void setRasterCompression(String printerId, boolean enabled, int feedUnitsPerDot) throws Exception {
+        if (feedUnitsPerDot < 1 || feedUnitsPerDot > 8) throw new Exception("Unités d'avance par point invalides : " + feedUnitsPerDot);
+        pool.resolve(printerId).setRasterCompression(enabled, feedUnitsPerDot);
+    }
+
+    /**
+     * Couper le papier, avec la commande de coupe du profil
+     */
+    public void cutPaper(String printerId) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        session.submit(EscPosEncoder.obtain().profile(session.getProfile()).cut());
         Log.i(TAG, "Cut paper command envoyée");
     }
 
+    /**
+     * Imprimer un code-barres avec la commande native GS k
+     */
+    public String printBarcode(String printerId, String data, String type, int height, int width, String hriPosition, String hriFont, String align) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        EscPosEncoder encoder = EscPosEncoder.obtain();
+        try {
+            encoder.align(align).barcode(
+                parseBarcodeType(type),
+                data,
+                height,
+                width,
+                parseHriPosition(hriPosition),
+                "B".equalsIgnoreCase(hriFont) ? 1 : 0
+            ).raw((byte) '\n');
+        } catch (IllegalArgumentException e) {
+            encoder.recycle();
+            throw new Exception(e.getMessage());
+        }
+        return session.submit(encoder);
+    }
+
+    /**
+     * Imprimer un QR code avec la commande native GS ( k
+     */
+    public String printQRCode(String printerId, String data, int size, String errorCorrection, int model, String align) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        EscPosEncoder encoder = EscPosEncoder.obtain();
+        try {
+            encoder.align(align).qrCode(data, model, size, parseQrErrorCorrection(errorCorrection)).raw((byte) '\n');
+        } catch (IllegalArgumentException e) {
+            encoder.recycle();
+            throw new Exception(e.getMessage());
+        }
+        return session.submit(encoder);
+    }
+
+    private static EscPosEncoder.BarcodeType parseBarcodeType(String type) throws Exception {
+        String normalized = type == null ? "CODE128" : type.toUpperCase().replace("-", "_");
+        if ("UPC".equals(normalized)) normalized = "UPC_A";
+        try {
+            return EscPosEncoder.BarcodeType.valueOf(normalized);
+        } catch (IllegalArgumentException e) {
+            throw new Exception("Type de code-barres inconnu : " + type);
+        }
+    }
+
+    private static int parseHriPosition(String position) {
+        if ("none".equalsIgnoreCase(position)) return EscPosEncoder.HRI_NONE;
+        if ("above".equalsIgnoreCase(position)) return EscPosEncoder.HRI_ABOVE;
+        if ("both".equalsIgnoreCase(position)) return EscPosEncoder.HRI_BOTH;
+        return EscPosEncoder.HRI_BELOW;
+    }
+
+    private static CodePage parseCodePage(String name) throws Exception {
+        if (name == null || name.isEmpty() || name.replace("-", "").equalsIgnoreCase("UTF8")) return null;
+        CodePage page = CodePage.fromName(name);
+        if (page == null) throw new Exception("Page de code inconnue : " + name);
+        return page;
+    }
+
+    private static int parseQrErrorCorrection(String level) {
+        if ("L".equalsIgnoreCase(level)) return EscPosEncoder.QR_EC_L;
+        if ("Q".equalsIgnoreCase(level)) return EscPosEncoder.QR_EC_Q;
+        if ("H".equalsIgnoreCase(level)) return EscPosEncoder.QR_EC_H;
+        return EscPosEncoder.QR_EC_M;
+    }
+
+    /**
+     * Imprimer une image (PNG ou JPEG en base64) en raster 1 bit
+     */
+    public String printImage(String printerId, String base64, int width, String dither, int threshold, String mode, String align, boolean useCache) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        boolean graphics = "graphics".equalsIgnoreCase(mode);
+        // Le mode graphique garde l'image entière ; le compactage dépend de l'alignement
+        boolean compact = !graphics && session.isRasterCompression();
+        int maxWidth = session.getProfile().paperWidthDots;
+        String variant = width + "/" + maxWidth + "/" + dither + "/" + threshold + "/" + graphics
+            + (compact ? "/compact/" + align + "/" + session.getFeedUnitsPerDot() : "");
+        String cacheKey = useCache ? RasterCache.key(base64, variant) : null;
+        byte[] commands = cacheKey != null ? rasterCache.get(cacheKey) : null;
+        if (commands == null) {
+            ImageRasterizer.Raster raster = rasterizeImage(base64, width, maxWidth, parseDither(dither), threshold);
+            EscPosEncoder imageEncoder = new EscPosEncoder(raster.data.length + 64);
+            if (graphics) imageEncoder.graphicsImage(raster);
+            else if (compact) imageEncoder.compactRasterImage(raster, alignment(align), session.getFeedUnitsPerDot());
+            else imageEncoder.rasterImage(raster);
+            commands = imageEncoder.toByteArray();
+            if (cacheKey != null) rasterCache.put(cacheKey, commands);
+        }
+        EscPosEncoder encoder = EscPosEncoder.obtain().align(align).raw(commands);
+        Log.i(TAG, "Image mise en file : " + commands.length + " octets");
+        return session.submit(encoder);
+    }
+
+    /**
+     * Enregistrer un logo dans la mémoire NV de l'imprimante (à faire une seule fois :
+     * l'écriture en mémoire flash est lente et limitée en nombre de cycles)
+     */
+    public String uploadLogo(String printerId, String key, String base64, int width, String dither, int threshold) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        ImageRasterizer.Raster raster = rasterizeImage(base64, width, session.getProfile().paperWidthDots, parseDither(dither), threshold);
+        EscPosEncoder encoder = new EscPosEncoder(raster.data.length + 32).defineNvGraphics(key, raster);
+        Log.i(TAG, "Logo " + key + " envoyé en mémoire NV : " + encoder.size() + " octets");
+        return session.submit(encoder);
+    }
+
+    /**
+     * Imprimer un logo déjà enregistré en mémoire NV (quelques octets au lieu de l'image entière)
+     */
+    public String printLogo(String printerId, String key, String align) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        return session.submit(EscPosEncoder.obtain().align(align).printNvGraphics(key));
+    }
+
+    public String deleteLogo(String printerId, String key) throws Exception {
+        PrinterSession session = pool.resolve(printerId);
+        return session.submit(EscPosEncoder.obtain().deleteNvGraphics(key));
+    }
+
+    /**
+     * Décoder et tramer une image, sans dépasser maxWidth (largeur imprimable du profil)
+     */
+    private ImageRasterizer.Raster rasterizeImage(String base64, int width, int maxWidth, ImageRasterizer.Dither dither, int threshold) throws Exception {
+        int comma = base64.indexOf(',');
+        if (base64.startsWith("data:") && comma > 0) base64 = base64.substring(comma + 1);
+        byte[] encoded = Base64.decode(base64, Base64.DEFAULT);
+
+        // Lire les dimensions d'abord pour sous-échantillonner dès le décodage les images trop grandes
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(encoded, 0, encoded.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) throw new Exception("Image illisible");
+        int targetWidth = Math.min(width > 0 ? width : bounds.outWidth, maxWidth);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 1;
+        while (bounds.outWidth / (options.inSampleSize * 2) >= targetWidth) options.inSampleSize *= 2;
+        Bitmap bitmap = BitmapFactory.decodeByteArray(encoded, 0, encoded.length, options);
+        if (bitmap == null) throw new Exception("Image illisible");
+
+        try {
+            int w = bitmap.getWidth();
+            int h = bitmap.getHeight();
+            int[] pixels = new int[w * h];
+            bitmap.getPixels(pixels, 0, w, 0, 0, w, h);
+            return ImageRasterizer.rasterize(pixels, w, h, targetWidth, dither, threshold);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    private static int alignment(String align) {
+        if ("center".equalsIgnoreCase(align)) return EscPosEncoder.ALIGN_CENTER;
+        if ("right".equalsIgnoreCase(align)) return EscPosEncoder.ALIGN_RIGHT;
+        return EscPosEncoder.ALIGN_LEFT;
+    }
+
+    private static ImageRasterizer.Dither parseDither(String dither) {
+        if ("bayer".equalsIgnoreCase(dither)) return ImageRasterizer.Dither.BAYER;
+        if ("floydSteinberg".equalsIgnoreCase(dither)) return ImageRasterizer.Dither.FLOYD_STEINBERG;
+        return ImageRasterizer.Dither.THRESHOLD;
+    }
+
     /**
      * Connexion Wifi
      */
-    public boolean connectWifi(String ip, int port) throws Exception {
+    public boolean connectWifi(String printerId, String ip, int port, TcpTransport.Options options, String profileId) throws Exception {
         if (ip == null || ip.isEmpty()) throw new Exception("IP manquante");
+        final String id = idOrDefault(printerId, ConnectionPool.DEFAULT_WIFI);
+        PrinterProfile forced = parseProfile(profileId);
         try {
-            wifiSocket = new Socket(ip, port);
-            wifiOutputStream = wifiSocket.getOutputStream();
-            isWifiConnected = true;
-            Log.i(TAG, "Connecté en Wifi à " + ip + ":" + port);
+            TcpTransport transport = TcpTransport.open(ip, port, options, (t, state) -> {
+                Log.i(TAG, "Wifi " + id + " : " + state);
+                JSObject ret = new JSObject();
+                ret.put("printerId", id);
+                ret.put("state", state.name());
+                eventListener.onEvent("connectionStateChange", ret);
+            });
+            String address = ip + ":" + port;
+            openSession(id, transport, address, resolveProfile(address, transport, forced));
+            Log.i(TAG, "Connecté en Wifi à " + address);
             return true;
         } catch (Exception e) {
             Log.e(TAG, "Erreur connexion Wifi", e);
@@ -266,24 +1122,72 @@ public class ESCPOSPrinter {
     }
 
     /**
-     * Déconnecter Wifi
+     * Chercher les imprimantes réseau sur un sous-réseau (par défaut celui du Wifi).
+     * Chaque imprimante trouvée est publiée tout de suite en événement "printerFound" ;
+     * la liste complète est renvoyée à la fin du balayage. Un nouveau balayage
+     * arrête le précédent, qui rend la main avec ce qu'il a déjà trouvé.
      */
-    public void disconnectWifi() {
+    public JSArray discoverNetworkPrinters(String cidr, int[] ports, int timeoutMs) throws Exception {
+        String range = cidr != null ? cidr : NetworkDiscovery.localCidr();
+        if (range == null) throw new Exception("Aucun réseau Wifi détecté");
+
+        NetworkDiscovery.Options options = new NetworkDiscovery.Options();
+        if (ports != null && ports.length > 0) options.ports = ports;
+        if (timeoutMs > 0) options.timeoutMs = timeoutMs;
+
+        NetworkDiscovery scan = new NetworkDiscovery();
+        NetworkDiscovery previous;
+        synchronized (this) {
+            previous = discovery;
+            discovery = scan;
+        }
+        if (previous != null) previous.cancel();
+        List<NetworkDiscovery.Result> found;
         try {
-            if (wifiOutputStream != null) wifiOutputStream.close();
-            if (wifiSocket != null) wifiSocket.close();
-        } catch (Exception e) {
-            Log.e(TAG, "Erreur disconnectWifi", e);
+            Log.i(TAG, "Recherche d'imprimantes sur " + range);
+            found = scan.scan(range, options, (host, port) -> {
+                JSObject ret = new JSObject();
+                ret.put("ip", host);
+                ret.put("port", port);
+                eventListener.onEvent("printerFound", ret);
+            });
+        } catch (IllegalArgumentException e) {
+            throw new Exception(e.getMessage());
+        } finally {
+            synchronized (this) {
+                if (discovery == scan) discovery = null;
+            }
+        }
+
+        JSArray printers = new JSArray();
+        for (NetworkDiscovery.Result result : found) {
+            JSObject printer = new JSObject();
+            printer.put("ip", result.host);
+            printer.put("port", result.port);
+            printers.put(printer);
         }
-        isWifiConnected = false;
+        Log.i(TAG, found.size() + " imprimante(s) trouvée(s) sur " + range);
+        return printers;
+    }
+
+    public void stopNetworkDiscovery() {
+        NetworkDiscovery scan = discovery;
+        if (scan != null) scan.cancel();
+    }
+
+    /**
+     * Déconnecter Wifi
+     */
+    public void disconnectWifi(String printerId) {
+        pool.close(idOrDefault(printerId, ConnectionPool.DEFAULT_WIFI));
         Log.i(TAG, "Déconnecté Wifi");
     }
 
     /**
      * Vérifier si Wifi est connecté
      */
-    public boolean isWifiConnected() {
-        return isWifiConnected;
+    public boolean isWifiConnected(String printerId) {
+        return pool.isConnected(idOrDefault(printerId, ConnectionPool.DEFAULT_WIFI));
     }
 
 
@@ -311,12 +1215,13 @@ public class ESCPOSPrinter {
     }
 
 
-    public boolean connectUsb(int vendorId, int productId) throws Exception {
+    public boolean connectUsb(String printerId, int vendorId, int productId, boolean pipelined, String profileId) throws Exception {
 //        if (!usbManager.hasPermission(targetDevice)) {
 //            requestUsbPermission(targetDevice);
 //            throw new Exception("Demande de permission USB envoyée, réessaie ensuite.");
 //        }
         if (usbManager == null) throw new Exception("USB Manager non disponible.");
+        PrinterProfile forced = parseProfile(profileId);
 
         HashMap<String, UsbDevice> deviceList = usbManager.getDeviceList();
         UsbDevice targetDevice = null;
@@ -334,54 +1239,23 @@ public class ESCPOSPrinter {
             throw new Exception("No permission to access USB device");
         }
 
-        UsbDeviceConnection connection = usbManager.openDevice(targetDevice);
-        if (connection == null) throw new Exception("Failed to open USB device");
-
-        // Trouver l’endpoint de sortie (bulk OUT)
-        UsbInterface usbInterface = targetDevice.getInterface(0);
-        connection.claimInterface(usbInterface, true);
-
-        UsbEndpoint endpointOut = null;
-        for (int i = 0; i < usbInterface.getEndpointCount(); i++) {
-            UsbEndpoint ep = usbInterface.getEndpoint(i);
-            if (ep.getType() == UsbConstants.USB_ENDPOINT_XFER_BULK &&
-                    ep.getDirection() == UsbConstants.USB_DIR_OUT) {
-                endpointOut = ep;
-                break;
-            }
-        }
-
-        if (endpointOut == null) {
-            connection.close();
-            throw new Exception("No bulk OUT endpoint found");
-        }
-
-        this.usbConnection = connection;
-        this.usbEndpoint = endpointOut;
-        this.isUsbConnected = true;
+        UsbTransport transport = UsbTransport.open(usbManager, targetDevice, pipelined);
+        String address = "usb:" + vendorId + ":" + productId;
+        openSession(idOrDefault(printerId, ConnectionPool.DEFAULT_USB), transport, address, resolveProfile(address, transport, forced));
 
         Log.i(TAG, "Connecté USB: vendorId=" + vendorId + " productId=" + productId);
 
         return true;
     }
 
-    public void disconnectUsb() {
-        try {
-            if (usbConnection != null) {
-                usbConnection.close();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error during USB disconnect", e);
-        }
-        usbConnection = null;
-        usbEndpoint = null;
-        isUsbConnected = false;
+    public void disconnectUsb(String printerId) {
+        pool.close(idOrDefault(printerId, ConnectionPool.DEFAULT_USB));
         Log.i (TAG, "USB Déconnecté.");
     }
 
 
-    public boolean isUsbConnected() {
-        return isUsbConnected && usbConnection != null;
+    public boolean isUsbConnected(String printerId) {
+        return pool.isConnected(idOrDefault(printerId, ConnectionPool.DEFAULT_USB));
     }
 
     private final BroadcastReceiver usbPermissionReceiver = new BroadcastReceiver() {
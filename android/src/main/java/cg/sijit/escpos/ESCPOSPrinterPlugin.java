@@ -13,6 +13,8 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.annotation.Permission;
 import com.getcapacitor.annotation.PermissionCallback;
 
+import java.util.concurrent.Executor;
+
 /**
  * Plugin Capacitor pour imprimer sur imprimantes ESC/POS via Bluetooth et Wifi.
  */
@@ -46,12 +48,19 @@ import com.getcapacitor.annotation.PermissionCallback;
 public class ESCPOSPrinterPlugin extends Plugin {
 
     private static final String TAG = "ESCPOSPrinterPlugin";
+    // Période par défaut de l'événement "metrics"
+    private static final int DEFAULT_METRICS_INTERVAL_MS = 10000;
     private ESCPOSPrinter implementation;
 
     @Override
     public void load() {
         // Important : getContext() n’est pas dispo dans le constructeur, il faut le faire ici
-        implementation = new ESCPOSPrinter(getContext());
+        implementation = new ESCPOSPrinter(getContext(), this::notifyListeners);
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        if (implementation != null) implementation.release();
     }
 
     @PluginMethod
@@ -67,12 +76,22 @@ public class ESCPOSPrinterPlugin extends Plugin {
     public void connect(PluginCall call) {
         if (!checkPermission(call, "bluetooth")) return;
         String deviceName = call.getString("deviceName");
-        if (deviceName == null) {
-            call.reject("deviceName is required");
+        String address = call.getString("address");
+        if (deviceName == null && address == null) {
+            call.reject("deviceName or address is required");
             return;
         }
         try {
-            boolean connected = implementation.connect(deviceName);
+            WritePacer.Options pacing = new WritePacer.Options();
+            pacing.chunkSize = call.getInt("chunkSize", pacing.chunkSize);
+            pacing.chunkDelayMs = call.getInt("chunkDelay", pacing.chunkDelayMs);
+            pacing.adaptive = call.getBoolean("adaptivePacing", pacing.adaptive);
+            pacing.maxChunkDelayMs = call.getInt("maxChunkDelay", pacing.maxChunkDelayMs);
+            pacing.waitForDrain = call.getBoolean("waitForDrain", pacing.waitForDrain);
+            pacing.drainTimeoutMs = call.getInt("drainTimeout", pacing.drainTimeoutMs);
+            // Blocs et pause non précisés : ceux du profil de l'imprimante
+            boolean profilePacing = !call.getData().has("chunkSize") && !call.getData().has("chunkDelay");
+            boolean connected = implementation.connect(call.getString("printerId"), deviceName, address, pacing, profilePacing, call.getString("profile"));
             call.resolve(new JSObject().put("connected", connected));
         } catch (Exception e) {
             Log.e(TAG, "Connection failed", e);
@@ -82,39 +101,439 @@ public class ESCPOSPrinterPlugin extends Plugin {
 
     @PluginMethod
     public void disconnect(PluginCall call) {
-        implementation.disconnect();
+        implementation.disconnect(call.getString("printerId"));
         call.resolve(new JSObject().put("disconnected", true));
     }
 
     @PluginMethod
     public void isConnected(PluginCall call) {
-        boolean connected = implementation.isConnected();
+        boolean connected = implementation.isConnected(call.getString("printerId"));
         call.resolve(new JSObject().put("connected", connected));
     }
 
+    @PluginMethod
+    public void listPrinters(PluginCall call) {
+        JSObject ret = new JSObject();
+        ret.put("printers", implementation.listPrinters());
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void getTransportStats(PluginCall call) {
+        try {
+            call.resolve(implementation.getTransportStats(call.getString("printerId")));
+        } catch (Exception e) {
+            call.reject("Failed to get transport stats: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void startStatusPolling(PluginCall call) {
+        try {
+            implementation.startStatusPolling(
+                call.getString("printerId"),
+                call.getInt("interval", StatusPoller.DEFAULT_INTERVAL_MS),
+                call.getBoolean("asb", false)
+            );
+            call.resolve(new JSObject().put("success", true));
+        } catch (Exception e) {
+            call.reject("Failed to start status polling: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void stopStatusPolling(PluginCall call) {
+        try {
+            implementation.stopStatusPolling(call.getString("printerId"));
+            call.resolve(new JSObject().put("success", true));
+        } catch (Exception e) {
+            call.reject("Failed to stop status polling: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void getPrinterStatus(PluginCall call) {
+        try {
+            call.resolve(implementation.getPrinterStatus(call.getString("printerId")));
+        } catch (Exception e) {
+            call.reject("Failed to get printer status: " + e.getMessage());
+        }
+    }
+
     @PluginMethod
     public void printText(PluginCall call) {
-        if (!checkPermission(call, "bluetooth")) return;
         String text = call.getString("text");
         if (text == null) {
             call.reject("text is required");
             return;
         }
         try {
-            implementation.printText(text);
-            call.resolve(new JSObject().put("success", true));
+            int priority = call.getInt("priority", PrintQueue.PRIORITY_NORMAL);
+            String jobId = "raster".equals(call.getString("mode"))
+                ? implementation.printRasterText(call.getString("printerId"), call.getData(), priority)
+                : implementation.printText(call.getString("printerId"), text, priority);
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("jobId", jobId);
+            call.resolve(ret);
         } catch (Exception e) {
             Log.e(TAG, "Print failed", e);
             call.reject("Print failed: " + e.getMessage());
         }
     }
 
+    @PluginMethod
+    public void printBatch(PluginCall call) {
+        JSArray operations = call.getArray("operations");
+        if (operations == null) {
+            call.reject("operations is required");
+            return;
+        }
+        try {
+            String jobId = implementation.printBatch(call.getString("printerId"), operations, call.getInt("priority", PrintQueue.PRIORITY_NORMAL));
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("jobId", jobId);
+            call.resolve(ret);
+        } catch (Exception e) {
+            Log.e(TAG, "Batch print failed", e);
+            call.reject("Batch print failed: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void beginStream(PluginCall call) {
+        try {
+            String streamId = implementation.beginStream(call.getString("printerId"), call.getInt("priority", PrintQueue.PRIORITY_NORMAL));
+            JSObject ret = new JSObject();
+            ret.put("streamId", streamId);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Stream start failed: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void appendChunk(PluginCall call) {
+        String streamId = call.getString("streamId");
+        String text = call.getString("text");
+        JSArray operations = call.getArray("operations");
+        if (streamId == null || (text == null && operations == null)) {
+            call.reject("streamId and text or operations are required");
+            return;
+        }
+        // appendChunk attend que l'imprimante suive : hors du thread des plugins,
+        // sur l'exécuteur du flux pour garder l'ordre des morceaux
+        Executor writer;
+        try {
+            writer = implementation.streamWriter(streamId);
+        } catch (Exception e) {
+            call.reject("Stream append failed: " + e.getMessage());
+            return;
+        }
+        writer.execute(() -> {
+            try {
+                implementation.appendChunk(streamId, text, operations);
+                call.resolve(new JSObject().put("success", true));
+            } catch (Exception e) {
+                call.reject("Stream append failed: " + e.getMessage());
+            }
+        });
+    }
+
+    @PluginMethod
+    public void endStream(PluginCall call) {
+        String streamId = call.getString("streamId");
+        if (streamId == null) {
+            call.reject("streamId is required");
+            return;
+        }
+        // Après les morceaux déjà soumis
+        Executor writer;
+        try {
+            writer = implementation.streamWriter(streamId);
+        } catch (Exception e) {
+            call.reject("Stream end failed: " + e.getMessage());
+            return;
+        }
+        writer.execute(() -> {
+            try {
+                implementation.endStream(streamId);
+                call.resolve(new JSObject().put("success", true));
+            } catch (Exception e) {
+                call.reject("Stream end failed: " + e.getMessage());
+            }
+        });
+    }
+
+    @PluginMethod
+    public void printTable(PluginCall call) {
+        if (call.getArray("columns") == null || call.getArray("rows") == null) {
+            call.reject("columns and rows are required");
+            return;
+        }
+        printTable(call, call.getData());
+    }
+
+    @PluginMethod
+    public void printColumns(PluginCall call) {
+        JSArray values = call.getArray("values");
+        if (call.getArray("columns") == null || values == null) {
+            call.reject("columns and values are required");
+            return;
+        }
+        JSObject table = call.getData();
+        JSArray rows = new JSArray();
+        rows.put(values);
+        table.put("rows", rows);
+        printTable(call, table);
+    }
+
+    private void printTable(PluginCall call, JSObject table) {
+        try {
+            String jobId = implementation.printTable(call.getString("printerId"), table, call.getInt("priority", PrintQueue.PRIORITY_NORMAL));
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("jobId", jobId);
+            call.resolve(ret);
+        } catch (Exception e) {
+            Log.e(TAG, "Table print failed", e);
+            call.reject("Table print failed: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void registerTemplate(PluginCall call) {
+        String templateId = call.getString("templateId");
+        String template = call.getString("template");
+        if (templateId == null || template == null) {
+            call.reject("templateId and template are required");
+            return;
+        }
+        try {
+            implementation.registerTemplate(templateId, template);
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to register template: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void printTemplate(PluginCall call) {
+        String templateId = call.getString("templateId");
+        if (templateId == null) {
+            call.reject("templateId is required");
+            return;
+        }
+        try {
+            String jobId = implementation.printTemplate(
+                call.getString("printerId"),
+                templateId,
+                call.getObject("data", new JSObject()),
+                call.getInt("priority", PrintQueue.PRIORITY_NORMAL)
+            );
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("jobId", jobId);
+            call.resolve(ret);
+        } catch (Exception e) {
+            Log.e(TAG, "Template print failed", e);
+            call.reject("Template print failed: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void getMetrics(PluginCall call) {
+        call.resolve(implementation.getMetrics(call.getBoolean("reset", false)));
+    }
+
+    @PluginMethod
+    public void startMetricsEvents(PluginCall call) {
+        int interval = call.getInt("interval", DEFAULT_METRICS_INTERVAL_MS);
+        if (interval <= 0) {
+            call.reject("interval must be positive");
+            return;
+        }
+        implementation.startMetricsEvents(interval);
+        JSObject ret = new JSObject();
+        ret.put("success", true);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void stopMetricsEvents(PluginCall call) {
+        implementation.stopMetricsEvents();
+        JSObject ret = new JSObject();
+        ret.put("success", true);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void getCacheStats(PluginCall call) {
+        call.resolve(implementation.getCacheStats());
+    }
+
+    @PluginMethod
+    public void cancelJob(PluginCall call) {
+        String jobId = call.getString("jobId");
+        if (jobId == null) {
+            call.reject("jobId is required");
+            return;
+        }
+        JSObject ret = new JSObject();
+        ret.put("cancelled", implementation.cancelJob(jobId));
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void printBarcode(PluginCall call) {
+        String data = call.getString("data");
+        if (data == null) {
+            call.reject("data is required");
+            return;
+        }
+        try {
+            String jobId = implementation.printBarcode(
+                call.getString("printerId"),
+                data,
+                call.getString("type", "CODE128"),
+                call.getInt("height", ESCPOSPrinter.DEFAULT_BARCODE_HEIGHT),
+                call.getInt("width", ESCPOSPrinter.DEFAULT_BARCODE_MODULE_WIDTH),
+                call.getString("hriPosition", "below"),
+                call.getString("hriFont", "A"),
+                call.getString("align", "center")
+            );
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("jobId", jobId);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Barcode print failed: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void printQRCode(PluginCall call) {
+        String data = call.getString("data");
+        if (data == null) {
+            call.reject("data is required");
+            return;
+        }
+        try {
+            String jobId = implementation.printQRCode(
+                call.getString("printerId"),
+                data,
+                call.getInt("size", ESCPOSPrinter.DEFAULT_QR_MODULE_SIZE),
+                call.getString("errorCorrection", "M"),
+                call.getInt("model", 2),
+                call.getString("align", "center")
+            );
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("jobId", jobId);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("QR code print failed: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void printImage(PluginCall call) {
+        String image = call.getString("image");
+        if (image == null) {
+            call.reject("image is required");
+            return;
+        }
+        try {
+            String jobId = implementation.printImage(
+                call.getString("printerId"),
+                image,
+                call.getInt("width", 0),
+                call.getString("dither", "threshold"),
+                call.getInt("threshold", ImageRasterizer.DEFAULT_THRESHOLD),
+                call.getString("mode", "raster"),
+                call.getString("align", "center"),
+                call.getBoolean("cache", true)
+            );
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("jobId", jobId);
+            call.resolve(ret);
+        } catch (Exception e) {
+            Log.e(TAG, "Image print failed", e);
+            call.reject("Image print failed: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void uploadLogo(PluginCall call) {
+        String key = call.getString("key");
+        String image = call.getString("image");
+        if (key == null || image == null) {
+            call.reject("key and image are required");
+            return;
+        }
+        try {
+            String jobId = implementation.uploadLogo(
+                call.getString("printerId"),
+                key,
+                image,
+                call.getInt("width", 0),
+                call.getString("dither", "threshold"),
+                call.getInt("threshold", ImageRasterizer.DEFAULT_THRESHOLD)
+            );
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("jobId", jobId);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Logo upload failed: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void printLogo(PluginCall call) {
+        String key = call.getString("key");
+        if (key == null) {
+            call.reject("key is required");
+            return;
+        }
+        try {
+            String jobId = implementation.printLogo(call.getString("printerId"), key, call.getString("align", "center"));
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("jobId", jobId);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Logo print failed: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void deleteLogo(PluginCall call) {
+        String key = call.getString("key");
+        if (key == null) {
+            call.reject("key is required");
+            return;
+        }
+        try {
+            String jobId = implementation.deleteLogo(call.getString("printerId"), key);
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("jobId", jobId);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Logo delete failed: " + e.getMessage());
+        }
+    }
+
     @PluginMethod
     public void setBold(PluginCall call) {
-        if (!checkPermission(call, "bluetooth")) return;
         Boolean bold = call.getBoolean("bold", false);
         try {
-            implementation.setBold(bold);
+            implementation.setBold(call.getString("printerId"), bold);
             call.resolve(new JSObject().put("success", true));
         } catch (Exception e) {
             call.reject("Failed to set bold: " + e.getMessage());
@@ -123,10 +542,9 @@ public class ESCPOSPrinterPlugin extends Plugin {
 
     @PluginMethod
     public void setAlignment(PluginCall call) {
-        if (!checkPermission(call, "bluetooth")) return;
         String align = call.getString("align", "left");
         try {
-            implementation.setAlignment(align);
+            implementation.setAlignment(call.getString("printerId"), align);
             call.resolve(new JSObject().put("success", true));
         } catch (Exception e) {
             call.reject("Failed to set alignment: " + e.getMessage());
@@ -135,21 +553,88 @@ public class ESCPOSPrinterPlugin extends Plugin {
 
     @PluginMethod
     public void setTextSize(PluginCall call) {
-        if (!checkPermission(call, "bluetooth")) return;
         int size = call.getInt("size", 1);
         try {
-            implementation.setTextSize(size);
+            implementation.setTextSize(call.getString("printerId"), size);
             call.resolve(new JSObject().put("success", true));
         } catch (Exception e) {
             call.reject("Failed to set text size: " + e.getMessage());
         }
     }
 
+    @PluginMethod
+    public void setCodePage(PluginCall call) {
+        String codePage = call.getString("codePage");
+        if (codePage == null) {
+            call.reject("Code page is required");
+            return;
+        }
+        String fallback = call.getString("fallback", "?");
+        try {
+            implementation.setCodePage(
+                call.getString("printerId"),
+                codePage,
+                call.getBoolean("autoSwitch", true),
+                fallback.isEmpty() ? '?' : fallback.charAt(0)
+            );
+            call.resolve(new JSObject().put("success", true));
+        } catch (Exception e) {
+            call.reject("Failed to set code page: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void listPrinterProfiles(PluginCall call) {
+        JSObject ret = new JSObject();
+        ret.put("profiles", implementation.listPrinterProfiles());
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void getPrinterProfile(PluginCall call) {
+        try {
+            call.resolve(implementation.getPrinterProfile(call.getString("printerId")));
+        } catch (Exception e) {
+            call.reject("Failed to get printer profile: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void setPrinterProfile(PluginCall call) {
+        String profile = call.getString("profile");
+        if (profile == null) {
+            call.reject("profile is required");
+            return;
+        }
+        // "auto" interroge l'imprimante : hors du thread des plugins
+        SerialExecutor.background(() -> {
+            try {
+                call.resolve(implementation.setPrinterProfile(call.getString("printerId"), profile));
+            } catch (Exception e) {
+                call.reject("Failed to set printer profile: " + e.getMessage());
+            }
+        });
+    }
+
+    @PluginMethod
+    public void setRasterCompression(PluginCall call) {
+        Boolean enabled = call.getBoolean("enabled");
+        if (enabled == null) {
+            call.reject("enabled is required");
+            return;
+        }
+        try {
+            implementation.setRasterCompression(call.getString("printerId"), enabled, call.getInt("feedUnitsPerDot", 1));
+            call.resolve(new JSObject().put("success", true));
+        } catch (Exception e) {
+            call.reject("Failed to set raster compression: " + e.getMessage());
+        }
+    }
+
     @PluginMethod
     public void cutPaper(PluginCall call) {
-        if (!checkPermission(call, "bluetooth")) return;
         try {
-            implementation.cutPaper();
+            implementation.cutPaper(call.getString("printerId"));
             call.resolve(new JSObject().put("success", true));
         } catch (Exception e) {
             call.reject("Failed to cut paper: " + e.getMessage());
@@ -236,22 +721,62 @@ public class ESCPOSPrinterPlugin extends Plugin {
             return;
         }
         try {
-            boolean connected = implementation.connectWifi(ip, port);
+            TcpTransport.Options options = new TcpTransport.Options();
+            options.connectTimeoutMs = call.getInt("connectTimeout", options.connectTimeoutMs);
+            options.writeTimeoutMs = call.getInt("writeTimeout", options.writeTimeoutMs);
+            options.tcpNoDelay = call.getBoolean("tcpNoDelay", options.tcpNoDelay);
+            options.keepAlive = call.getBoolean("keepAlive", options.keepAlive);
+            options.autoReconnect = call.getBoolean("autoReconnect", options.autoReconnect);
+            options.maxRetries = call.getInt("maxRetries", options.maxRetries);
+            options.initialRetryDelayMs = call.getInt("retryDelay", options.initialRetryDelayMs);
+            options.maxRetryDelayMs = call.getInt("maxRetryDelay", options.maxRetryDelayMs);
+            boolean connected = implementation.connectWifi(call.getString("printerId"), ip, port, options, call.getString("profile"));
             call.resolve(new JSObject().put("connected", connected));
         } catch (Exception e) {
             call.reject("Wifi connection failed: " + e.getMessage());
         }
     }
 
+    @PluginMethod
+    public void discoverNetworkPrinters(PluginCall call) {
+        String cidr = call.getString("cidr");
+        int timeout = call.getInt("timeout", 0);
+        int[] ports;
+        try {
+            JSArray portArray = call.getArray("ports", new JSArray());
+            ports = new int[portArray.length()];
+            for (int i = 0; i < ports.length; i++) ports[i] = portArray.getInt(i);
+        } catch (Exception e) {
+            call.reject("ports must be an array of numbers");
+            return;
+        }
+        // Le balayage bloque jusqu'au délai : hors du thread des plugins
+        SerialExecutor.background(() -> {
+            try {
+                JSObject ret = new JSObject();
+                ret.put("printers", implementation.discoverNetworkPrinters(cidr, ports, timeout));
+                call.resolve(ret);
+            } catch (Exception e) {
+                call.reject("Network discovery failed: " + e.getMessage());
+            }
+        });
+    }
+
+    @PluginMethod
+    public void stopNetworkDiscovery(PluginCall call) {
+        implementation.stopNetworkDiscovery();
+        call.resolve(new JSObject().put("success", true));
+    }
+
     @PluginMethod
     public void disconnectWifi(PluginCall call) {
-        implementation.disconnectWifi();
+        implementation.disconnectWifi(call.getString("printerId"));
         call.resolve(new JSObject().put("disconnected", true));
     }
 
     @PluginMethod
     public void isWifiConnected(PluginCall call) {
-        boolean connected = implementation.isWifiConnected();
+        boolean connected = implementation.isWifiConnected(call.getString("printerId"));
         call.resolve(new JSObject().put("connected", connected));
     }  
 
@@ -278,7 +803,13 @@ public class ESCPOSPrinterPlugin extends Plugin {
             return;
         }
         try {
-            boolean connected = implementation.connectUsb(vendorId, productId);
+            boolean connected = implementation.connectUsb(
+                call.getString("printerId"),
+                vendorId,
+                productId,
+                call.getBoolean("pipelined", false),
+                call.getString("profile")
+            );
             call.resolve(new JSObject().put("connected", connected));
         } catch (Exception e) {
             call.reject("USB connection failed: " + e.getMessage());
@@ -287,13 +818,13 @@ public class ESCPOSPrinterPlugin extends Plugin {
 
     @PluginMethod
     public void disconnectUsb(PluginCall call) {
-        implementation.disconnectUsb();
+        implementation.disconnectUsb(call.getString("printerId"));
         call.resolve(new JSObject().put("disconnected", true));
     }
 
     @PluginMethod
     public void isUsbConnected(PluginCall call) {
-        boolean connected = implementation.isUsbConnected();
+        boolean connected = implementation.isUsbConnected(call.getString("printerId"));
         call.resolve(new JSObject().put("connected", connected));
     }
 
@@ -0,0 +1,710 @@
+package cg.sijit.escpos;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Encodeur de commandes ESC/POS dans un buffer réutilisable.
+ *
+ * Les commandes et le texte sont ajoutés directement dans un byte[] extensible,
+ * sans String ni byte[] intermédiaire. Le buffer est remis à zéro et réutilisé
+ * entre deux impressions (voir {@link #obtain()} / {@link #recycle()}).
+ *
+ * Classe Java pure (aucune dépendance Android) : testable sur la JVM.
+ */
+public class EscPosEncoder {
+
+    public static final byte ESC = 0x1B;
+    public static final byte GS = 0x1D;
+
+    public static final int ALIGN_LEFT = 0;
+    public static final int ALIGN_CENTER = 1;
+    public static final int ALIGN_RIGHT = 2;
+
+    public static final int FONT_A = 0;
+    public static final int FONT_B = 1;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    // Hauteur max (en points) d'une bande d'image
+    private static final int RASTER_BAND_HEIGHT = 256;
+    // Lignes blanches consécutives à partir desquelles une avance papier remplace l'image
+    private static final int MIN_BLANK_BAND = 8;
+
+    /** compactRasterImage : garder toute la largeur de l'image */
+    public static final int TRIM_NONE = -1;
+    private static final int MAX_POOL_SIZE = 4;
+    // Au-delà de cette taille, le buffer n'est pas conservé dans le pool
+    private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+
+    private static final ArrayDeque<EscPosEncoder> POOL = new ArrayDeque<>(MAX_POOL_SIZE);
+
+    private static final CodePage[] NO_PAGES = new CodePage[0];
+
+    private byte[] buffer;
+    private int size;
+    private long obtainedAt;
+
+    // Page de code sélectionnée sur l'imprimante (null = texte envoyé en UTF-8)
+    private CodePage codePage;
+    // Pages essayées quand un caractère manque dans la page courante
+    private CodePage[] alternatePages = NO_PAGES;
+    private byte fallback = '?';
+
+    // Variantes de commandes du profil de l'imprimante (voir profile())
+    private PrinterProfile.Cut cutStyle = PrinterProfile.Cut.FULL;
+    private int maxTextSize = 8;
+
+    public EscPosEncoder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EscPosEncoder(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+        this.obtainedAt = System.nanoTime();
+    }
+
+    /**
+     * Récupérer un encodeur vide depuis le pool (ou en créer un)
+     */
+    public static EscPosEncoder obtain() {
+        synchronized (POOL) {
+            EscPosEncoder encoder = POOL.pollFirst();
+            if (encoder != null) {
+                encoder.obtainedAt = System.nanoTime();
+                return encoder;
+            }
+        }
+        return new EscPosEncoder();
+    }
+
+    /**
+     * Instant (System.nanoTime) où l'encodage a commencé, pour mesurer sa durée
+     */
+    public long obtainedAt() {
+        return obtainedAt;
+    }
+
+    /**
+     * Rendre l'encodeur au pool une fois ses octets envoyés
+     */
+    public void recycle() {
+        reset();
+        if (buffer.length > MAX_RETAINED_CAPACITY) return;
+        synchronized (POOL) {
+            if (POOL.size() < MAX_POOL_SIZE) POOL.addFirst(this);
+        }
+    }
+
+    public EscPosEncoder reset() {
+        size = 0;
+        codePage = null;
+        alternatePages = NO_PAGES;
+        fallback = '?';
+        cutStyle = PrinterProfile.Cut.FULL;
+        maxTextSize = 8;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Buffer interne, valide de 0 à {@link #size()} (pas de copie)
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    // Commandes
+
+    /**
+     * ESC @ : réinitialiser l'imprimante
+     */
+    public EscPosEncoder initialize() {
+        return raw(ESC, (byte) 0x40);
+    }
+
+    /**
+     * ESC E n : gras
+     */
+    public EscPosEncoder bold(boolean bold) {
+        return raw(ESC, (byte) 0x45, (byte) (bold ? 1 : 0));
+    }
+
+    /**
+     * ESC M n : police A (12 points de large) ou B (9 points)
+     */
+    public EscPosEncoder font(int font) {
+        return raw(ESC, (byte) 0x4D, (byte) font);
+    }
+
+    /**
+     * ESC - n : souligné
+     */
+    public EscPosEncoder underline(boolean underline) {
+        return raw(ESC, (byte) 0x2D, (byte) (underline ? 1 : 0));
+    }
+
+    /**
+     * ESC a n : alignement ("left", "center" ou "right")
+     */
+    public EscPosEncoder align(String align) {
+        int value = ALIGN_LEFT;
+        if ("center".equalsIgnoreCase(align)) value = ALIGN_CENTER;
+        else if ("right".equalsIgnoreCase(align)) value = ALIGN_RIGHT;
+        return align(value);
+    }
+
+    public EscPosEncoder align(int align) {
+        return raw(ESC, (byte) 0x61, (byte) align);
+    }
+
+    /**
+     * Adapter cut() et textSize() à l'imprimante ; aucun octet n'est ajouté
+     */
+    public EscPosEncoder profile(PrinterProfile profile) {
+        cutStyle = profile.cut;
+        maxTextSize = profile.maxTextSize;
+        return this;
+    }
+
+    /**
+     * GS ! n : taille du texte (1 = normal, 2 = double, 3 = triple...), bornée par le profil
+     */
+    public EscPosEncoder textSize(int size) {
+        int n = Math.max(1, Math.min(size, maxTextSize)) - 1;
+        return raw(GS, (byte) 0x21, (byte) ((n << 4) | n));
+    }
+
+    /**
+     * ESC d n : avancer de n lignes
+     */
+    public EscPosEncoder feed(int lines) {
+        return raw(ESC, (byte) 0x64, (byte) Math.max(0, Math.min(lines, 255)));
+    }
+
+    /**
+     * ESC J n : avance du papier de n unités verticales (découpée par 255)
+     */
+    public EscPosEncoder feedUnits(int units) {
+        while (units > 0) {
+            int step = Math.min(units, 255);
+            raw(ESC, (byte) 0x4A, (byte) step);
+            units -= step;
+        }
+        return this;
+    }
+
+    /**
+     * Coupe selon le profil : GS V 0 (complète), GS V 66 0 (avance jusqu'au
+     * couteau puis coupe partielle) ou, sans massicot, avance jusqu'à la barre
+     */
+    public EscPosEncoder cut() {
+        switch (cutStyle) {
+            case FEED_PARTIAL:
+                return raw(GS, (byte) 0x56, (byte) 0x42).raw((byte) 0x00);
+            case NONE:
+                return feed(4);
+            default:
+                return raw(GS, (byte) 0x56, (byte) 0x00);
+        }
+    }
+
+    // Images
+
+    /**
+     * GS v 0 : image raster, envoyée par bandes pour ne pas saturer le buffer de l'imprimante
+     */
+    public EscPosEncoder rasterImage(ImageRasterizer.Raster raster) {
+        for (int top = 0; top < raster.height; top += RASTER_BAND_HEIGHT) {
+            int lines = Math.min(RASTER_BAND_HEIGHT, raster.height - top);
+            ensureCapacity(8 + raster.widthBytes * lines);
+            raw(GS, (byte) 0x76, (byte) 0x30);
+            raw((byte) 0x00);
+            raw((byte) (raster.widthBytes & 0xFF), (byte) ((raster.widthBytes >> 8) & 0xFF));
+            raw((byte) (lines & 0xFF), (byte) ((lines >> 8) & 0xFF));
+            raw(raster.data, top * raster.widthBytes, lines * raster.widthBytes);
+        }
+        return this;
+    }
+
+    /**
+     * GS v 0 compacté, sans perte : les bandes entièrement blanches deviennent
+     * une avance papier (ESC J) et les marges blanches de chaque bande sont
+     * retirées sans déplacer l'image selon l'alignement courant (à droite si
+     * aligné à gauche, à gauche si aligné à droite, autant des deux côtés si
+     * centré ; TRIM_NONE garde toute la largeur). feedUnitsPerDot : unités
+     * ESC J par point d'image (1 à 203 dpi, 2 quand l'unité est 1/360").
+     */
+    public EscPosEncoder compactRasterImage(ImageRasterizer.Raster raster, int align, int feedUnitsPerDot) {
+        int top = 0;
+        while (top < raster.height) {
+            int blank = blankRows(raster, top);
+            if (blank >= MIN_BLANK_BAND || top + blank == raster.height) {
+                feedUnits(blank * feedUnitsPerDot);
+                top += blank;
+                continue;
+            }
+            // La bande s'arrête avant la prochaine zone blanche assez haute pour être sautée
+            int limit = Math.min(raster.height, top + RASTER_BAND_HEIGHT);
+            int end = top;
+            while (end < limit) {
+                int run = blankRows(raster, end);
+                if (run >= MIN_BLANK_BAND || end + run == raster.height) break;
+                end += Math.max(1, run);
+            }
+            int lines = Math.min(end, limit) - top;
+
+            int left = 0;
+            int right = 0;
+            if (align != TRIM_NONE) {
+                left = align == ALIGN_LEFT ? 0 : blankBytes(raster, top, lines, true);
+                right = align == ALIGN_RIGHT ? 0 : blankBytes(raster, top, lines, false);
+                if (align == ALIGN_CENTER) left = right = Math.min(left, right);
+            }
+            int widthBytes = raster.widthBytes - left - right;
+            ensureCapacity(8 + widthBytes * lines);
+            raw(GS, (byte) 0x76, (byte) 0x30);
+            raw((byte) 0x00);
+            raw((byte) (widthBytes & 0xFF), (byte) ((widthBytes >> 8) & 0xFF));
+            raw((byte) (lines & 0xFF), (byte) ((lines >> 8) & 0xFF));
+            for (int y = top; y < top + lines; y++) {
+                raw(raster.data, y * raster.widthBytes + left, widthBytes);
+            }
+            top += lines;
+        }
+        return this;
+    }
+
+    /**
+     * Nombre de lignes entièrement blanches à partir de la ligne top
+     */
+    private static int blankRows(ImageRasterizer.Raster raster, int top) {
+        int y = top;
+        while (y < raster.height) {
+            int offset = y * raster.widthBytes;
+            for (int x = 0; x < raster.widthBytes; x++) {
+                if (raster.data[offset + x] != 0) return y - top;
+            }
+            y++;
+        }
+        return y - top;
+    }
+
+    /**
+     * Octets blancs sur toute la hauteur de la bande, côté gauche ou droit
+     */
+    private static int blankBytes(ImageRasterizer.Raster raster, int top, int lines, boolean fromLeft) {
+        int blank = raster.widthBytes;
+        for (int y = top; y < top + lines && blank > 0; y++) {
+            int offset = y * raster.widthBytes;
+            int count = 0;
+            while (count < blank) {
+                int x = fromLeft ? count : raster.widthBytes - 1 - count;
+                if (raster.data[offset + x] != 0) break;
+                count++;
+            }
+            blank = count;
+        }
+        return blank;
+    }
+
+    /**
+     * GS ( L fonctions 112 puis 50 : image stockée dans le buffer graphique puis imprimée
+     */
+    public EscPosEncoder graphicsImage(ImageRasterizer.Raster raster) {
+        int widthDots = raster.widthDots();
+        // pL pH limité à 65535 : 10 octets d'en-tête + données de la bande
+        int maxLines = Math.max(1, Math.min(RASTER_BAND_HEIGHT, (65535 - 10) / raster.widthBytes));
+        for (int top = 0; top < raster.height; top += maxLines) {
+            int lines = Math.min(maxLines, raster.height - top);
+            int length = raster.widthBytes * lines;
+            int p = length + 10;
+            ensureCapacity(17 + length + 7);
+            raw(GS, (byte) 0x28, (byte) 0x4C);
+            raw((byte) (p & 0xFF), (byte) ((p >> 8) & 0xFF));
+            raw((byte) 0x30, (byte) 0x70, (byte) 0x30); // m=48, fn=112, a=48 (monochrome)
+            raw((byte) 0x01, (byte) 0x01, (byte) 0x31); // bx=1, by=1, c=49
+            raw((byte) (widthDots & 0xFF), (byte) ((widthDots >> 8) & 0xFF));
+            raw((byte) (lines & 0xFF), (byte) ((lines >> 8) & 0xFF));
+            raw(raster.data, top * raster.widthBytes, length);
+            raw(GS, (byte) 0x28, (byte) 0x4C);
+            raw((byte) 0x02, (byte) 0x00, (byte) 0x30);
+            raw((byte) 0x32);
+        }
+        return this;
+    }
+
+    /**
+     * GS 8 L fonction 67 : enregistrer une image en mémoire NV de l'imprimante sous une clé de 2 caractères
+     */
+    public EscPosEncoder defineNvGraphics(String key, ImageRasterizer.Raster raster) {
+        checkNvKey(key);
+        int widthDots = raster.widthDots();
+        int length = raster.widthBytes * raster.height;
+        long p = length + 11L;
+        ensureCapacity(18 + length);
+        raw(GS, (byte) 0x38, (byte) 0x4C);
+        raw((byte) (p & 0xFF), (byte) ((p >> 8) & 0xFF));
+        raw((byte) ((p >> 16) & 0xFF), (byte) ((p >> 24) & 0xFF));
+        raw((byte) 0x30, (byte) 0x43, (byte) 0x30); // m=48, fn=67, a=48 (raster)
+        raw((byte) key.charAt(0), (byte) key.charAt(1));
+        raw((byte) 0x01); // b=1 couleur
+        raw((byte) (widthDots & 0xFF), (byte) ((widthDots >> 8) & 0xFF));
+        raw((byte) (raster.height & 0xFF), (byte) ((raster.height >> 8) & 0xFF));
+        raw((byte) 0x31); // c=49
+        return raw(raster.data, 0, length);
+    }
+
+    /**
+     * GS ( L fonction 69 : imprimer une image déjà enregistrée en mémoire NV
+     */
+    public EscPosEncoder printNvGraphics(String key) {
+        checkNvKey(key);
+        raw(GS, (byte) 0x28, (byte) 0x4C);
+        raw((byte) 0x06, (byte) 0x00);
+        raw((byte) 0x30, (byte) 0x45);
+        raw((byte) key.charAt(0), (byte) key.charAt(1));
+        return raw((byte) 0x01, (byte) 0x01); // échelle x1
+    }
+
+    /**
+     * GS ( L fonction 66 : supprimer une image de la mémoire NV
+     */
+    public EscPosEncoder deleteNvGraphics(String key) {
+        checkNvKey(key);
+        raw(GS, (byte) 0x28, (byte) 0x4C);
+        raw((byte) 0x04, (byte) 0x00);
+        raw((byte) 0x30, (byte) 0x42);
+        return raw((byte) key.charAt(0), (byte) key.charAt(1));
+    }
+
+    private static void checkNvKey(String key) {
+        if (key == null || key.length() != 2
+                || key.charAt(0) < 0x20 || key.charAt(0) > 0x7E
+                || key.charAt(1) < 0x20 || key.charAt(1) > 0x7E) {
+            throw new IllegalArgumentException("Clé NV invalide (2 caractères ASCII attendus) : " + key);
+        }
+    }
+
+    // Codes-barres
+
+    public enum BarcodeType {
+        UPC_A(65), UPC_E(66), EAN13(67), EAN8(68), CODE39(69), ITF(70), CODABAR(71), CODE93(72), CODE128(73);
+
+        final int code;
+
+        BarcodeType(int code) {
+            this.code = code;
+        }
+    }
+
+    public static final int HRI_NONE = 0;
+    public static final int HRI_ABOVE = 1;
+    public static final int HRI_BELOW = 2;
+    public static final int HRI_BOTH = 3;
+
+    /**
+     * GS k (fonction B) : code-barres natif de l'imprimante.
+     * height en points (1-255), moduleWidth 2-6, hriPosition HRI_*, hriFont 0 (A) ou 1 (B)
+     */
+    public EscPosEncoder barcode(BarcodeType type, String data, int height, int moduleWidth, int hriPosition, int hriFont) {
+        checkBarcodeData(type, data);
+        raw(GS, (byte) 0x68, (byte) Math.max(1, Math.min(height, 255)));
+        raw(GS, (byte) 0x77, (byte) Math.max(2, Math.min(moduleWidth, 6)));
+        raw(GS, (byte) 0x48, (byte) hriPosition);
+        raw(GS, (byte) 0x66, (byte) hriFont);
+        // CODE128 : jeu de caractères B par défaut si l'appelant n'en précise pas
+        String payload = type == BarcodeType.CODE128 && !data.startsWith("{") ? "{B" + data : data;
+        raw(GS, (byte) 0x6B, (byte) type.code);
+        raw((byte) payload.length());
+        ensureCapacity(payload.length());
+        for (int i = 0; i < payload.length(); i++) buffer[size++] = (byte) payload.charAt(i);
+        return this;
+    }
+
+    private static void checkBarcodeData(BarcodeType type, String data) {
+        if (data == null || data.isEmpty()) throw new IllegalArgumentException("Données du code-barres vides");
+        if (data.length() > 253) throw new IllegalArgumentException("Code-barres trop long");
+        for (int i = 0; i < data.length(); i++) {
+            if (data.charAt(i) > 0x7F) throw new IllegalArgumentException("Code-barres : caractères ASCII uniquement");
+        }
+        switch (type) {
+            case UPC_A:
+                requireDigits(data, 11, 12, type);
+                break;
+            case UPC_E:
+                requireDigits(data, 6, 12, type);
+                break;
+            case EAN13:
+                requireDigits(data, 12, 13, type);
+                break;
+            case EAN8:
+                requireDigits(data, 7, 8, type);
+                break;
+            case ITF:
+                requireDigits(data, 2, 253, type);
+                if (data.length() % 2 != 0) throw new IllegalArgumentException("ITF : nombre de chiffres pair attendu");
+                break;
+            case CODE39:
+                for (int i = 0; i < data.length(); i++) {
+                    if ("0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ -.$/+%*".indexOf(data.charAt(i)) < 0) {
+                        throw new IllegalArgumentException("CODE39 : caractère non supporté '" + data.charAt(i) + "'");
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void requireDigits(String data, int min, int max, BarcodeType type) {
+        if (data.length() < min || data.length() > max) {
+            throw new IllegalArgumentException(type + " : " + min + " à " + max + " chiffres attendus");
+        }
+        for (int i = 0; i < data.length(); i++) {
+            if (data.charAt(i) < '0' || data.charAt(i) > '9') throw new IllegalArgumentException(type + " : chiffres uniquement");
+        }
+    }
+
+    public static final int QR_EC_L = 48;
+    public static final int QR_EC_M = 49;
+    public static final int QR_EC_Q = 50;
+    public static final int QR_EC_H = 51;
+
+    /**
+     * GS ( k : QR code natif (modèle 1 ou 2, taille de module 1-16, correction QR_EC_*).
+     * Les données sont toujours encodées en UTF-8 directement dans le buffer,
+     * même si une page de code est sélectionnée pour le texte.
+     */
+    public EscPosEncoder qrCode(String data, int model, int moduleSize, int errorCorrection) {
+        if (data == null || data.isEmpty()) throw new IllegalArgumentException("Données du QR code vides");
+        // Vérifié avant d'écrire : pas de commande à moitié écrite dans un encodeur recyclé
+        int p = utf8Length(data) + 3;
+        if (p > 7092) throw new IllegalArgumentException("QR code trop long");
+        // Modèle
+        raw(GS, (byte) 0x28, (byte) 0x6B);
+        raw((byte) 0x04, (byte) 0x00, (byte) 0x31);
+        raw((byte) 0x41, (byte) (model == 1 ? 49 : 50), (byte) 0x00);
+        // Taille du module
+        raw(GS, (byte) 0x28, (byte) 0x6B);
+        raw((byte) 0x03, (byte) 0x00, (byte) 0x31);
+        raw((byte) 0x43, (byte) Math.max(1, Math.min(moduleSize, 16)));
+        // Niveau de correction
+        raw(GS, (byte) 0x28, (byte) 0x6B);
+        raw((byte) 0x03, (byte) 0x00, (byte) 0x31);
+        raw((byte) 0x45, (byte) errorCorrection);
+        // Stockage
+        raw(GS, (byte) 0x28, (byte) 0x6B);
+        raw((byte) (p & 0xFF), (byte) ((p >> 8) & 0xFF));
+        raw((byte) 0x31, (byte) 0x50, (byte) 0x30);
+        utf8Text(data);
+        // Impression
+        raw(GS, (byte) 0x28, (byte) 0x6B);
+        raw((byte) 0x03, (byte) 0x00, (byte) 0x31);
+        return raw((byte) 0x51, (byte) 0x30);
+    }
+
+    // Texte
+
+    /**
+     * ESC t n : sélectionner une page de code ; le texte suivant est encodé
+     * dans cette page au lieu d'UTF-8 (null = revenir à UTF-8, sans commande)
+     */
+    public EscPosEncoder codePage(CodePage page) {
+        codePage = page;
+        if (page == null) return this;
+        return raw(ESC, (byte) 0x74, (byte) page.escPosNumber);
+    }
+
+    public CodePage getCodePage() {
+        return codePage;
+    }
+
+    /**
+     * Pages vers lesquelles basculer (ESC t) en cours de ligne quand un
+     * caractère manque dans la page courante ; aucune par défaut
+     */
+    public EscPosEncoder alternateCodePages(CodePage... pages) {
+        alternatePages = pages != null ? pages : NO_PAGES;
+        return this;
+    }
+
+    /**
+     * Caractère (ASCII) imprimé à la place d'un caractère introuvable dans les pages de code
+     */
+    public EscPosEncoder fallback(char c) {
+        if (c < 0x20 || c >= 0x7F) throw new IllegalArgumentException("Caractère de remplacement non ASCII : " + (int) c);
+        fallback = (byte) c;
+        return this;
+    }
+
+    /**
+     * Ajouter du texte, dans la page de code courante si une page a été
+     * sélectionnée, sinon en UTF-8 ; caractère par caractère, sans copie intermédiaire
+     */
+    public EscPosEncoder text(CharSequence text) {
+        if (codePage != null) return codePageText(text);
+        return utf8Text(text);
+    }
+
+    private EscPosEncoder utf8Text(CharSequence text) {
+        int len = text.length();
+        ensureCapacity(len * 3);
+        byte[] buf = buffer;
+        int pos = size;
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf[pos++] = '?'; // surrogate isolé, comme String.getBytes
+            } else {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        size = pos;
+        return this;
+    }
+
+    /**
+     * Nombre d'octets écrits par utf8Text()
+     */
+    static int utf8Length(CharSequence text) {
+        int len = text.length();
+        int bytes = 0;
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Encodage par tables précalculées : un octet par caractère, plus 3 octets
+     * (ESC t n) à chaque changement de page
+     */
+    private EscPosEncoder codePageText(CharSequence text) {
+        int len = text.length();
+        ensureCapacity(len);
+        byte[] buf = buffer;
+        int pos = size;
+        CodePage page = codePage;
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            int b = page.encode(c);
+            if (b < 0) {
+                CodePage other = findAlternatePage(c);
+                if (other != null) {
+                    size = pos;
+                    ensureCapacity(3 + len - i);
+                    codePage(other);
+                    buf = buffer;
+                    pos = size;
+                    page = other;
+                    b = page.encode(c);
+                } else {
+                    // Une paire de substitution ne donne qu'un seul caractère de remplacement
+                    if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(text.charAt(i + 1))) i++;
+                    b = fallback;
+                }
+            }
+            buf[pos++] = (byte) b;
+        }
+        size = pos;
+        return this;
+    }
+
+    private CodePage findAlternatePage(char c) {
+        for (CodePage candidate : alternatePages) {
+            if (candidate.canEncode(c)) return candidate;
+        }
+        return null;
+    }
+
+    public EscPosEncoder println(CharSequence text) {
+        return text(text).raw((byte) '\n');
+    }
+
+    // Octets bruts
+
+    public EscPosEncoder raw(byte b) {
+        ensureCapacity(1);
+        buffer[size++] = b;
+        return this;
+    }
+
+    public EscPosEncoder raw(byte b1, byte b2) {
+        ensureCapacity(2);
+        buffer[size++] = b1;
+        buffer[size++] = b2;
+        return this;
+    }
+
+    public EscPosEncoder raw(byte b1, byte b2, byte b3) {
+        ensureCapacity(3);
+        buffer[size++] = b1;
+        buffer[size++] = b2;
+        buffer[size++] = b3;
+        return this;
+    }
+
+    public EscPosEncoder raw(byte[] data) {
+        return raw(data, 0, data.length);
+    }
+
+    public EscPosEncoder raw(byte[] data, int off, int len) {
+        ensureCapacity(len);
+        System.arraycopy(data, off, buffer, size, len);
+        size += len;
+        return this;
+    }
+
+    /**
+     * Agrandir le buffer d'un coup avant une longue suite d'ajouts (tableau, ticket)
+     */
+    public EscPosEncoder reserve(int extra) {
+        ensureCapacity(extra);
+        return this;
+    }
+
+    private void ensureCapacity(int extra) {
+        int required = size + extra;
+        if (required <= buffer.length) return;
+        int newCapacity = Math.max(buffer.length << 1, required);
+        buffer = Arrays.copyOf(buffer, newCapacity);
+    }
+}
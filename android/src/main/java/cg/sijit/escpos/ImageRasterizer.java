@@ -0,0 +1,141 @@
+package cg.sijit.escpos;
+
+import java.util.Arrays;
+
+/**
+ * Conversion d'une image ARGB en image 1 bit pour l'impression raster.
+ *
+ * Mise à l'échelle (moyenne par zone), passage en niveaux de gris et tramage
+ * sont faits en une seule passe ligne par ligne, sur des tableaux primitifs,
+ * sans allocation par pixel. Classe Java pure : les pixels viennent de
+ * Bitmap.getPixels() côté Android.
+ */
+public final class ImageRasterizer {
+
+    public enum Dither {
+        THRESHOLD,
+        BAYER,
+        FLOYD_STEINBERG
+    }
+
+    /**
+     * Image 1 bit : widthBytes octets par ligne, bit de poids fort à gauche, 1 = noir
+     */
+    public static final class Raster {
+        public final int widthBytes;
+        public final int height;
+        public final byte[] data;
+
+        public Raster(int widthBytes, int height, byte[] data) {
+            this.widthBytes = widthBytes;
+            this.height = height;
+            this.data = data;
+        }
+
+        public int widthDots() {
+            return widthBytes * 8;
+        }
+    }
+
+    public static final int DEFAULT_THRESHOLD = 128;
+
+    // Matrice de Bayer 4x4 (0..15), ramenée sur 0..255 à l'usage
+    private static final int[] BAYER_4X4 = {
+        0, 8, 2, 10,
+        12, 4, 14, 6,
+        3, 11, 1, 9,
+        15, 7, 13, 5
+    };
+
+    private ImageRasterizer() {}
+
+    /**
+     * Redimensionner à targetWidth points (hauteur proportionnelle), convertir et tramer
+     */
+    public static Raster rasterize(int[] argb, int srcWidth, int srcHeight, int targetWidth, Dither dither, int threshold) {
+        if (srcWidth <= 0 || srcHeight <= 0) throw new IllegalArgumentException("Image vide");
+        if (targetWidth <= 0) targetWidth = srcWidth;
+        int targetHeight = Math.max(1, (int) ((long) srcHeight * targetWidth / srcWidth));
+        int widthBytes = (targetWidth + 7) >> 3;
+        byte[] out = new byte[widthBytes * targetHeight];
+
+        // Bornes des zones source pour chaque colonne cible, calculées une seule fois
+        int[] x0 = new int[targetWidth];
+        int[] x1 = new int[targetWidth];
+        for (int x = 0; x < targetWidth; x++) {
+            x0[x] = (int) ((long) x * srcWidth / targetWidth);
+            x1[x] = Math.max(x0[x] + 1, (int) ((long) (x + 1) * srcWidth / targetWidth));
+        }
+
+        int[] gray = new int[targetWidth];
+        // Erreurs de diffusion Floyd–Steinberg : ligne courante et suivante (+2 pour les bords)
+        int[] errCurrent = dither == Dither.FLOYD_STEINBERG ? new int[targetWidth + 2] : null;
+        int[] errNext = dither == Dither.FLOYD_STEINBERG ? new int[targetWidth + 2] : null;
+
+        for (int y = 0; y < targetHeight; y++) {
+            int y0 = (int) ((long) y * srcHeight / targetHeight);
+            int y1 = Math.max(y0 + 1, (int) ((long) (y + 1) * srcHeight / targetHeight));
+            scaleRow(argb, srcWidth, y0, y1, x0, x1, gray);
+
+            int rowOffset = y * widthBytes;
+            for (int x = 0; x < targetWidth; x++) {
+                int value = gray[x];
+                boolean black;
+                switch (dither) {
+                    case BAYER:
+                        int level = (BAYER_4X4[((y & 3) << 2) | (x & 3)] * 16 + 8) * threshold / DEFAULT_THRESHOLD;
+                        black = value < level;
+                        break;
+                    case FLOYD_STEINBERG:
+                        value += errCurrent[x + 1];
+                        black = value < threshold;
+                        int error = value - (black ? 0 : 255);
+                        errCurrent[x + 2] += error * 7 / 16;
+                        errNext[x] += error * 3 / 16;
+                        errNext[x + 1] += error * 5 / 16;
+                        errNext[x + 2] += error / 16;
+                        break;
+                    default:
+                        black = value < threshold;
+                }
+                if (black) out[rowOffset + (x >> 3)] |= (byte) (0x80 >> (x & 7));
+            }
+
+            if (errCurrent != null) {
+                int[] swap = errCurrent;
+                errCurrent = errNext;
+                errNext = swap;
+                Arrays.fill(errNext, 0);
+            }
+        }
+        return new Raster(widthBytes, targetHeight, out);
+    }
+
+    /**
+     * Moyenne des pixels source de chaque zone, en niveaux de gris (transparence = blanc)
+     */
+    private static void scaleRow(int[] argb, int srcWidth, int y0, int y1, int[] x0, int[] x1, int[] gray) {
+        for (int x = 0; x < gray.length; x++) {
+            int sum = 0;
+            int count = 0;
+            for (int sy = y0; sy < y1; sy++) {
+                int rowStart = sy * srcWidth;
+                for (int sx = x0[x]; sx < x1[x]; sx++) {
+                    sum += luminance(argb[rowStart + sx]);
+                    count++;
+                }
+            }
+            gray[x] = sum / count;
+        }
+    }
+
+    static int luminance(int argb) {
+        int a = argb >>> 24;
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        int lum = (r * 299 + g * 587 + b * 114) / 1000;
+        // Composition sur fond blanc
+        return 255 - (a * (255 - lum)) / 255;
+    }
+}
@@ -0,0 +1,99 @@
+package cg.sijit.escpos;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de durées à classes en puissances de 2 (microsecondes), sans verrou.
+ *
+ * La classe i compte les durées de [2^(i-1), 2^i[ µs : un enregistrement coûte
+ * un numberOfLeadingZeros et deux LongAdder. Les percentiles sont donnés par la
+ * borne haute de leur classe, donc à un facteur 2 près au pire.
+ */
+public class LatencyHistogram {
+
+    // 2^39 µs ≈ 6 jours : au-delà, tout tombe dans la dernière classe
+    static final int BUCKETS = 40;
+
+    /**
+     * Valeurs figées à un instant donné, en millisecondes
+     */
+    public static final class Snapshot {
+        public final long count;
+        public final double meanMs;
+        public final double maxMs;
+        public final double p50Ms;
+        public final double p90Ms;
+        public final double p99Ms;
+
+        Snapshot(long count, double meanMs, double maxMs, double p50Ms, double p90Ms, double p99Ms) {
+            this.count = count;
+            this.meanMs = meanMs;
+            this.maxMs = maxMs;
+            this.p50Ms = p50Ms;
+            this.p90Ms = p90Ms;
+            this.p99Ms = p99Ms;
+        }
+    }
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sumMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+    }
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        buckets[bucketOf(micros)].increment();
+        sumMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    static int bucketOf(long micros) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * Borne haute (µs) de la classe i
+     */
+    static long upperBoundMicros(int bucket) {
+        return bucket == 0 ? 1 : 1L << bucket;
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        if (count == 0) return new Snapshot(0, 0, 0, 0, 0, 0);
+        long max = maxMicros.get();
+        return new Snapshot(
+            count,
+            sumMicros.sum() / 1000.0 / count,
+            max / 1000.0,
+            percentile(counts, count, 0.50, max),
+            percentile(counts, count, 0.90, max),
+            percentile(counts, count, 0.99, max)
+        );
+    }
+
+    private static double percentile(long[] counts, long count, double quantile, long maxMicros) {
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBoundMicros(i), maxMicros) / 1000.0;
+        }
+        return maxMicros / 1000.0;
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) bucket.reset();
+        sumMicros.reset();
+        maxMicros.reset();
+    }
+}
@@ -0,0 +1,228 @@
+package cg.sijit.escpos;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Recherche des imprimantes réseau par connexion TCP sur un sous-réseau.
+ *
+ * Toutes les connexions sont non bloquantes (NIO) et surveillées par un seul
+ * Selector : un /24 sur 9100 se balaie en un délai de connexion ou presque,
+ * sans un thread par adresse. Chaque imprimante trouvée est signalée tout de suite.
+ */
+public class NetworkDiscovery {
+
+    public interface Listener {
+        void onPrinterFound(String host, int port);
+    }
+
+    /**
+     * Réglages du balayage
+     */
+    public static class Options {
+        /** 9100 = RAW, 515 = LPD, 631 = IPP */
+        public int[] ports = { 9100 };
+        public int timeoutMs = 500;
+        /** Connexions ouvertes en même temps */
+        public int maxConcurrent = 256;
+    }
+
+    /**
+     * Adresse et port qui ont accepté la connexion
+     */
+    public static final class Result {
+        public final String host;
+        public final int port;
+
+        public Result(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+    }
+
+    // Au-delà, le balayage durerait des minutes : /16 au plus
+    static final int MIN_PREFIX = 16;
+
+    private static final class Attempt {
+        final String host;
+        final int port;
+        final long deadline;
+
+        Attempt(String host, int port, long deadline) {
+            this.host = host;
+            this.port = port;
+            this.deadline = deadline;
+        }
+    }
+
+    // Jamais remis à zéro : un arrêt demandé avant le début du balayage compte aussi
+    private volatile boolean cancelled = false;
+
+    /**
+     * Arrêter le balayage, en cours ou à venir (il rend la main avec ce qui a déjà été trouvé).
+     * Une instance annulée ne balaie plus : en créer une nouvelle.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Balayer toutes les adresses du CIDR sur les ports demandés ; bloque jusqu'à la fin
+     */
+    public List<Result> scan(String cidr, Options options, Listener listener) throws IOException {
+        return scan(expandCidr(cidr), options, listener);
+    }
+
+    public List<Result> scan(List<String> hosts, Options options, Listener listener) throws IOException {
+        if (options == null) options = new Options();
+        List<Result> found = new ArrayList<>();
+        int total = hosts.size() * options.ports.length;
+        int next = 0;
+
+        try (Selector selector = Selector.open()) {
+            while (!cancelled && (next < total || !selector.keys().isEmpty())) {
+                // Ouvrir de nouvelles connexions jusqu'à la limite
+                while (next < total && selector.keys().size() < options.maxConcurrent) {
+                    String host = hosts.get(next / options.ports.length);
+                    int port = options.ports[next % options.ports.length];
+                    next++;
+                    startAttempt(selector, host, port, options.timeoutMs, found, listener);
+                }
+
+                long now = System.currentTimeMillis();
+                long wait = options.timeoutMs;
+                for (SelectionKey key : selector.keys()) {
+                    wait = Math.min(wait, ((Attempt) key.attachment()).deadline - now);
+                }
+                if (wait > 0) selector.select(wait);
+                else selector.selectNow();
+
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    Attempt attempt = (Attempt) key.attachment();
+                    boolean connected;
+                    try {
+                        connected = ((SocketChannel) key.channel()).finishConnect();
+                    } catch (IOException e) {
+                        connected = false;
+                    }
+                    if (connected) report(found, listener, attempt.host, attempt.port);
+                    closeKey(key);
+                }
+
+                // Abandonner les adresses qui n'ont pas répondu à temps
+                now = System.currentTimeMillis();
+                for (SelectionKey key : new ArrayList<>(selector.keys())) {
+                    if (((Attempt) key.attachment()).deadline <= now) closeKey(key);
+                }
+            }
+            for (SelectionKey key : new ArrayList<>(selector.keys())) closeKey(key);
+        }
+        return found;
+    }
+
+    private void startAttempt(Selector selector, String host, int port, int timeoutMs, List<Result> found, Listener listener) {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(new InetSocketAddress(InetAddress.getByName(host), port))) {
+                channel.close();
+                report(found, listener, host, port);
+                return;
+            }
+            channel.register(selector, SelectionKey.OP_CONNECT, new Attempt(host, port, System.currentTimeMillis() + timeoutMs));
+        } catch (IOException e) {
+            if (channel != null) {
+                try { channel.close(); } catch (IOException ignore) {}
+            }
+        }
+    }
+
+    private static void report(List<Result> found, Listener listener, String host, int port) {
+        found.add(new Result(host, port));
+        if (listener != null) listener.onPrinterFound(host, port);
+    }
+
+    private static void closeKey(SelectionKey key) {
+        key.cancel();
+        try { key.channel().close(); } catch (IOException ignore) {}
+    }
+
+    /**
+     * Adresses hôtes d'un CIDR IPv4 ("192.168.1.0/24" ; une adresse seule = /32),
+     * sans les adresses réseau et broadcast quand le préfixe est inférieur à 31
+     */
+    public static List<String> expandCidr(String cidr) {
+        String[] parts = cidr.trim().split("/");
+        int prefix;
+        try {
+            prefix = parts.length > 1 ? Integer.parseInt(parts[1]) : 32;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("CIDR invalide : " + cidr);
+        }
+        if (prefix < MIN_PREFIX || prefix > 32) throw new IllegalArgumentException("Préfixe hors limites (/" + MIN_PREFIX + " à /32) : " + cidr);
+
+        long base = parseIpv4(parts[0], cidr);
+        long mask = (0xFFFFFFFFL << (32 - prefix)) & 0xFFFFFFFFL;
+        long network = base & mask;
+        long size = 1L << (32 - prefix);
+        long first = network;
+        long last = network + size - 1;
+        if (prefix < 31) {
+            first++;
+            last--;
+        }
+
+        List<String> hosts = new ArrayList<>((int) (last - first + 1));
+        for (long ip = first; ip <= last; ip++) {
+            hosts.add(((ip >> 24) & 0xFF) + "." + ((ip >> 16) & 0xFF) + "." + ((ip >> 8) & 0xFF) + "." + (ip & 0xFF));
+        }
+        return hosts;
+    }
+
+    private static long parseIpv4(String ip, String cidr) {
+        String[] octets = ip.split("\\.");
+        if (octets.length != 4) throw new IllegalArgumentException("CIDR invalide : " + cidr);
+        long value = 0;
+        for (String octet : octets) {
+            int n;
+            try {
+                n = Integer.parseInt(octet);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("CIDR invalide : " + cidr);
+            }
+            if (n < 0 || n > 255) throw new IllegalArgumentException("CIDR invalide : " + cidr);
+            value = (value << 8) | n;
+        }
+        return value;
+    }
+
+    /**
+     * Sous-réseau IPv4 de la première interface active (Wifi en pratique), préfixe limité à /24 ; null si aucun
+     */
+    public static String localCidr() throws IOException {
+        for (NetworkInterface network : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+            if (!network.isUp() || network.isLoopback()) continue;
+            for (InterfaceAddress address : network.getInterfaceAddresses()) {
+                if (!(address.getAddress() instanceof Inet4Address) || !address.getAddress().isSiteLocalAddress()) continue;
+                int prefix = Math.max(24, address.getNetworkPrefixLength());
+                return address.getAddress().getHostAddress() + "/" + prefix;
+            }
+        }
+        return null;
+    }
+}
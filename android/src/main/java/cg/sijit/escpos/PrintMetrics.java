@@ -0,0 +1,87 @@
+package cg.sijit.escpos;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteurs et histogrammes par transport ("bluetooth", "wifi", "usb").
+ *
+ * Chaque job est découpé en étapes : encodage (obtention de l'encodeur → mise
+ * en file), attente en file (→ premier octet écrit), écriture (premier → dernier
+ * octet) et total (mise en file → dernier octet). Tout est en LongAdder : le
+ * thread d'écriture n'attend jamais un verrou pour enregistrer une mesure.
+ */
+public class PrintMetrics {
+
+    /**
+     * Mesures d'un transport
+     */
+    public static final class Channel {
+        public final LongAdder jobs = new LongAdder();
+        public final LongAdder failures = new LongAdder();
+        public final LongAdder cancelled = new LongAdder();
+        public final LongAdder bytes = new LongAdder();
+        public final LatencyHistogram encode = new LatencyHistogram();
+        public final LatencyHistogram queueWait = new LatencyHistogram();
+        public final LatencyHistogram write = new LatencyHistogram();
+        public final LatencyHistogram total = new LatencyHistogram();
+
+        /**
+         * Job écrit en entier ; les instants sont des System.nanoTime()
+         */
+        public void recordCompleted(long encodeNanos, long enqueuedAt, long firstByteAt, long lastByteAt, int len) {
+            jobs.increment();
+            bytes.add(len);
+            encode.recordNanos(encodeNanos);
+            queueWait.recordNanos(firstByteAt - enqueuedAt);
+            write.recordNanos(lastByteAt - firstByteAt);
+            total.recordNanos(lastByteAt - enqueuedAt);
+        }
+
+        /**
+         * Flux terminé : seuls les compteurs sont mis à jour
+         */
+        public void recordStreamed(int len) {
+            jobs.increment();
+            bytes.add(len);
+        }
+
+        public void recordFailed() {
+            failures.increment();
+        }
+
+        public void recordCancelled() {
+            cancelled.increment();
+        }
+
+        void reset() {
+            jobs.reset();
+            failures.reset();
+            cancelled.reset();
+            bytes.reset();
+            encode.reset();
+            queueWait.reset();
+            write.reset();
+            total.reset();
+        }
+    }
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+    public Channel channel(String transport) {
+        return channels.computeIfAbsent(transport, name -> new Channel());
+    }
+
+    /**
+     * Transports ayant déjà reçu au moins un job, triés par nom
+     */
+    public Map<String, Channel> channels() {
+        return new TreeMap<>(channels);
+    }
+
+    public void reset() {
+        for (Channel channel : channels.values()) channel.reset();
+    }
+}
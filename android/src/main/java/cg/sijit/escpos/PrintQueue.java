@@ -0,0 +1,379 @@
+package cg.sijit.escpos;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * File d'impression bornée avec un thread d'écriture dédié par connexion.
+ *
+ * Les appels print* mettent le job en file et rendent la main tout de suite ;
+ * un seul thread écrit sur le transport, donc les octets de deux jobs ne
+ * s'entremêlent jamais. Le résultat est remonté via {@link Listener}.
+ *
+ * Les jobs de priorité plus haute passent devant (ordre d'arrivée à priorité
+ * égale) et un job peut être annulé tant que son envoi n'a pas commencé.
+ * Avec un {@link Journal}, chaque job est enregistré avant d'être mis en file.
+ * Un flux ({@link StreamJob}) occupe la file comme un job, de son premier à
+ * son dernier morceau ; il n'est pas journalisé.
+ */
+public class PrintQueue {
+
+    /**
+     * Destination des octets (socket Bluetooth, Wifi, USB...)
+     */
+    public interface Sink {
+        void write(byte[] data, int off, int len) throws Exception;
+    }
+
+    public interface Listener {
+        void onJobCompleted(String jobId, int bytes);
+
+        void onJobFailed(String jobId, Exception error);
+    }
+
+    /**
+     * Persistance des jobs (spool) : enregistré avant la mise en file, oublié une fois terminé
+     */
+    public interface Journal {
+        void recordSubmitted(String queueName, String jobId, int priority, byte[] data, int len) throws IOException;
+
+        void recordFinished(String jobId);
+    }
+
+    public static final int DEFAULT_CAPACITY = 64;
+    public static final int PRIORITY_NORMAL = 0;
+
+    private static final AtomicLong NEXT_JOB_ID = new AtomicLong(1);
+
+    private static final int JOB_QUEUED = 0;
+    private static final int JOB_WRITING = 1;
+    private static final int JOB_CANCELLED = 2;
+
+    private static final class Job implements Comparable<Job> {
+        final String id;
+        // Contenu du job : un encodeur, ou un flux de morceaux (l'autre est null)
+        final EscPosEncoder encoder;
+        final StreamJob stream;
+        final int priority;
+        final long sequence;
+        final AtomicInteger state = new AtomicInteger(JOB_QUEUED);
+        // Mesures : durée d'encodage et instant de mise en file (System.nanoTime)
+        final long encodeNanos;
+        final long enqueuedAt;
+
+        Job(String id, EscPosEncoder encoder, StreamJob stream, int priority, long sequence, long encodeNanos, long enqueuedAt) {
+            this.id = id;
+            this.encoder = encoder;
+            this.stream = stream;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.encodeNanos = encodeNanos;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        /**
+         * Job abandonné avant son écriture : rendre l'encodeur, ou faire échouer les ajouts au flux
+         */
+        void discard(Exception reason) {
+            if (encoder != null) encoder.recycle();
+            else stream.abort(reason);
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            if (priority != other.priority) return Integer.compare(other.priority, priority);
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final String name;
+    private final Sink sink;
+    private final Listener listener;
+    private final Journal journal;
+    private final PrintMetrics.Channel metrics;
+    private final int capacity;
+    private final BlockingQueue<Job> jobs = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean keepSpooled = false;
+    // Jobs retenus en file tant que l'imprimante ne peut pas imprimer
+    private final Object holdLock = new Object();
+    private boolean held = false;
+    // Job déjà retiré de la file mais retenu avant écriture
+    private volatile Job waitingJob;
+
+    public PrintQueue(String name, Sink sink, Listener listener) {
+        this(name, sink, listener, DEFAULT_CAPACITY, null);
+    }
+
+    public PrintQueue(String name, Sink sink, Listener listener, int capacity) {
+        this(name, sink, listener, capacity, null);
+    }
+
+    public PrintQueue(String name, Sink sink, Listener listener, int capacity, Journal journal) {
+        this(name, sink, listener, capacity, journal, null);
+    }
+
+    public PrintQueue(String name, Sink sink, Listener listener, int capacity, Journal journal, PrintMetrics.Channel metrics) {
+        this.name = name;
+        this.sink = sink;
+        this.listener = listener;
+        this.capacity = capacity;
+        this.journal = journal;
+        this.metrics = metrics;
+        this.writer = new Thread(this::drain, "escpos-writer-" + name);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Mettre en file le contenu de l'encodeur ; l'encodeur est recyclé après écriture
+     */
+    public String submit(EscPosEncoder encoder) throws Exception {
+        return submit(encoder, PRIORITY_NORMAL);
+    }
+
+    /**
+     * Mettre en file avec une priorité (plus haute = imprimé plus tôt)
+     */
+    public synchronized String submit(EscPosEncoder encoder, int priority) throws Exception {
+        if (!running) {
+            encoder.recycle();
+            throw new Exception("File d'impression fermée : " + name);
+        }
+        if (jobs.size() >= capacity) {
+            encoder.recycle();
+            throw new Exception("File d'impression pleine : " + name);
+        }
+        String jobId = name + "-" + NEXT_JOB_ID.getAndIncrement();
+        if (journal != null) {
+            try {
+                journal.recordSubmitted(name, jobId, priority, encoder.buffer(), encoder.size());
+            } catch (IOException e) {
+                encoder.recycle();
+                throw new Exception("Spool indisponible : " + e.getMessage(), e);
+            }
+        }
+        long now = System.nanoTime();
+        jobs.offer(new Job(jobId, encoder, null, priority, sequence.getAndIncrement(), now - encoder.obtainedAt(), now));
+        return jobId;
+    }
+
+    /**
+     * Ouvrir un flux : mis en file comme un job, il s'imprime au fil des morceaux ajoutés
+     */
+    public StreamJob openStream(int priority) throws Exception {
+        return openStream(priority, StreamJob.DEFAULT_MAX_CHUNKS, StreamJob.DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    synchronized StreamJob openStream(int priority, int maxChunks, long idleTimeoutMs) throws Exception {
+        if (!running) throw new Exception("File d'impression fermée : " + name);
+        if (jobs.size() >= capacity) throw new Exception("File d'impression pleine : " + name);
+        StreamJob stream = new StreamJob(name + "-" + NEXT_JOB_ID.getAndIncrement(), maxChunks, idleTimeoutMs);
+        jobs.offer(new Job(stream.getId(), null, stream, priority, sequence.getAndIncrement(), 0, System.nanoTime()));
+        return stream;
+    }
+
+    /**
+     * Remettre en file un job relu du spool, sous son identifiant d'origine (déjà journalisé)
+     */
+    public synchronized void restore(String jobId, int priority, byte[] data) throws Exception {
+        if (!running) throw new Exception("File d'impression fermée : " + name);
+        reserveJobId(jobId);
+        jobs.offer(new Job(jobId, EscPosEncoder.obtain().raw(data), null, priority, sequence.getAndIncrement(), 0, System.nanoTime()));
+    }
+
+    /**
+     * Annuler un job qui n'a pas encore commencé à partir ; false s'il est inconnu, en cours ou terminé
+     */
+    public boolean cancel(String jobId) {
+        Job job = find(jobId);
+        if (job == null || !job.state.compareAndSet(JOB_QUEUED, JOB_CANCELLED)) return false;
+        jobs.remove(job);
+        job.discard(new Exception("Job annulé"));
+        if (journal != null && job.stream == null) journal.recordFinished(job.id);
+        if (metrics != null) metrics.recordCancelled();
+        return true;
+    }
+
+    private Job find(String jobId) {
+        for (Job job : jobs) {
+            if (job.id.equals(jobId)) return job;
+        }
+        Job waiting = waitingJob;
+        return waiting != null && waiting.id.equals(jobId) ? waiting : null;
+    }
+
+    public int pending() {
+        return jobs.size() + (waitingJob != null ? 1 : 0);
+    }
+
+    /**
+     * Les identifiants relus du spool ("bar-12") ne doivent pas être réattribués
+     */
+    public static void reserveJobId(String jobId) {
+        int dash = jobId.lastIndexOf('-');
+        try {
+            long n = Long.parseLong(jobId.substring(dash + 1));
+            NEXT_JOB_ID.accumulateAndGet(n + 1, Math::max);
+        } catch (NumberFormatException ignore) {
+        }
+    }
+
+    /**
+     * Retenir les jobs en file (imprimante hors ligne, sans papier...) au lieu de les envoyer
+     */
+    public void hold() {
+        synchronized (holdLock) {
+            held = true;
+        }
+    }
+
+    public void resume() {
+        synchronized (holdLock) {
+            held = false;
+            holdLock.notifyAll();
+        }
+    }
+
+    public boolean isHeld() {
+        synchronized (holdLock) {
+            return held;
+        }
+    }
+
+    /**
+     * Arrêter le thread d'écriture ; les jobs encore en file sont signalés en échec
+     */
+    public void shutdown() {
+        shutdown(false);
+    }
+
+    /**
+     * Arrêter le thread d'écriture. Avec keepSpooled, les jobs en file restent
+     * dans le journal (reprise à la prochaine ouverture) et ne sont pas signalés.
+     */
+    public void shutdown(boolean keepSpooled) {
+        synchronized (this) {
+            running = false;
+            this.keepSpooled = keepSpooled;
+        }
+        writer.interrupt();
+        List<Job> remaining = new ArrayList<>();
+        jobs.drainTo(remaining);
+        for (Job job : remaining) {
+            if (!job.state.compareAndSet(JOB_QUEUED, JOB_CANCELLED)) continue;
+            job.discard(new Exception("Connexion fermée avant impression"));
+            // Un flux n'est pas journalisé : il ne sera pas repris
+            if (!keepSpooled || job.stream != null) notifyFailed(job, new Exception("Connexion fermée avant impression"));
+        }
+    }
+
+    private void drain() {
+        while (running) {
+            Job job;
+            try {
+                job = jobs.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (!awaitResume(job)) break;
+            // Un job plus prioritaire est arrivé pendant l'attente : il passe devant
+            Job head = jobs.peek();
+            if (head != null && head.compareTo(job) < 0) {
+                jobs.offer(job);
+                continue;
+            }
+            // Annulé entre-temps : l'encodeur a déjà été recyclé
+            if (!job.state.compareAndSet(JOB_QUEUED, JOB_WRITING)) continue;
+            try {
+                long firstByteAt = System.nanoTime();
+                int bytes;
+                if (job.stream != null) {
+                    bytes = writeStream(job.stream);
+                } else {
+                    sink.write(job.encoder.buffer(), 0, job.encoder.size());
+                    bytes = job.encoder.size();
+                }
+                long lastByteAt = System.nanoTime();
+                if (metrics != null) {
+                    // Un flux dure le temps que l'application l'alimente : compté, pas chronométré
+                    if (job.stream == null) metrics.recordCompleted(job.encodeNanos, job.enqueuedAt, firstByteAt, lastByteAt, bytes);
+                    else metrics.recordStreamed(bytes);
+                }
+                if (journal != null && job.stream == null) journal.recordFinished(job.id);
+                if (listener != null) listener.onJobCompleted(job.id, bytes);
+            } catch (Exception e) {
+                if (job.stream != null) job.stream.abort(e);
+                notifyFailed(job, e);
+            } finally {
+                if (job.encoder != null) job.encoder.recycle();
+            }
+        }
+    }
+
+    /**
+     * Écrire les morceaux d'un flux à mesure qu'ils arrivent. Si la file est
+     * retenue en cours de route (plus de papier...), l'écriture reprend au
+     * morceau suivant une fois l'imprimante prête.
+     */
+    private int writeStream(StreamJob stream) throws Exception {
+        int bytes = 0;
+        EscPosEncoder chunk;
+        while ((chunk = stream.next()) != null) {
+            try {
+                synchronized (holdLock) {
+                    while (held && running) holdLock.wait();
+                }
+                if (!running) throw new Exception("Connexion fermée pendant le flux");
+                sink.write(chunk.buffer(), 0, chunk.size());
+                bytes += chunk.size();
+            } finally {
+                chunk.recycle();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Attendre que la file ne soit plus retenue ; false (job signalé en échec) si la file est arrêtée entre-temps
+     */
+    private boolean awaitResume(Job job) {
+        synchronized (holdLock) {
+            if (!held) return true;
+            waitingJob = job;
+            try {
+                while (held && running) holdLock.wait();
+            } catch (InterruptedException e) {
+                // arrêt demandé
+            } finally {
+                waitingJob = null;
+            }
+        }
+        if (running) return true;
+        if (job.state.compareAndSet(JOB_QUEUED, JOB_CANCELLED)) {
+            job.discard(new Exception("Connexion fermée avant impression"));
+            // Un flux n'est pas journalisé : il ne sera pas repris
+            if (!keepSpooled || job.stream != null) notifyFailed(job, new Exception("Connexion fermée avant impression"));
+        }
+        return false;
+    }
+
+    private void notifyFailed(Job job, Exception error) {
+        // Écriture coupée par un arrêt qui garde le spool : le job sera repris
+        boolean keep = keepSpooled && !running;
+        if (journal != null && !keep && job.stream == null) journal.recordFinished(job.id);
+        if (metrics != null) metrics.recordFailed();
+        if (listener != null) listener.onJobFailed(job.id, error);
+    }
+}
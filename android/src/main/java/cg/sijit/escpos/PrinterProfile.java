@@ -0,0 +1,151 @@
+package cg.sijit.escpos;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Capacités d'une famille d'imprimantes : largeur imprimable, variantes de
+ * commandes (coupe, taille du texte), avance ESC J et cadencement Bluetooth.
+ *
+ * Le profil est choisi à la connexion, d'après le fabricant et le modèle
+ * renvoyés par GS I, ou imposé par l'application. Une imprimante qui ne répond
+ * pas reçoit le profil générique 58 mm, celui utilisé jusqu'ici.
+ */
+public final class PrinterProfile {
+
+    /**
+     * Commande envoyée par cut()
+     */
+    public enum Cut {
+        /** GS V 0 : coupe complète à la position courante */
+        FULL,
+        /** GS V 66 0 : avance jusqu'au couteau puis coupe partielle (pas de ligne perdue) */
+        FEED_PARTIAL,
+        /** Sans massicot : avance jusqu'à la barre de découpe */
+        NONE
+    }
+
+    public static final PrinterProfile GENERIC_58 = new PrinterProfile(
+        "generic-58", "Générique 58 mm", 384, 1, 8, Cut.FULL, 512, 0);
+    public static final PrinterProfile GENERIC_80 = new PrinterProfile(
+        "generic-80", "Générique 80 mm", 576, 1, 8, Cut.FULL, 512, 0);
+    public static final PrinterProfile EPSON_80 = new PrinterProfile(
+        "epson-80", "Epson TM 80 mm (203 dpi)", 576, 1, 8, Cut.FEED_PARTIAL, 1024, 0);
+    // TM-T88 : tête 180 dpi, unité d'avance 1/360"
+    public static final PrinterProfile EPSON_TM88 = new PrinterProfile(
+        "epson-tm88", "Epson TM-T88 (180 dpi)", 512, 2, 8, Cut.FEED_PARTIAL, 1024, 0);
+    public static final PrinterProfile STAR_80 = new PrinterProfile(
+        "star-80", "Star 80 mm (mode ESC/POS)", 576, 1, 6, Cut.FEED_PARTIAL, 1024, 0);
+    // Petit buffer de réception : blocs courts et une pause entre deux
+    public static final PrinterProfile XPRINTER_58 = new PrinterProfile(
+        "xprinter-58", "Xprinter 58 mm", 384, 1, 8, Cut.NONE, 256, 5);
+    public static final PrinterProfile XPRINTER_80 = new PrinterProfile(
+        "xprinter-80", "Xprinter 80 mm", 576, 1, 8, Cut.FEED_PARTIAL, 256, 5);
+
+    private static final List<PrinterProfile> ALL = Collections.unmodifiableList(Arrays.asList(
+        GENERIC_58, GENERIC_80, EPSON_80, EPSON_TM88, STAR_80, XPRINTER_58, XPRINTER_80
+    ));
+
+    // GS I n : nom du fabricant et du modèle, réponse "_" + texte + NUL
+    static final int INFO_MAKER = 66;
+    static final int INFO_MODEL = 67;
+    // Attente max d'une réponse à GS I
+    static final int REPLY_TIMEOUT_MS = 300;
+
+    public final String id;
+    public final String label;
+    /** Largeur imprimable en points, aussi largeur max des images */
+    public final int paperWidthDots;
+    /** Unités d'avance ESC J par point d'image */
+    public final int feedUnitsPerDot;
+    /** Agrandissement max accepté par GS ! */
+    public final int maxTextSize;
+    public final Cut cut;
+    /** Cadencement Bluetooth quand l'application n'en impose pas */
+    public final int chunkSize;
+    public final int chunkDelayMs;
+
+    private PrinterProfile(String id, String label, int paperWidthDots, int feedUnitsPerDot, int maxTextSize, Cut cut, int chunkSize, int chunkDelayMs) {
+        this.id = id;
+        this.label = label;
+        this.paperWidthDots = paperWidthDots;
+        this.feedUnitsPerDot = feedUnitsPerDot;
+        this.maxTextSize = maxTextSize;
+        this.cut = cut;
+        this.chunkSize = chunkSize;
+        this.chunkDelayMs = chunkDelayMs;
+    }
+
+    public static List<PrinterProfile> all() {
+        return ALL;
+    }
+
+    /**
+     * Profil par identifiant ("epson-80"...) ; null si inconnu
+     */
+    public static PrinterProfile forId(String id) {
+        for (PrinterProfile profile : ALL) {
+            if (profile.id.equalsIgnoreCase(id)) return profile;
+        }
+        return null;
+    }
+
+    /**
+     * Profil correspondant aux réponses GS I ; null si la famille n'est pas reconnue
+     */
+    public static PrinterProfile match(String maker, String model) {
+        String m = maker != null ? maker.toUpperCase(Locale.ROOT) : "";
+        String d = model != null ? model.toUpperCase(Locale.ROOT) : "";
+        if (m.contains("EPSON")) return d.contains("TM-T88") ? EPSON_TM88 : EPSON_80;
+        if (m.contains("STAR")) return STAR_80;
+        if (m.contains("XPRINTER") || d.startsWith("XP-")) return d.contains("58") ? XPRINTER_58 : XPRINTER_80;
+        return null;
+    }
+
+    /**
+     * Interroger l'imprimante (GS I 66 puis 67) ; null si elle ne répond pas
+     * ou n'est pas reconnue. Sans réponse au fabricant, le modèle n'est pas demandé.
+     * Aucun autre écrivain ne doit utiliser le transport pendant la détection.
+     */
+    public static PrinterProfile detect(PrinterTransport transport) throws IOException {
+        String maker = queryInfo(transport, INFO_MAKER);
+        if (maker == null) return null;
+        return match(maker, queryInfo(transport, INFO_MODEL));
+    }
+
+    /**
+     * Texte renvoyé par GS I n ; null sans réponse avant le délai ou sans voie retour.
+     * Les octets reçus avant l'en-tête "_" (ASB, réponses tardives) sont ignorés.
+     */
+    static String queryInfo(PrinterTransport transport, int n) throws IOException {
+        byte[] command = { EscPosEncoder.GS, (byte) 0x49, (byte) n };
+        transport.write(command, 0, command.length);
+        byte[] buffer = new byte[64];
+        StringBuilder text = null;
+        long deadline = System.currentTimeMillis() + REPLY_TIMEOUT_MS;
+        while (true) {
+            int remaining = (int) (deadline - System.currentTimeMillis());
+            if (remaining <= 0) return null;
+            int read = transport.read(buffer, 0, buffer.length, remaining);
+            if (read < 0) return null;
+            for (int i = 0; i < read; i++) {
+                int b = buffer[i] & 0xFF;
+                if (text == null) {
+                    if (b == 0x5F) text = new StringBuilder();
+                } else if (b == 0) {
+                    return text.toString().trim();
+                } else {
+                    text.append((char) b);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
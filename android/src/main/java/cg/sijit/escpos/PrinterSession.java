@@ -0,0 +1,177 @@
+package cg.sijit.escpos;
+
+import java.io.IOException;
+
+/**
+ * Connexion ouverte vers une imprimante : un transport et sa file d'impression dédiée
+ */
+public class PrinterSession {
+
+    private final String id;
+    private final PrinterTransport transport;
+    private final PrintQueue queue;
+    // Sérialise les jobs et les requêtes d'état sur le transport
+    private final Object ioLock = new Object();
+    private StatusPoller statusPoller;
+
+    // Encodage du texte choisi par setCodePage (null = UTF-8)
+    private volatile CodePage codePage;
+    private volatile boolean autoSwitchCodePage = true;
+    private volatile char fallback = '?';
+
+    private volatile PrinterProfile profile = PrinterProfile.GENERIC_58;
+    // Images raster compactées (bandes blanches sautées, marges retirées), voir setRasterCompression
+    private volatile boolean compactRaster = true;
+    private volatile int feedUnitsPerDot = 1;
+
+    public PrinterSession(String id, PrinterTransport transport, PrintQueue.Listener listener) {
+        this(id, transport, listener, null);
+    }
+
+    public PrinterSession(String id, PrinterTransport transport, PrintQueue.Listener listener, PrintQueue.Journal journal) {
+        this(id, transport, listener, journal, null);
+    }
+
+    public PrinterSession(String id, PrinterTransport transport, PrintQueue.Listener listener, PrintQueue.Journal journal, PrintMetrics metrics) {
+        this.id = id;
+        this.transport = transport;
+        PrintMetrics.Channel channel = metrics != null ? metrics.channel(transport.getName()) : null;
+        this.queue = new PrintQueue(id, this::write, listener, PrintQueue.DEFAULT_CAPACITY, journal, channel);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public PrinterTransport getTransport() {
+        return transport;
+    }
+
+    public PrintQueue getQueue() {
+        return queue;
+    }
+
+    public boolean isConnected() {
+        return transport.isConnected();
+    }
+
+    public CodePage getCodePage() {
+        return codePage;
+    }
+
+    public void setCodePage(CodePage codePage, boolean autoSwitch, char fallback) {
+        this.codePage = codePage;
+        this.autoSwitchCodePage = autoSwitch;
+        this.fallback = fallback;
+    }
+
+    public PrinterProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Appliquer un profil : variantes de commandes des prochains jobs et avance ESC J des images
+     */
+    public void setProfile(PrinterProfile profile) {
+        this.profile = profile;
+        this.feedUnitsPerDot = profile.feedUnitsPerDot;
+    }
+
+    /**
+     * Redemander fabricant et modèle à l'imprimante (GS I), entre deux jobs
+     */
+    public PrinterProfile detectProfile() throws IOException {
+        synchronized (ioLock) {
+            return PrinterProfile.detect(transport);
+        }
+    }
+
+    public boolean isRasterCompression() {
+        return compactRaster;
+    }
+
+    public int getFeedUnitsPerDot() {
+        return feedUnitsPerDot;
+    }
+
+    /**
+     * Compactage des images GS v 0 ; désactivé, l'image est envoyée telle quelle
+     */
+    public void setRasterCompression(boolean enabled, int feedUnitsPerDot) {
+        this.compactRaster = enabled;
+        this.feedUnitsPerDot = Math.max(1, feedUnitsPerDot);
+    }
+
+    /**
+     * Encodeur adapté au profil, pour un job contenant du texte : la page de code de la session est
+     * resélectionnée en tête de job, car un job précédent a pu basculer de page
+     */
+    public EscPosEncoder obtainEncoder() {
+        EscPosEncoder encoder = EscPosEncoder.obtain().profile(profile);
+        CodePage page = codePage;
+        if (page == null) return encoder;
+        encoder.fallback(fallback);
+        if (autoSwitchCodePage) encoder.alternateCodePages(CodePage.values());
+        return encoder.codePage(page);
+    }
+
+    public String submit(EscPosEncoder encoder) throws Exception {
+        return queue.submit(encoder);
+    }
+
+    public String submit(EscPosEncoder encoder, int priority) throws Exception {
+        return queue.submit(encoder, priority);
+    }
+
+    private void write(byte[] data, int off, int len) throws Exception {
+        synchronized (ioLock) {
+            transport.write(data, off, len);
+        }
+    }
+
+    /**
+     * Surveiller l'état de l'imprimante : les jobs restent en file tant qu'elle
+     * signale ne pas pouvoir imprimer (hors ligne, capot ouvert, sans papier...).
+     * Une imprimante muette ne bloque pas la file : l'écriture échouera d'elle-même.
+     */
+    public synchronized void startStatusPolling(int intervalMs, boolean asb, StatusPoller.Listener listener) {
+        stopStatusPolling();
+        statusPoller = new StatusPoller(transport, ioLock, intervalMs, asb, status -> {
+            if (status.responding && !status.canPrint()) queue.hold();
+            else queue.resume();
+            if (listener != null) listener.onStatusChanged(status);
+        });
+        statusPoller.start();
+    }
+
+    public synchronized void stopStatusPolling() {
+        if (statusPoller == null) return;
+        statusPoller.stop();
+        statusPoller = null;
+        queue.resume();
+    }
+
+    public synchronized StatusPoller getStatusPoller() {
+        return statusPoller;
+    }
+
+    /**
+     * Interroger l'état tout de suite (DLE EOT), entre deux jobs
+     */
+    public PrinterStatus queryStatus() throws IOException {
+        return StatusPoller.query(transport, ioLock);
+    }
+
+    public void close() {
+        close(false);
+    }
+
+    /**
+     * Fermer la connexion ; avec keepSpooled, les jobs non envoyés restent dans le spool
+     */
+    public void close(boolean keepSpooled) {
+        stopStatusPolling();
+        queue.shutdown(keepSpooled);
+        transport.close();
+    }
+}
@@ -0,0 +1,71 @@
+package cg.sijit.escpos;
+
+/**
+ * État de l'imprimante tel que renvoyé par DLE EOT ou ASB (GS a)
+ */
+public final class PrinterStatus {
+
+    /** L'imprimante n'a pas répondu aux requêtes d'état */
+    public static final PrinterStatus NOT_RESPONDING = new PrinterStatus(false, false, false, false, false, false, false);
+
+    public final boolean responding;
+    public final boolean online;
+    public final boolean coverOpen;
+    public final boolean paperOut;
+    public final boolean paperNearEnd;
+    /** Broche 3 du connecteur tiroir à l'état haut (tiroir ouvert sur la plupart des modèles) */
+    public final boolean drawerOpen;
+    /** Erreur mécanique, coupe-papier, irrécupérable ou récupérable automatiquement */
+    public final boolean error;
+
+    public PrinterStatus(boolean responding, boolean online, boolean coverOpen, boolean paperOut, boolean paperNearEnd, boolean drawerOpen, boolean error) {
+        this.responding = responding;
+        this.online = online;
+        this.coverOpen = coverOpen;
+        this.paperOut = paperOut;
+        this.paperNearEnd = paperNearEnd;
+        this.drawerOpen = drawerOpen;
+        this.error = error;
+    }
+
+    /**
+     * L'imprimante peut recevoir un job (le papier bientôt fini n'empêche pas d'imprimer)
+     */
+    public boolean canPrint() {
+        return responding && online && !coverOpen && !paperOut && !error;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PrinterStatus)) return false;
+        PrinterStatus other = (PrinterStatus) o;
+        return responding == other.responding
+            && online == other.online
+            && coverOpen == other.coverOpen
+            && paperOut == other.paperOut
+            && paperNearEnd == other.paperNearEnd
+            && drawerOpen == other.drawerOpen
+            && error == other.error;
+    }
+
+    @Override
+    public int hashCode() {
+        int bits = 0;
+        if (responding) bits |= 1;
+        if (online) bits |= 2;
+        if (coverOpen) bits |= 4;
+        if (paperOut) bits |= 8;
+        if (paperNearEnd) bits |= 16;
+        if (drawerOpen) bits |= 32;
+        if (error) bits |= 64;
+        return bits;
+    }
+
+    @Override
+    public String toString() {
+        if (!responding) return "PrinterStatus{ne répond pas}";
+        return "PrinterStatus{online=" + online + ", coverOpen=" + coverOpen + ", paperOut=" + paperOut
+            + ", paperNearEnd=" + paperNearEnd + ", drawerOpen=" + drawerOpen + ", error=" + error + "}";
+    }
+}
@@ -0,0 +1,37 @@
+package cg.sijit.escpos;
+
+import java.io.IOException;
+
+/**
+ * Canal d'envoi vers une imprimante (Bluetooth RFCOMM, socket TCP, USB bulk).
+ *
+ * Chaque implémentation choisit sa propre stratégie de découpage et de flush ;
+ * toutes les commandes ESC/POS passent par {@link #write(byte[], int, int)}.
+ */
+public interface PrinterTransport {
+
+    /**
+     * Nom court du transport ("bluetooth", "wifi", "usb")
+     */
+    String getName();
+
+    boolean isConnected();
+
+    /**
+     * Envoyer len octets à partir de off ; rend la main quand tout est écrit
+     */
+    void write(byte[] data, int off, int len) throws IOException;
+
+    /**
+     * Lire les octets renvoyés par l'imprimante (états DLE EOT, ASB...) :
+     * 0 si rien n'arrive avant timeoutMs, -1 si le transport n'a pas de voie retour
+     */
+    int read(byte[] buffer, int off, int len, int timeoutMs) throws IOException;
+
+    /**
+     * Débit et latence des écritures depuis l'ouverture
+     */
+    TransportStats getStats();
+
+    void close();
+}
@@ -0,0 +1,78 @@
+package cg.sijit.escpos;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Profil retenu pour chaque imprimante (adresse MAC, ip:port, usb:vid:pid),
+ * gardé dans un petit fichier : la détection GS I n'est faite qu'à la
+ * première connexion, et un profil choisi à la main est conservé.
+ */
+public class ProfileCache {
+
+    private final File file;
+    private final Map<String, String> byAddress = new ConcurrentHashMap<>();
+
+    /**
+     * file : fichier de sauvegarde, null pour un cache en mémoire seulement
+     */
+    public ProfileCache(File file) {
+        this.file = file;
+        if (file != null && file.exists()) load();
+    }
+
+    /**
+     * Profil connu pour cette adresse ; null s'il faut le détecter
+     */
+    public PrinterProfile get(String address) {
+        String id = byAddress.get(key(address));
+        return id != null ? PrinterProfile.forId(id) : null;
+    }
+
+    public synchronized void put(String address, PrinterProfile profile) throws IOException {
+        byAddress.put(key(address), profile.id);
+        save();
+    }
+
+    public synchronized void remove(String address) throws IOException {
+        if (byAddress.remove(key(address)) != null) save();
+    }
+
+    private static String key(String address) {
+        return DeviceRegistry.normalizeAddress(address);
+    }
+
+    private void load() {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            // Fichier illisible : les profils seront détectés de nouveau
+            return;
+        }
+        for (String address : properties.stringPropertyNames()) {
+            byAddress.put(address, properties.getProperty(address));
+        }
+    }
+
+    /**
+     * Écrire dans un fichier temporaire puis renommer : pas de fichier à moitié écrit
+     */
+    private void save() throws IOException {
+        if (file == null) return;
+        Properties properties = new Properties();
+        properties.putAll(byAddress);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            properties.store(out, null);
+        }
+        if (!tmp.renameTo(file)) throw new IOException("Impossible d'écrire " + file);
+    }
+}
@@ -0,0 +1,103 @@
+package cg.sijit.escpos;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache LRU des images déjà tramées et encodées en commandes ESC/POS.
+ *
+ * Les clés combinent le hash du contenu et les paramètres de rendu (largeur,
+ * tramage...) ; la taille totale des valeurs est bornée en octets.
+ */
+public class RasterCache {
+
+    public static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxBytes;
+    private int currentBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    public RasterCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public RasterCache(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Clé de cache : SHA-256 du contenu + variante de rendu
+     */
+    public static String key(CharSequence content, String variant) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (int i = 0; i < content.length(); i++) {
+                char c = content.charAt(i);
+                digest.update((byte) (c >> 8));
+                digest.update((byte) c);
+            }
+            byte[] hash = digest.digest();
+            StringBuilder key = new StringBuilder(hash.length * 2 + 1 + variant.length());
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.append(':').append(variant).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public synchronized byte[] get(String key) {
+        byte[] value = entries.get(key);
+        if (value != null) hits++;
+        else misses++;
+        return value;
+    }
+
+    public synchronized void put(String key, byte[] value) {
+        if (value.length > maxBytes) return;
+        byte[] previous = entries.put(key, value);
+        if (previous != null) currentBytes -= previous.length;
+        currentBytes += value.length;
+        Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, byte[]> eldest = it.next();
+            currentBytes -= eldest.getValue().length;
+            it.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int sizeBytes() {
+        return currentBytes;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Part des lectures servies par le cache (0 avant la première lecture)
+     */
+    public synchronized double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,390 @@
+package cg.sijit.escpos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Modèle de ticket compilé une fois, rempli à chaque impression.
+ *
+ * Syntaxe :
+ * <pre>
+ * [center][b]{{shop}}[/b][/center]
+ * {{#items}}{{name:-20}}{{qty:4}}{{price:8}}
+ * {{/items}}[feed=2][cut]
+ * </pre>
+ * {{champ}} insère une valeur ; {{champ:8}} la cadre à droite sur 8 colonnes,
+ * {{champ:-20}} à gauche sur 20 (tronquée si plus longue). {{#liste}}...{{/liste}}
+ * répète le bloc pour chaque élément. Balises : [b], [u], [left], [center],
+ * [right], [size=N], [feed=N], [cut] ; une balise inconnue est imprimée telle quelle.
+ *
+ * Le texte fixe et les commandes sont encodés une seule fois dans un squelette
+ * d'octets (un par page de code) ; à l'impression, seuls les champs sont encodés,
+ * ainsi que [cut] et [size=N] qui suivent le profil de l'encodeur de sortie, et
+ * le texte fixe absent de la page (bascule de page et remplacement de l'encodeur).
+ */
+public class ReceiptTemplate {
+
+    // Nœuds issus de l'analyse, indépendants de la page de code
+    private interface Node {}
+
+    private static final class TextNode implements Node {
+        final String text;
+
+        TextNode(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class CommandNode implements Node {
+        final byte[] bytes;
+
+        CommandNode(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    // [cut] et [size=N] : commandes dépendant du profil de l'imprimante
+    private static final class ProfileCommandNode implements Node {
+        final boolean cut;
+        final int size;
+
+        ProfileCommandNode(boolean cut, int size) {
+            this.cut = cut;
+            this.size = size;
+        }
+    }
+
+    private static final class FieldNode implements Node {
+        final String name;
+        // > 0 : cadré à droite, < 0 : cadré à gauche, 0 : tel quel
+        final int width;
+
+        FieldNode(String name, int width) {
+            this.name = name;
+            this.width = width;
+        }
+    }
+
+    private static final class SectionNode implements Node {
+        final String name;
+        final List<Node> children = new ArrayList<>();
+
+        SectionNode(String name) {
+            this.name = name;
+        }
+    }
+
+    // Squelette compilé : octets fixes et emplacements à remplir
+    private interface Part {}
+
+    private static final class StaticPart implements Part {
+        final int off;
+        final int len;
+
+        StaticPart(int off, int len) {
+            this.off = off;
+            this.len = len;
+        }
+    }
+
+    private static final class FieldPart implements Part {
+        final FieldNode field;
+
+        FieldPart(FieldNode field) {
+            this.field = field;
+        }
+    }
+
+    private static final class ProfileCommandPart implements Part {
+        final ProfileCommandNode command;
+
+        ProfileCommandPart(ProfileCommandNode command) {
+            this.command = command;
+        }
+    }
+
+    // Texte fixe que la page du squelette ne sait pas encoder
+    private static final class TextPart implements Part {
+        final String text;
+
+        TextPart(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class SectionPart implements Part {
+        final String name;
+        final List<Part> parts;
+
+        SectionPart(String name, List<Part> parts) {
+            this.name = name;
+            this.parts = parts;
+        }
+    }
+
+    private static final class Skeleton {
+        final byte[] bytes;
+        final List<Part> parts;
+
+        Skeleton(byte[] bytes, List<Part> parts) {
+            this.bytes = bytes;
+            this.parts = parts;
+        }
+    }
+
+    // Valeurs visibles dans une section : celles de l'élément, puis celles du niveau supérieur
+    private static final class Scope {
+        final Map<String, ?> values;
+        final Scope parent;
+
+        Scope(Map<String, ?> values, Scope parent) {
+            this.values = values;
+            this.parent = parent;
+        }
+
+        Object get(String name) {
+            for (Scope scope = this; scope != null; scope = scope.parent) {
+                if (scope.values != null && scope.values.containsKey(name)) return scope.values.get(name);
+            }
+            return null;
+        }
+    }
+
+    private static final String UTF8_KEY = "UTF8";
+
+    private final List<Node> nodes;
+    private final Map<String, Skeleton> skeletons = new ConcurrentHashMap<>();
+
+    private ReceiptTemplate(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Analyser le modèle ; IllegalArgumentException si une section est mal fermée
+     */
+    public static ReceiptTemplate compile(String source) {
+        List<SectionNode> stack = new ArrayList<>();
+        SectionNode root = new SectionNode("");
+        stack.add(root);
+        StringBuilder text = new StringBuilder();
+        int i = 0;
+        int len = source.length();
+        while (i < len) {
+            char c = source.charAt(i);
+            if (c == '{' && source.startsWith("{{", i)) {
+                int end = source.indexOf("}}", i + 2);
+                if (end < 0) throw new IllegalArgumentException("Champ non fermé à la position " + i);
+                String tag = source.substring(i + 2, end).trim();
+                List<Node> current = stack.get(stack.size() - 1).children;
+                flushText(text, current);
+                if (tag.startsWith("#")) {
+                    SectionNode section = new SectionNode(tag.substring(1).trim());
+                    current.add(section);
+                    stack.add(section);
+                } else if (tag.startsWith("/")) {
+                    String name = tag.substring(1).trim();
+                    SectionNode open = stack.get(stack.size() - 1);
+                    if (stack.size() == 1 || !open.name.equals(name)) {
+                        throw new IllegalArgumentException("Fin de section inattendue : " + name);
+                    }
+                    stack.remove(stack.size() - 1);
+                } else {
+                    current.add(parseField(tag));
+                }
+                i = end + 2;
+            } else if (c == '[') {
+                int end = source.indexOf(']', i + 1);
+                Node command = end > 0 ? parseTag(source.substring(i + 1, end)) : null;
+                if (command == null) {
+                    text.append(c);
+                    i++;
+                    continue;
+                }
+                List<Node> current = stack.get(stack.size() - 1).children;
+                flushText(text, current);
+                current.add(command);
+                i = end + 1;
+            } else {
+                text.append(c);
+                i++;
+            }
+        }
+        if (stack.size() > 1) {
+            throw new IllegalArgumentException("Section non fermée : " + stack.get(stack.size() - 1).name);
+        }
+        flushText(text, root.children);
+        return new ReceiptTemplate(root.children);
+    }
+
+    private static void flushText(StringBuilder text, List<Node> nodes) {
+        if (text.length() == 0) return;
+        nodes.add(new TextNode(text.toString()));
+        text.setLength(0);
+    }
+
+    private static FieldNode parseField(String tag) {
+        int colon = tag.indexOf(':');
+        if (colon < 0) return new FieldNode(tag, 0);
+        try {
+            return new FieldNode(tag.substring(0, colon).trim(), Integer.parseInt(tag.substring(colon + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Largeur de champ invalide : " + tag);
+        }
+    }
+
+    /**
+     * Nœud de la balise, ou null si elle n'est pas reconnue
+     */
+    private static Node parseTag(String tag) {
+        EscPosEncoder encoder = new EscPosEncoder(8);
+        String name = tag.trim().toLowerCase(Locale.ROOT);
+        String arg = null;
+        int eq = name.indexOf('=');
+        if (eq > 0) {
+            arg = name.substring(eq + 1).trim();
+            name = name.substring(0, eq).trim();
+        }
+        try {
+            switch (name) {
+                case "b": encoder.bold(true); break;
+                case "/b": encoder.bold(false); break;
+                case "u": encoder.underline(true); break;
+                case "/u": encoder.underline(false); break;
+                case "left":
+                case "/center":
+                case "/right": encoder.align(EscPosEncoder.ALIGN_LEFT); break;
+                case "center": encoder.align(EscPosEncoder.ALIGN_CENTER); break;
+                case "right": encoder.align(EscPosEncoder.ALIGN_RIGHT); break;
+                case "size": return new ProfileCommandNode(false, arg != null ? Integer.parseInt(arg) : 1);
+                case "/size": encoder.textSize(1); break;
+                case "feed": encoder.feed(arg != null ? Integer.parseInt(arg) : 1); break;
+                case "cut": return new ProfileCommandNode(true, 0);
+                default: return null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new CommandNode(encoder.toByteArray());
+    }
+
+    /**
+     * Ajouter le ticket rempli à l'encodeur, dans sa page de code courante.
+     * Les valeurs sont des chaînes (ou nombres) et les sections des listes de Map.
+     */
+    public void writeTo(EscPosEncoder out, Map<String, ?> data) {
+        CodePage page = out.getCodePage();
+        Skeleton skeleton = skeleton(page);
+        writeParts(out, skeleton.bytes, skeleton.parts, new Scope(data, null), page);
+    }
+
+    private void writeParts(EscPosEncoder out, byte[] bytes, List<Part> parts, Scope scope, CodePage page) {
+        for (Part part : parts) {
+            if (part instanceof StaticPart) {
+                StaticPart s = (StaticPart) part;
+                out.raw(bytes, s.off, s.len);
+            } else if (part instanceof TextPart) {
+                out.text(((TextPart) part).text);
+                if (out.getCodePage() != page) out.codePage(page);
+            } else if (part instanceof ProfileCommandPart) {
+                ProfileCommandNode command = ((ProfileCommandPart) part).command;
+                if (command.cut) out.cut();
+                else out.textSize(command.size);
+            } else if (part instanceof SectionPart) {
+                SectionPart section = (SectionPart) part;
+                Object value = scope.get(section.name);
+                if (!(value instanceof List)) continue;
+                for (Object item : (List<?>) value) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, ?> values = item instanceof Map ? (Map<String, ?>) item : null;
+                    writeParts(out, bytes, section.parts, new Scope(values, scope), page);
+                }
+            } else {
+                FieldNode field = ((FieldPart) part).field;
+                out.text(format(scope.get(field.name), field.width));
+                // Le champ a pu basculer de page : le texte fixe suivant est encodé dans la page du squelette
+                if (out.getCodePage() != page) out.codePage(page);
+            }
+        }
+    }
+
+    static String format(Object value, int width) {
+        String text = value != null ? value.toString() : "";
+        if (width == 0) return text;
+        int columns = Math.abs(width);
+        // Par points de code : une paire de substitution n'est jamais coupée
+        int length = text.codePointCount(0, text.length());
+        if (length >= columns) return text.substring(0, text.offsetByCodePoints(0, columns));
+        StringBuilder padded = new StringBuilder(columns);
+        if (width < 0) padded.append(text);
+        for (int i = length; i < columns; i++) padded.append(' ');
+        if (width > 0) padded.append(text);
+        return padded.toString();
+    }
+
+    /**
+     * Squelette pour une page de code (null = UTF-8), compilé au premier usage
+     */
+    private Skeleton skeleton(CodePage page) {
+        String key = page != null ? page.name() : UTF8_KEY;
+        Skeleton skeleton = skeletons.get(key);
+        if (skeleton == null) {
+            skeleton = buildSkeleton(page);
+            skeletons.put(key, skeleton);
+        }
+        return skeleton;
+    }
+
+    private Skeleton buildSkeleton(CodePage page) {
+        EscPosEncoder encoder = new EscPosEncoder();
+        // Texte fixe encodé dans la page de la session, sans bascule (le ESC t initial n'est pas recopié)
+        encoder.codePage(page);
+        int[] mark = { encoder.size() };
+        List<Part> parts = compileNodes(encoder, nodes, mark);
+        return new Skeleton(encoder.toByteArray(), parts);
+    }
+
+    private static List<Part> compileNodes(EscPosEncoder encoder, List<Node> nodes, int[] mark) {
+        List<Part> parts = new ArrayList<>();
+        for (Node node : nodes) {
+            if (node instanceof TextNode) {
+                String text = ((TextNode) node).text;
+                if (encodable(encoder.getCodePage(), text)) {
+                    encoder.text(text);
+                } else {
+                    flushStatic(encoder, parts, mark);
+                    parts.add(new TextPart(text));
+                }
+            } else if (node instanceof CommandNode) {
+                encoder.raw(((CommandNode) node).bytes);
+            } else if (node instanceof FieldNode) {
+                flushStatic(encoder, parts, mark);
+                parts.add(new FieldPart((FieldNode) node));
+            } else if (node instanceof ProfileCommandNode) {
+                flushStatic(encoder, parts, mark);
+                parts.add(new ProfileCommandPart((ProfileCommandNode) node));
+            } else {
+                SectionNode section = (SectionNode) node;
+                flushStatic(encoder, parts, mark);
+                parts.add(new SectionPart(section.name, compileNodes(encoder, section.children, mark)));
+            }
+        }
+        flushStatic(encoder, parts, mark);
+        return parts;
+    }
+
+    private static boolean encodable(CodePage page, String text) {
+        if (page == null) return true;
+        for (int i = 0; i < text.length(); i++) {
+            if (!page.canEncode(text.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static void flushStatic(EscPosEncoder encoder, List<Part> parts, int[] mark) {
+        if (encoder.size() > mark[0]) parts.add(new StaticPart(mark[0], encoder.size() - mark[0]));
+        mark[0] = encoder.size();
+    }
+}
@@ -0,0 +1,62 @@
+package cg.sijit.escpos;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exécute ses tâches une à une, dans l'ordre de soumission, sur un pool de
+ * threads partagé. Un exécuteur par flux : l'ordre des morceaux est garanti
+ * dans un flux, et un flux bloqué (imprimante lente, job retenu) n'occupe
+ * qu'un thread sans retarder les flux des autres imprimantes.
+ */
+public final class SerialExecutor implements Executor {
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    // Threads créés à la demande, libérés après une minute sans tâche
+    private static final ExecutorService SHARED = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "escpos-worker-" + THREADS.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Lancer une tâche bloquante ponctuelle (balayage réseau, détection) sur le pool partagé
+     */
+    static void background(Runnable task) {
+        SHARED.execute(task);
+    }
+
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private boolean running = false;
+
+    @Override
+    public synchronized void execute(Runnable task) {
+        tasks.add(task);
+        if (!running) {
+            running = true;
+            SHARED.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.poll();
+                if (task == null) {
+                    running = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Une tâche en échec ne bloque pas les suivantes
+            }
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package cg.sijit.escpos;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Journal du spool : les jobs en file sont écrits sur disque avant d'être
+ * envoyés, pour reprendre l'impression après un arrêt de l'application.
+ *
+ * Fichier en ajout seul, enregistrements binaires préfixés par leur longueur :
+ * <pre>
+ * int longueur | int crc32 | byte type | contenu
+ *   ADD  : id du job, id de l'imprimante, int priorité, octets ESC/POS
+ *   DONE : id du job (imprimé, en échec ou annulé)
+ * </pre>
+ * Un enregistrement tronqué (arrêt pendant l'écriture) est ignoré et coupé à la
+ * relecture. Le fichier est vidé dès que plus aucun job n'est en attente, et
+ * compacté quand les jobs terminés y occupent trop de place.
+ *
+ * Un job n'est rendu qu'une fois sur disque (force), mais un seul force couvre
+ * tous les jobs ajoutés depuis le précédent. Les commandes de quelques octets
+ * (gras, alignement, coupe) n'attendent pas : elles sont déjà à l'abri d'un
+ * arrêt de l'application, et un force différé les couvre en cas de coupure.
+ */
+public class SpoolJournal implements PrintQueue.Journal {
+
+    /**
+     * Job retrouvé dans le journal à l'ouverture
+     */
+    public static final class Entry {
+        public final String jobId;
+        public final String printerId;
+        public final int priority;
+        public final byte[] data;
+
+        Entry(String jobId, String printerId, int priority, byte[] data) {
+            this.jobId = jobId;
+            this.printerId = printerId;
+            this.priority = priority;
+            this.data = data;
+        }
+    }
+
+    // Position d'un enregistrement ADD encore en attente
+    private static final class Location {
+        final long position;
+        final int length;
+
+        Location(long position, int length) {
+            this.position = position;
+            this.length = length;
+        }
+    }
+
+    static final byte RECORD_ADD = 1;
+    static final byte RECORD_DONE = 2;
+    static final int HEADER_BYTES = 8;
+    // Au-delà, un enregistrement est considéré comme corrompu
+    static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    // Compaction quand le fichier dépasse cette taille et que les jobs en attente en occupent moins de la moitié
+    static final long COMPACT_THRESHOLD_BYTES = 1024 * 1024;
+    // Jobs jusqu'à cette taille : force différé au lieu d'attendre le disque
+    static final int LAZY_SYNC_BYTES = 64;
+    static final long LAZY_SYNC_DELAY_MS = 50;
+
+    private static final ScheduledExecutorService SYNC = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "escpos-spool-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File file;
+    private FileChannel channel;
+    private long size;
+    private final Map<String, Location> pending = new LinkedHashMap<>();
+    private final List<Entry> recovered = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+
+    // Enregistrements ADD écrits, et ceux couverts par un force (sous syncLock)
+    private long appended = 0;
+    private long synced = 0;
+    private long syncCount = 0;
+    private boolean syncScheduled = false;
+    private final Object syncLock = new Object();
+
+    /**
+     * Ouvrir (ou créer) le journal et relire les jobs qui n'ont pas été imprimés
+     */
+    public SpoolJournal(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        replay();
+    }
+
+    /**
+     * Jobs en attente à l'ouverture, pour une imprimante ; ils ne sont rendus qu'une fois
+     */
+    public synchronized List<Entry> takeRecovered(String printerId) {
+        List<Entry> entries = new ArrayList<>();
+        Iterator<Entry> it = recovered.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.printerId.equals(printerId)) {
+                entries.add(entry);
+                it.remove();
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Jobs en attente à l'ouverture et pas encore repris, toutes imprimantes confondues
+     */
+    public synchronized List<Entry> recovered() {
+        return new ArrayList<>(recovered);
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Forces effectués depuis l'ouverture
+     */
+    long syncCount() {
+        synchronized (syncLock) {
+            return syncCount;
+        }
+    }
+
+    @Override
+    public void recordSubmitted(String printerId, String jobId, int priority, byte[] data, int len) throws IOException {
+        long ticket;
+        synchronized (this) {
+            if (channel == null) throw new IOException("Journal du spool fermé");
+            byte[] id = jobId.getBytes(StandardCharsets.UTF_8);
+            byte[] printer = printerId.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES + 1 + 2 + id.length + 2 + printer.length + 4);
+            head.position(HEADER_BYTES);
+            head.put(RECORD_ADD).putShort((short) id.length).put(id).putShort((short) printer.length).put(printer).putInt(priority);
+            ByteBuffer body = ByteBuffer.wrap(data, 0, len);
+            int length = append(head, body);
+            pending.put(jobId, new Location(size - length, length));
+            ticket = ++appended;
+            if (len <= LAZY_SYNC_BYTES) {
+                scheduleSync();
+                return;
+            }
+        }
+        // Le job ne doit pas être perdu en cas de coupure : on attend le disque,
+        // hors du verrou pour que les autres jobs continuent de s'ajouter
+        sync(ticket);
+    }
+
+    /**
+     * Attendre qu'un force couvre l'enregistrement ticket ; un seul force à la fois,
+     * qui couvre tout ce qui a été ajouté avant lui
+     */
+    private void sync(long ticket) throws IOException {
+        synchronized (syncLock) {
+            while (synced < ticket) {
+                long target;
+                FileChannel current;
+                synchronized (this) {
+                    target = appended;
+                    current = channel;
+                }
+                if (current == null) throw new IOException("Journal du spool fermé");
+                try {
+                    current.force(false);
+                    synced = target;
+                    syncCount++;
+                } catch (ClosedChannelException e) {
+                    // Compacté entre-temps : recommencer sur le nouveau fichier
+                    synchronized (this) {
+                        if (channel == current) throw e;
+                    }
+                }
+            }
+        }
+    }
+
+    private void scheduleSync() {
+        if (syncScheduled) return;
+        syncScheduled = true;
+        SYNC.schedule(() -> {
+            long ticket;
+            synchronized (this) {
+                syncScheduled = false;
+                ticket = appended;
+            }
+            try {
+                sync(ticket);
+            } catch (IOException e) {
+                // Journal fermé : les jobs restent dans le cache du système
+            }
+        }, LAZY_SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void recordFinished(String jobId) {
+        if (channel == null || pending.remove(jobId) == null) return;
+        try {
+            if (pending.isEmpty()) {
+                // Cas courant : plus rien en attente, le journal repart de zéro
+                channel.truncate(0);
+                size = 0;
+                return;
+            }
+            byte[] id = jobId.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES + 1 + 2 + id.length);
+            head.position(HEADER_BYTES);
+            head.put(RECORD_DONE).putShort((short) id.length).put(id);
+            append(head, null);
+            if (size > COMPACT_THRESHOLD_BYTES && liveBytes() < size / 2) compact();
+        } catch (IOException e) {
+            // Au pire le job sera réimprimé à la prochaine ouverture
+        }
+    }
+
+    public synchronized void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignore) {
+        }
+        channel = null;
+    }
+
+    /**
+     * Écrire un enregistrement (en-tête réservé au début de head) ; renvoie sa taille totale
+     */
+    private int append(ByteBuffer head, ByteBuffer body) throws IOException {
+        int payload = head.position() - HEADER_BYTES + (body != null ? body.remaining() : 0);
+        crc.reset();
+        crc.update(head.array(), HEADER_BYTES, head.position() - HEADER_BYTES);
+        if (body != null) crc.update(body.array(), body.position(), body.remaining());
+        head.putInt(0, payload).putInt(4, (int) crc.getValue());
+        head.flip();
+
+        ByteBuffer[] buffers = body != null ? new ByteBuffer[] { head, body } : new ByteBuffer[] { head };
+        channel.position(size);
+        long remaining = HEADER_BYTES + payload;
+        while (remaining > 0) remaining -= channel.write(buffers);
+        size += HEADER_BYTES + payload;
+        return HEADER_BYTES + payload;
+    }
+
+    private long liveBytes() {
+        long bytes = 0;
+        for (Location location : pending.values()) bytes += location.length;
+        return bytes;
+    }
+
+    /**
+     * Réécrire le journal avec les seuls jobs en attente, puis remplacer l'ancien fichier
+     */
+    private void compact() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        Map<String, Location> moved = new LinkedHashMap<>();
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            for (Map.Entry<String, Location> e : pending.entrySet()) {
+                Location location = e.getValue();
+                long copied = 0;
+                while (copied < location.length) {
+                    copied += channel.transferTo(location.position + copied, location.length - copied, out);
+                }
+                moved.put(e.getKey(), new Location(position, location.length));
+                position += location.length;
+            }
+            out.force(false);
+        }
+        channel.close();
+        channel = null;
+        if (!tmp.renameTo(file)) throw new IOException("Compaction du spool impossible : " + file);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = channel.size();
+        pending.clear();
+        pending.putAll(moved);
+    }
+
+    private void replay() throws IOException {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        long fileSize = channel.size();
+        long position = 0;
+        while (position + HEADER_BYTES <= fileSize) {
+            header.clear();
+            if (readFully(header, position) < HEADER_BYTES) break;
+            int length = header.getInt(0);
+            int expectedCrc = header.getInt(4);
+            if (length <= 0 || length > MAX_RECORD_BYTES || position + HEADER_BYTES + length > fileSize) break;
+            ByteBuffer record = ByteBuffer.allocate(length);
+            if (readFully(record, position + HEADER_BYTES) < length) break;
+            crc.reset();
+            crc.update(record.array(), 0, length);
+            if ((int) crc.getValue() != expectedCrc) break;
+
+            record.flip();
+            byte type = record.get();
+            String jobId = readString(record);
+            if (type == RECORD_ADD) {
+                String printerId = readString(record);
+                int priority = record.getInt();
+                byte[] data = new byte[record.remaining()];
+                record.get(data);
+                entries.put(jobId, new Entry(jobId, printerId, priority, data));
+                pending.put(jobId, new Location(position, HEADER_BYTES + length));
+            } else if (type == RECORD_DONE) {
+                entries.remove(jobId);
+                pending.remove(jobId);
+            }
+            position += HEADER_BYTES + length;
+        }
+        // Fin de fichier illisible : écriture interrompue, on repart du dernier enregistrement complet
+        if (position < fileSize) channel.truncate(position);
+        size = position;
+        recovered.addAll(entries.values());
+    }
+
+    private int readFully(ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) break;
+            total += read;
+        }
+        return total;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
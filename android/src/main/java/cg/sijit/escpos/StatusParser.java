@@ -0,0 +1,139 @@
+package cg.sijit.escpos;
+
+/**
+ * Décodage des octets d'état ESC/POS.
+ *
+ * DLE EOT n (n = 1..4) renvoie un octet par requête, bits 1 et 4 à 1.
+ * L'ASB (GS a n) envoie spontanément une trame de 4 octets à chaque
+ * changement d'état ; seul le premier octet a le bit 4 à 1.
+ */
+public final class StatusParser {
+
+    public static final byte DLE = 0x10;
+    public static final byte EOT = 0x04;
+
+    public static final int STATUS_PRINTER = 1;
+    public static final int STATUS_OFFLINE_CAUSE = 2;
+    public static final int STATUS_ERROR_CAUSE = 3;
+    public static final int STATUS_PAPER = 4;
+
+    // GS a n : drawer (bit 0), online/offline (bit 1), erreurs (bit 2), capteurs papier (bit 3)
+    public static final int ASB_ALL = 0x0F;
+
+    private static final int BIT2 = 0x04;
+    private static final int BIT3 = 0x08;
+    private static final int BIT5 = 0x20;
+    private static final int BIT6 = 0x40;
+
+    private StatusParser() {}
+
+    /**
+     * Commande DLE EOT n
+     */
+    public static byte[] realTimeQuery(int n) {
+        return new byte[] { DLE, EOT, (byte) n };
+    }
+
+    /**
+     * Commande GS a n (0 = désactiver l'ASB)
+     */
+    public static byte[] enableAsb(int flags) {
+        return new byte[] { 0x1D, 0x61, (byte) flags };
+    }
+
+    /**
+     * Octet de réponse à DLE EOT : bits 0 et 7 à 0, bits 1 et 4 à 1
+     */
+    public static boolean isRealTimeStatus(int b) {
+        return (b & 0x93) == 0x12;
+    }
+
+    /**
+     * État complet à partir des réponses à DLE EOT 1, 2, 3 et 4
+     */
+    public static PrinterStatus fromRealTime(int printer, int offlineCause, int errorCause, int paper) {
+        boolean error = (offlineCause & BIT6) != 0 || (errorCause & (BIT2 | BIT3 | BIT5 | BIT6)) != 0;
+        return new PrinterStatus(
+            true,
+            (printer & BIT3) == 0,
+            (offlineCause & BIT2) != 0,
+            (offlineCause & BIT5) != 0 || (paper & (BIT5 | BIT6)) != 0,
+            (paper & (BIT2 | BIT3)) != 0,
+            (printer & BIT2) != 0,
+            error
+        );
+    }
+
+    /**
+     * État à partir d'une trame ASB de 4 octets
+     */
+    public static PrinterStatus fromAsb(byte[] frame, int off) {
+        int b1 = frame[off] & 0xFF;
+        int b2 = frame[off + 1] & 0xFF;
+        int b3 = frame[off + 2] & 0xFF;
+        return new PrinterStatus(
+            true,
+            (b1 & BIT3) == 0,
+            (b1 & BIT5) != 0,
+            (b3 & 0x0C) != 0,
+            (b3 & 0x03) != 0,
+            (b1 & BIT2) != 0,
+            (b2 & (BIT2 | BIT3 | BIT5 | BIT6)) != 0
+        );
+    }
+
+    /**
+     * Sépare la réponse à GS r 1 (un octet, bits 4 et 7 à 0) des trames ASB et
+     * des autres réponses reçues pendant l'attente : un octet de suite de trame
+     * ASB a la même forme, il n'est pris pour la réponse que hors d'une trame
+     */
+    public static final class DrainReplyFilter {
+        private int frameRemaining = 0;
+
+        /**
+         * true si l'octet est la réponse à GS r ; sinon il revient au poller
+         */
+        public boolean isDrainReply(byte b) {
+            int value = b & 0xFF;
+            if (frameRemaining > 0 && (value & 0x90) == 0) {
+                frameRemaining--;
+                return false;
+            }
+            frameRemaining = 0;
+            if ((value & 0x93) == 0x10) {
+                frameRemaining = 3;
+                return false;
+            }
+            return (value & 0x90) == 0;
+        }
+    }
+
+    /**
+     * Reconstitue les trames ASB dans un flux d'octets ; les octets hors trame
+     * (réponses à d'autres commandes) sont ignorés
+     */
+    public static final class AsbDecoder {
+        private final byte[] frame = new byte[4];
+        private int length = 0;
+
+        /**
+         * Ajouter un octet ; renvoie l'état quand une trame est complète, sinon null
+         */
+        public PrinterStatus feed(byte b) {
+            int value = b & 0xFF;
+            if ((value & 0x93) == 0x10) {
+                frame[0] = b;
+                length = 1;
+                return null;
+            }
+            if (length == 0 || (value & 0x90) != 0) {
+                length = 0;
+                return null;
+            }
+            frame[length++] = b;
+            if (length < frame.length) return null;
+            length = 0;
+            return fromAsb(frame, 0);
+        }
+    }
+}
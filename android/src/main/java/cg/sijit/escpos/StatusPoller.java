@@ -0,0 +1,168 @@
+package cg.sijit.escpos;
+
+import java.io.IOException;
+
+/**
+ * Surveillance de l'état d'une imprimante en tâche de fond.
+ *
+ * En mode requête, DLE EOT 1..4 est envoyé à chaque intervalle ; en mode ASB,
+ * l'imprimante envoie elle-même ses changements d'état et le thread se contente
+ * de lire. Les échanges se font sous le verrou d'E/S de la session, donc
+ * toujours entre deux jobs, jamais au milieu d'une commande. Seuls les
+ * changements d'état sont publiés.
+ */
+public class StatusPoller {
+
+    public interface Listener {
+        void onStatusChanged(PrinterStatus status);
+    }
+
+    /**
+     * Le transport ne sait pas lire (imprimante USB sans endpoint IN...)
+     */
+    public static class NoReturnChannelException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public NoReturnChannelException(String transport) {
+            super("Pas de voie retour sur le transport " + transport);
+        }
+    }
+
+    public static final int DEFAULT_INTERVAL_MS = 2000;
+    // Attente max d'une réponse à DLE EOT
+    static final int REPLY_TIMEOUT_MS = 500;
+    // Lecture ASB sous verrou : courte, pour ne pas retarder les jobs
+    private static final int ASB_READ_TIMEOUT_MS = 50;
+
+    private final PrinterTransport transport;
+    private final Object ioLock;
+    private final int intervalMs;
+    private final boolean asb;
+    private final Listener listener;
+    private final StatusParser.AsbDecoder asbDecoder = new StatusParser.AsbDecoder();
+    private final byte[] readBuffer = new byte[64];
+
+    private volatile boolean running = false;
+    private volatile PrinterStatus lastStatus;
+    private Thread thread;
+
+    public StatusPoller(PrinterTransport transport, Object ioLock, int intervalMs, boolean asb, Listener listener) {
+        this.transport = transport;
+        this.ioLock = ioLock;
+        this.intervalMs = intervalMs > 0 ? intervalMs : DEFAULT_INTERVAL_MS;
+        this.asb = asb;
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::run, "escpos-status-" + transport.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) thread.interrupt();
+        thread = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getIntervalMs() {
+        return intervalMs;
+    }
+
+    public boolean isAsb() {
+        return asb;
+    }
+
+    /**
+     * Dernier état connu (null avant la première réponse)
+     */
+    public PrinterStatus getLastStatus() {
+        return lastStatus;
+    }
+
+    /**
+     * Interroger l'imprimante tout de suite (DLE EOT 1 à 4)
+     */
+    public static PrinterStatus query(PrinterTransport transport, Object ioLock) throws IOException {
+        int[] replies = new int[4];
+        byte[] buffer = new byte[1];
+        synchronized (ioLock) {
+            for (int n = StatusParser.STATUS_PRINTER; n <= StatusParser.STATUS_PAPER; n++) {
+                byte[] command = StatusParser.realTimeQuery(n);
+                transport.write(command, 0, command.length);
+                int reply = readStatusByte(transport, buffer);
+                if (reply < 0) return PrinterStatus.NOT_RESPONDING;
+                replies[n - 1] = reply;
+            }
+        }
+        return StatusParser.fromRealTime(replies[0], replies[1], replies[2], replies[3]);
+    }
+
+    /**
+     * Premier octet d'état reçu avant le délai ; les octets parasites (ASB, réponses tardives) sont ignorés
+     */
+    private static int readStatusByte(PrinterTransport transport, byte[] buffer) throws IOException {
+        long deadline = System.currentTimeMillis() + REPLY_TIMEOUT_MS;
+        while (true) {
+            int remaining = (int) (deadline - System.currentTimeMillis());
+            if (remaining <= 0) return -1;
+            int read = transport.read(buffer, 0, 1, remaining);
+            if (read < 0) throw new NoReturnChannelException(transport.getName());
+            if (read > 0 && StatusParser.isRealTimeStatus(buffer[0] & 0xFF)) return buffer[0] & 0xFF;
+        }
+    }
+
+    private void run() {
+        if (asb) {
+            try {
+                byte[] enable = StatusParser.enableAsb(StatusParser.ASB_ALL);
+                synchronized (ioLock) {
+                    transport.write(enable, 0, enable.length);
+                }
+            } catch (IOException e) {
+                publish(PrinterStatus.NOT_RESPONDING);
+            }
+        }
+        while (running) {
+            try {
+                if (asb) readAsb();
+                else publish(query(transport, ioLock));
+            } catch (NoReturnChannelException e) {
+                running = false;
+                break;
+            } catch (IOException e) {
+                publish(PrinterStatus.NOT_RESPONDING);
+            }
+            try {
+                Thread.sleep(intervalMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private void readAsb() throws IOException {
+        int read;
+        synchronized (ioLock) {
+            read = transport.read(readBuffer, 0, readBuffer.length, ASB_READ_TIMEOUT_MS);
+        }
+        if (read < 0) throw new NoReturnChannelException(transport.getName());
+        for (int i = 0; i < read; i++) {
+            PrinterStatus status = asbDecoder.feed(readBuffer[i]);
+            if (status != null) publish(status);
+        }
+    }
+
+    private void publish(PrinterStatus status) {
+        if (!running || status.equals(lastStatus)) return;
+        lastStatus = status;
+        if (listener != null) listener.onStatusChanged(status);
+    }
+}
@@ -0,0 +1,139 @@
+package cg.sijit.escpos;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Impression en flux d'un long document (rapport Z, inventaire) : chaque
+ * morceau est encodé à son arrivée puis écrit par le thread de la file, sans
+ * jamais assembler le document entier.
+ *
+ * La file de morceaux est bornée : quand l'imprimante est plus lente que
+ * l'application, append() attend qu'une place se libère. La mémoire utilisée
+ * reste de quelques morceaux, quelle que soit la longueur du document.
+ */
+public class StreamJob {
+
+    public static final int DEFAULT_MAX_CHUNKS = 4;
+    // Aucun morceau pendant ce délai : l'application a abandonné le flux
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 60_000;
+
+    // Attente par tranches, pour voir un abandon pendant qu'append() patiente
+    private static final long POLL_MS = 100;
+
+    // Marqueur de fin (ou de réveil après abandon), jamais écrit
+    private static final EscPosEncoder END = new EscPosEncoder(16);
+
+    private final String id;
+    private final BlockingQueue<EscPosEncoder> chunks;
+    private final long idleTimeoutMs;
+    private volatile Exception failure;
+    private boolean ended = false;
+
+    StreamJob(String id, int maxChunks, long idleTimeoutMs) {
+        this.id = id;
+        this.chunks = new ArrayBlockingQueue<>(Math.max(1, maxChunks));
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Ajouter un morceau encodé ; attend au plus timeoutMs qu'une place se libère.
+     * L'encodeur appartient ensuite au flux, qui le recycle après écriture.
+     */
+    public synchronized void append(EscPosEncoder chunk, long timeoutMs) throws Exception {
+        if (ended) {
+            chunk.recycle();
+            throw new Exception("Flux déjà terminé : " + id);
+        }
+        offer(chunk, timeoutMs);
+    }
+
+    /**
+     * Fin du document : le job se termine une fois les morceaux en attente écrits
+     */
+    public synchronized void end(long timeoutMs) throws Exception {
+        if (ended) return;
+        offer(END, timeoutMs);
+        ended = true;
+    }
+
+    /**
+     * Arrêter le flux : les morceaux en attente sont abandonnés, l'écriture et
+     * les ajouts en cours échouent avec reason
+     */
+    public void abort(Exception reason) {
+        if (failure == null) failure = reason;
+        // Réveiller le thread d'écriture s'il attend un morceau
+        do {
+            discardPending();
+        } while (!chunks.offer(END));
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Morceaux encodés en attente d'écriture
+     */
+    public int pendingChunks() {
+        int pending = 0;
+        for (EscPosEncoder chunk : chunks) {
+            if (chunk != END) pending++;
+        }
+        return pending;
+    }
+
+    private void offer(EscPosEncoder chunk, long timeoutMs) throws Exception {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            Exception error = failure;
+            if (error != null) {
+                recycle(chunk);
+                throw new Exception("Flux interrompu : " + error.getMessage(), error);
+            }
+            if (chunks.offer(chunk, POLL_MS, TimeUnit.MILLISECONDS)) {
+                // Abandon pendant la mise en file : reprendre le morceau s'il n'a pas été lu
+                if (failure != null && chunks.remove(chunk)) recycle(chunk);
+                return;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                recycle(chunk);
+                throw new Exception("Imprimante trop lente : morceau refusé après " + timeoutMs + " ms");
+            }
+        }
+    }
+
+    /**
+     * Morceau suivant pour le thread d'écriture ; null à la fin du document
+     */
+    EscPosEncoder next() throws Exception {
+        EscPosEncoder chunk = chunks.poll(idleTimeoutMs, TimeUnit.MILLISECONDS);
+        Exception error = failure;
+        if (error != null) {
+            if (chunk != null) recycle(chunk);
+            discardPending();
+            throw error;
+        }
+        if (chunk == null) {
+            Exception timeout = new Exception("Flux abandonné : aucun morceau reçu depuis " + idleTimeoutMs + " ms");
+            abort(timeout);
+            throw timeout;
+        }
+        return chunk == END ? null : chunk;
+    }
+
+    private void discardPending() {
+        EscPosEncoder chunk;
+        while ((chunk = chunks.poll()) != null) recycle(chunk);
+    }
+
+    private static void recycle(EscPosEncoder chunk) {
+        if (chunk != END) chunk.recycle();
+    }
+}
@@ -0,0 +1,377 @@
+package cg.sijit.escpos;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport TCP géré (imprimantes réseau, port RAW 9100).
+ *
+ * Délais de connexion et d'écriture configurables, TCP_NODELAY / keep-alive,
+ * et reconnexion transparente avec backoff exponentiel quand l'imprimante
+ * s'est endormie ou a disparu du réseau. L'état de santé est publié via
+ * {@link StateListener}.
+ */
+public class TcpTransport implements PrinterTransport {
+
+    public enum State {
+        CONNECTED,
+        RECONNECTING,
+        DISCONNECTED,
+        FAILED
+    }
+
+    public interface StateListener {
+        void onStateChanged(TcpTransport transport, State state);
+    }
+
+    /**
+     * Réglages de la connexion
+     */
+    public static class Options {
+        public int connectTimeoutMs = 5000;
+        public int writeTimeoutMs = 10000;
+        public boolean tcpNoDelay = true;
+        public boolean keepAlive = true;
+        public boolean autoReconnect = true;
+        public int maxRetries = 5;
+        public int initialRetryDelayMs = 200;
+        public int maxRetryDelayMs = 5000;
+        // Inactivité au-delà de laquelle on vérifie, avant d'écrire, que l'imprimante n'a pas fermé la connexion
+        public int idleProbeMs = 1000;
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    // Ferme la socket si une écriture dépasse writeTimeoutMs
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "escpos-tcp-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String host;
+    private final int port;
+    private final Options options;
+    private final StateListener stateListener;
+    private final TransportStats stats = new TransportStats();
+
+    private final Object lock = new Object();
+    private Socket socket;
+    private OutputStream outputStream;
+    private PushbackInputStream inputStream;
+    private volatile State state = State.DISCONNECTED;
+    private volatile boolean closed = false;
+    private volatile boolean writeTimedOut = false;
+    // Dernier échange réussi sur la socket courante (System.nanoTime)
+    private volatile long lastActivity;
+    private int reconnectCount = 0;
+
+    public TcpTransport(String host, int port, Options options, StateListener stateListener) {
+        this.host = host;
+        this.port = port;
+        this.options = options != null ? options : new Options();
+        this.stateListener = stateListener;
+    }
+
+    /**
+     * Ouvrir la connexion avec les réglages par défaut
+     */
+    public static TcpTransport open(String host, int port) throws IOException {
+        return open(host, port, new Options(), null);
+    }
+
+    public static TcpTransport open(String host, int port, Options options, StateListener stateListener) throws IOException {
+        TcpTransport transport = new TcpTransport(host, port, options, stateListener);
+        try {
+            transport.connectSocket();
+        } catch (IOException e) {
+            transport.setState(State.FAILED);
+            throw e;
+        }
+        return transport;
+    }
+
+    @Override
+    public String getName() {
+        return "wifi";
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getReconnectCount() {
+        synchronized (lock) {
+            return reconnectCount;
+        }
+    }
+
+    /**
+     * Connectée tant que l'appelant n'a pas fermé le transport et que la
+     * reconnexion n'a pas échoué ; avec la reconnexion automatique, une socket
+     * tombée est rouverte à la prochaine écriture
+     */
+    @Override
+    public boolean isConnected() {
+        if (closed || state == State.FAILED) return false;
+        return options.autoReconnect || state == State.CONNECTED;
+    }
+
+    @Override
+    public TransportStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Une connexion fermée par l'imprimante avant l'écriture est rouverte et le
+     * job envoyé dessus. Une coupure en cours d'écriture fait échouer le job :
+     * une partie a pu être imprimée, c'est à la file ou à l'application de
+     * décider de le réimprimer. La connexion sera rouverte au job suivant.
+     */
+    @Override
+    public void write(byte[] data, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        ensureConnected();
+        try {
+            long writeStart = System.nanoTime();
+            writeWithTimeout(data, off, len);
+            long end = System.nanoTime();
+            stats.recordChunk(len, end - writeStart);
+            stats.recordWrite(end - start);
+            lastActivity = end;
+        } catch (IOException e) {
+            closeSocket();
+            setState(closed || options.autoReconnect ? State.DISCONNECTED : State.FAILED);
+            throw e;
+        }
+    }
+
+    /**
+     * Lecture sur la socket courante ; pas de reconnexion ici, c'est l'écriture qui s'en charge
+     */
+    @Override
+    public int read(byte[] buffer, int off, int len, int timeoutMs) throws IOException {
+        Socket current;
+        PushbackInputStream in;
+        synchronized (lock) {
+            current = socket;
+            in = inputStream;
+        }
+        if (current == null || in == null) throw new IOException("Connexion Wifi perdue");
+        try {
+            current.setSoTimeout(Math.max(1, timeoutMs));
+            int read = in.read(buffer, off, len);
+            if (read < 0) throw new IOException("Connexion fermée par l'imprimante");
+            lastActivity = System.nanoTime();
+            return read;
+        } catch (SocketTimeoutException e) {
+            return 0;
+        } finally {
+            if (!current.isClosed()) current.setSoTimeout(options.writeTimeoutMs);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        closeSocket();
+        setState(State.DISCONNECTED);
+    }
+
+    private void ensureConnected() throws IOException {
+        boolean dropped;
+        synchronized (lock) {
+            if (socket != null && !socket.isClosed() && !isPeerClosed()) return;
+            dropped = socket != null;
+        }
+        if (dropped) closeSocket();
+        if (!options.autoReconnect) throw new IOException("Connexion Wifi perdue");
+        reconnect();
+        // Rien n'était encore parti : le job part en entier sur la nouvelle connexion
+        if (dropped) stats.recordRetry();
+    }
+
+    /**
+     * Reconnexion avec backoff exponentiel (et un peu d'aléa pour éviter que
+     * toutes les tablettes ne se reconnectent en même temps après un redémarrage du routeur)
+     */
+    private void reconnect() throws IOException {
+        setState(State.RECONNECTING);
+        long delay = options.initialRetryDelayMs;
+        IOException last = null;
+        for (int attempt = 0; attempt < Math.max(1, options.maxRetries) && !closed; attempt++) {
+            if (attempt > 0) {
+                long jitter = ThreadLocalRandom.current().nextLong(delay / 4 + 1);
+                try {
+                    Thread.sleep(delay + jitter);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Reconnexion interrompue");
+                }
+                delay = Math.min(delay * 2, options.maxRetryDelayMs);
+            }
+            try {
+                connectSocket();
+                synchronized (lock) {
+                    reconnectCount++;
+                }
+                return;
+            } catch (IOException e) {
+                last = e;
+            }
+        }
+        setState(State.FAILED);
+        throw new IOException("Reconnexion Wifi impossible : " + (last != null ? last.getMessage() : "transport fermé"));
+    }
+
+    private void connectSocket() throws IOException {
+        Socket newSocket = new Socket();
+        try {
+            newSocket.setTcpNoDelay(options.tcpNoDelay);
+            newSocket.setKeepAlive(options.keepAlive);
+            newSocket.connect(new InetSocketAddress(host, port), options.connectTimeoutMs);
+            newSocket.setSoTimeout(options.writeTimeoutMs);
+        } catch (IOException e) {
+            try { newSocket.close(); } catch (IOException ignore) {}
+            throw e;
+        }
+        synchronized (lock) {
+            socket = newSocket;
+            lastActivity = System.nanoTime();
+            outputStream = new BufferedOutputStream(newSocket.getOutputStream(), BUFFER_SIZE);
+            inputStream = new PushbackInputStream(newSocket.getInputStream(), 64);
+        }
+        setState(State.CONNECTED);
+    }
+
+    /**
+     * Écriture par tranches : writeTimeoutMs borne le temps sans progression,
+     * pas la durée du job (une longue image sur une imprimante lente passe)
+     */
+    private void writeWithTimeout(byte[] data, int off, int len) throws IOException {
+        Socket current;
+        OutputStream out;
+        synchronized (lock) {
+            current = socket;
+            out = outputStream;
+        }
+        writeTimedOut = false;
+        StallWatchdog watchdog = options.writeTimeoutMs > 0 ? new StallWatchdog(current) : null;
+        try {
+            int end = off + len;
+            for (int pos = off; pos < end; pos += BUFFER_SIZE) {
+                out.write(data, pos, Math.min(BUFFER_SIZE, end - pos));
+                if (watchdog != null) watchdog.progress();
+            }
+            out.flush();
+        } catch (IOException e) {
+            if (writeTimedOut) throw new SocketTimeoutException("Écriture bloquée depuis plus de " + options.writeTimeoutMs + " ms");
+            throw e;
+        } finally {
+            if (watchdog != null) watchdog.cancel();
+        }
+    }
+
+    /**
+     * Ferme la socket quand aucune tranche n'a été acceptée depuis writeTimeoutMs
+     */
+    private final class StallWatchdog implements Runnable {
+        private final Socket socket;
+        private volatile long lastProgress = System.nanoTime();
+        private ScheduledFuture<?> future;
+        private boolean done = false;
+
+        StallWatchdog(Socket socket) {
+            this.socket = socket;
+            schedule(options.writeTimeoutMs);
+        }
+
+        void progress() {
+            lastProgress = System.nanoTime();
+        }
+
+        synchronized void cancel() {
+            done = true;
+            if (future != null) future.cancel(false);
+        }
+
+        private synchronized void schedule(long delayMs) {
+            if (!done) future = WATCHDOG.schedule(this, delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            long idleMs = (System.nanoTime() - lastProgress) / 1_000_000;
+            if (idleMs < options.writeTimeoutMs) {
+                // Des octets sont passés entre-temps : surveiller la suite
+                schedule(options.writeTimeoutMs - idleMs);
+                return;
+            }
+            synchronized (this) {
+                if (done) return;
+            }
+            writeTimedOut = true;
+            try { socket.close(); } catch (IOException ignore) {}
+        }
+    }
+
+    /**
+     * Détecter une connexion fermée par l'imprimante (mise en veille) avant d'écrire dessus.
+     * Sondé seulement après idleProbeMs sans échange : entre deux jobs rapprochés,
+     * une coupure est vue par l'écriture qui échoue.
+     */
+    private boolean isPeerClosed() {
+        if (System.nanoTime() - lastActivity < options.idleProbeMs * 1_000_000L) return false;
+        try {
+            if (inputStream.available() > 0) return false;
+            socket.setSoTimeout(1);
+            try {
+                int b = inputStream.read();
+                if (b < 0) return true;
+                inputStream.unread(b);
+                return false;
+            } finally {
+                socket.setSoTimeout(options.writeTimeoutMs);
+            }
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private void closeSocket() {
+        synchronized (lock) {
+            if (socket != null) {
+                try { socket.close(); } catch (IOException ignore) {}
+            }
+            socket = null;
+            outputStream = null;
+            inputStream = null;
+        }
+    }
+
+    private void setState(State newState) {
+        if (state == newState) return;
+        state = newState;
+        if (stateListener != null) stateListener.onStateChanged(this, newState);
+    }
+}
@@ -0,0 +1,105 @@
+package cg.sijit.escpos;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+/**
+ * Rendu du texte en image, pour les écritures que l'imprimante ne sait pas
+ * encoder (arabe, chinois, emoji...).
+ *
+ * Chaque paragraphe est mis en page par StaticLayout à la largeur du papier,
+ * dessiné par Android puis tramé en 1 bit. Les paragraphes déjà rendus (même
+ * texte, même style) sont repris du cache sans repasser par le Canvas : les
+ * articles d'un menu ne sont tramés qu'une fois.
+ */
+public class TextRenderer {
+
+    public static final int DEFAULT_MAX_CACHE_BYTES = 2 * 1024 * 1024;
+
+    /**
+     * Style de rendu ; fait partie de la clé de cache
+     */
+    public static class Style {
+        /** Largeur de l'image en points (largeur imprimable du papier) */
+        public int widthDots = 384;
+        /** Taille du texte en points d'impression (24 = hauteur de la police A) */
+        public float textSize = 24;
+        public boolean bold = false;
+        /** "left", "center" ou "right" */
+        public String align = "left";
+
+        String cacheVariant() {
+            return "text/" + widthDots + "/" + textSize + "/" + bold + "/" + align;
+        }
+    }
+
+    private final RasterCache cache;
+
+    public TextRenderer() {
+        this(new RasterCache(DEFAULT_MAX_CACHE_BYTES));
+    }
+
+    public TextRenderer(RasterCache cache) {
+        this.cache = cache;
+    }
+
+    public RasterCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Ajouter le texte rendu en image (GS v 0), un paragraphe par ligne de texte
+     */
+    public void render(EscPosEncoder out, String text, Style style) {
+        String variant = style.cacheVariant();
+        for (String paragraph : text.split("\n", -1)) {
+            String key = RasterCache.key(paragraph, variant);
+            byte[] commands = cache.get(key);
+            if (commands == null) {
+                commands = rasterize(paragraph, style);
+                cache.put(key, commands);
+            }
+            out.raw(commands);
+        }
+    }
+
+    private static byte[] rasterize(String paragraph, Style style) {
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.BLACK);
+        paint.setTextSize(style.textSize);
+        paint.setTypeface(style.bold ? Typeface.DEFAULT_BOLD : Typeface.DEFAULT);
+
+        Layout.Alignment alignment = Layout.Alignment.ALIGN_NORMAL;
+        if ("center".equalsIgnoreCase(style.align)) alignment = Layout.Alignment.ALIGN_CENTER;
+        else if ("right".equalsIgnoreCase(style.align)) alignment = Layout.Alignment.ALIGN_OPPOSITE;
+
+        // ALIGN_NORMAL suit le sens d'écriture : l'arabe part de la droite
+        StaticLayout layout = StaticLayout.Builder.obtain(paragraph, 0, paragraph.length(), paint, style.widthDots)
+            .setAlignment(alignment)
+            .setIncludePad(false)
+            .build();
+        int width = style.widthDots;
+        int height = Math.max(1, layout.getHeight());
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        try {
+            Canvas canvas = new Canvas(bitmap);
+            canvas.drawColor(Color.WHITE);
+            layout.draw(canvas);
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            ImageRasterizer.Raster raster = ImageRasterizer.rasterize(
+                pixels, width, height, width, ImageRasterizer.Dither.THRESHOLD, ImageRasterizer.DEFAULT_THRESHOLD
+            );
+            return new EscPosEncoder(raster.data.length + 16).rasterImage(raster).toByteArray();
+        } finally {
+            bitmap.recycle();
+        }
+    }
+}
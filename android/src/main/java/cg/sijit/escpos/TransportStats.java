@@ -0,0 +1,103 @@
+package cg.sijit.escpos;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistiques d'écriture d'un transport : débit et latence par bloc.
+ *
+ * Le débit est calculé sur le temps passé dans write() (pas sur la somme des
+ * latences, qui se chevauchent quand les transferts sont pipelinés).
+ * Compteurs sans verrou : l'enregistrement d'un bloc ne bloque jamais l'écriture.
+ */
+public class TransportStats {
+
+    /**
+     * Valeurs figées à un instant donné
+     */
+    public static final class Snapshot {
+        public final long bytes;
+        public final long chunks;
+        public final long writes;
+        public final long retries;
+        public final double bytesPerSecond;
+        public final double avgChunkLatencyMs;
+        public final double maxChunkLatencyMs;
+        public final double lastChunkLatencyMs;
+
+        Snapshot(long bytes, long chunks, long writes, long retries, double bytesPerSecond, double avgChunkLatencyMs, double maxChunkLatencyMs, double lastChunkLatencyMs) {
+            this.bytes = bytes;
+            this.chunks = chunks;
+            this.writes = writes;
+            this.retries = retries;
+            this.bytesPerSecond = bytesPerSecond;
+            this.avgChunkLatencyMs = avgChunkLatencyMs;
+            this.maxChunkLatencyMs = maxChunkLatencyMs;
+            this.lastChunkLatencyMs = lastChunkLatencyMs;
+        }
+    }
+
+    private static final double NANOS_PER_MS = 1_000_000.0;
+
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final LongAdder chunkNanos = new LongAdder();
+    private final LongAccumulator maxChunkNanos = new LongAccumulator(Math::max, 0);
+    private volatile long lastChunkNanos;
+
+    /**
+     * Un bloc de len octets a été transféré en nanos
+     */
+    public void recordChunk(int len, long nanos) {
+        bytes.add(len);
+        chunks.increment();
+        chunkNanos.add(nanos);
+        lastChunkNanos = nanos;
+        maxChunkNanos.accumulate(nanos);
+    }
+
+    /**
+     * Un appel complet à write() a duré nanos
+     */
+    public void recordWrite(long nanos) {
+        writes.increment();
+        writeNanos.add(nanos);
+    }
+
+    /**
+     * Une écriture a été recommencée (après reconnexion)
+     */
+    public void recordRetry() {
+        retries.increment();
+    }
+
+    public Snapshot snapshot() {
+        long bytes = this.bytes.sum();
+        long chunks = this.chunks.sum();
+        long writeNanos = this.writeNanos.sum();
+        return new Snapshot(
+            bytes,
+            chunks,
+            writes.sum(),
+            retries.sum(),
+            writeNanos > 0 ? bytes * 1_000_000_000.0 / writeNanos : 0,
+            chunks > 0 ? chunkNanos.sum() / NANOS_PER_MS / chunks : 0,
+            maxChunkNanos.get() / NANOS_PER_MS,
+            lastChunkNanos / NANOS_PER_MS
+        );
+    }
+
+    public void reset() {
+        bytes.reset();
+        chunks.reset();
+        writes.reset();
+        retries.reset();
+        writeNanos.reset();
+        chunkNanos.reset();
+        maxChunkNanos.reset();
+        lastChunkNanos = 0;
+    }
+}
@@ -0,0 +1,215 @@
+package cg.sijit.escpos;
+
+import android.hardware.usb.UsbConstants;
+import android.hardware.usb.UsbDevice;
+import android.hardware.usb.UsbDeviceConnection;
+import android.hardware.usb.UsbEndpoint;
+import android.hardware.usb.UsbInterface;
+import android.hardware.usb.UsbManager;
+import android.hardware.usb.UsbRequest;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Transport USB (endpoints bulk OUT et, s'il existe, bulk IN de l'interface imprimante).
+ *
+ * Les écritures sont découpées en blocs multiples de la taille de paquet de
+ * l'endpoint, avec reprise des transferts partiels. En mode pipeliné (Android 8+),
+ * plusieurs blocs sont mis en file via {@link UsbRequest} pour que le bus ne
+ * reste pas inactif entre deux transferts.
+ */
+public class UsbTransport implements PrinterTransport {
+    private static final String TAG = "UsbTransport";
+
+    private static final int MAX_CHUNK_SIZE = 16 * 1024;
+    private static final int TIMEOUT_MS = 1000;
+    // Transferts consécutifs sans progression avant d'abandonner (imprimante bloquée)
+    private static final int MAX_STALLS = 5;
+    private static final int PIPELINE_DEPTH = 4;
+
+    private final UsbDeviceConnection connection;
+    private final UsbInterface usbInterface;
+    private final UsbEndpoint endpointOut;
+    // null si l'imprimante n'a pas de voie retour
+    private final UsbEndpoint endpointIn;
+    private final int chunkSize;
+    private final boolean pipelined;
+    private final TransportStats stats = new TransportStats();
+    // Buffers directs des requêtes pipelinées, réutilisés d'une écriture à l'autre
+    private final ByteBuffer[] buffers = new ByteBuffer[PIPELINE_DEPTH];
+    private volatile boolean connected;
+
+    private UsbTransport(UsbDeviceConnection connection, UsbInterface usbInterface, UsbEndpoint endpointOut, UsbEndpoint endpointIn, boolean pipelined) {
+        this.connection = connection;
+        this.usbInterface = usbInterface;
+        this.endpointOut = endpointOut;
+        this.endpointIn = endpointIn;
+        this.chunkSize = chunkSize(endpointOut.getMaxPacketSize());
+        this.pipelined = pipelined && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O;
+        this.connected = true;
+    }
+
+    /**
+     * Ouvrir l'appareil et trouver les endpoints bulk (OUT obligatoire, IN facultatif)
+     */
+    public static UsbTransport open(UsbManager usbManager, UsbDevice device) throws IOException {
+        return open(usbManager, device, false);
+    }
+
+    public static UsbTransport open(UsbManager usbManager, UsbDevice device, boolean pipelined) throws IOException {
+        UsbDeviceConnection connection = usbManager.openDevice(device);
+        if (connection == null) throw new IOException("Failed to open USB device");
+
+        UsbInterface usbInterface = device.getInterface(0);
+        connection.claimInterface(usbInterface, true);
+
+        UsbEndpoint endpointOut = null;
+        UsbEndpoint endpointIn = null;
+        for (int i = 0; i < usbInterface.getEndpointCount(); i++) {
+            UsbEndpoint ep = usbInterface.getEndpoint(i);
+            if (ep.getType() != UsbConstants.USB_ENDPOINT_XFER_BULK) continue;
+            if (ep.getDirection() == UsbConstants.USB_DIR_OUT && endpointOut == null) endpointOut = ep;
+            else if (ep.getDirection() == UsbConstants.USB_DIR_IN && endpointIn == null) endpointIn = ep;
+        }
+
+        if (endpointOut == null) {
+            connection.close();
+            throw new IOException("No bulk OUT endpoint found");
+        }
+        return new UsbTransport(connection, usbInterface, endpointOut, endpointIn, pipelined);
+    }
+
+    /**
+     * Plus grand multiple de la taille de paquet ne dépassant pas MAX_CHUNK_SIZE
+     */
+    static int chunkSize(int maxPacketSize) {
+        if (maxPacketSize <= 0) return MAX_CHUNK_SIZE;
+        return Math.max(maxPacketSize, (MAX_CHUNK_SIZE / maxPacketSize) * maxPacketSize);
+    }
+
+    @Override
+    public String getName() {
+        return "usb";
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    @Override
+    public TransportStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void write(byte[] data, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        if (pipelined) writePipelined(data, off, len);
+        else writeBlocking(data, off, len);
+        stats.recordWrite(System.nanoTime() - start);
+    }
+
+    /**
+     * bulkTransfer bloc par bloc ; un transfert partiel reprend là où il s'est arrêté
+     */
+    private void writeBlocking(byte[] data, int off, int len) throws IOException {
+        int end = off + len;
+        int pos = off;
+        int stalls = 0;
+        while (pos < end) {
+            int chunk = Math.min(chunkSize, end - pos);
+            long chunkStart = System.nanoTime();
+            int result = connection.bulkTransfer(endpointOut, data, pos, chunk, TIMEOUT_MS);
+            if (result <= 0) {
+                if (++stalls >= MAX_STALLS) throw new IOException("USB bulk transfer failed");
+                continue;
+            }
+            stalls = 0;
+            stats.recordChunk(result, System.nanoTime() - chunkStart);
+            pos += result;
+        }
+    }
+
+    /**
+     * Jusqu'à PIPELINE_DEPTH blocs en file ; les requêtes se terminent dans l'ordre
+     * de l'endpoint, un bloc incomplet fait donc échouer toute l'écriture
+     */
+    private void writePipelined(byte[] data, int off, int len) throws IOException {
+        ArrayDeque<UsbRequest> idle = new ArrayDeque<>(PIPELINE_DEPTH);
+        UsbRequest[] requests = new UsbRequest[PIPELINE_DEPTH];
+        long[] queuedAt = new long[PIPELINE_DEPTH];
+        int inFlight = 0;
+        try {
+            for (int i = 0; i < PIPELINE_DEPTH; i++) {
+                UsbRequest request = new UsbRequest();
+                if (!request.initialize(connection, endpointOut)) throw new IOException("USB request init failed");
+                request.setClientData(i);
+                requests[i] = request;
+                idle.add(request);
+            }
+            int end = off + len;
+            int pos = off;
+            while (pos < end || inFlight > 0) {
+                while (pos < end && !idle.isEmpty()) {
+                    UsbRequest request = idle.poll();
+                    int slot = (Integer) request.getClientData();
+                    int chunk = Math.min(chunkSize, end - pos);
+                    ByteBuffer buffer = buffers[slot] != null ? buffers[slot] : (buffers[slot] = ByteBuffer.allocateDirect(chunkSize));
+                    buffer.clear();
+                    buffer.put(data, pos, chunk);
+                    buffer.flip();
+                    queuedAt[slot] = System.nanoTime();
+                    if (!request.queue(buffer)) throw new IOException("USB request queue failed");
+                    inFlight++;
+                    pos += chunk;
+                }
+                UsbRequest done = connection.requestWait(TIMEOUT_MS);
+                if (done == null) throw new IOException("USB request wait failed");
+                inFlight--;
+                int slot = (Integer) done.getClientData();
+                ByteBuffer buffer = buffers[slot];
+                if (buffer.hasRemaining()) throw new IOException("USB bulk transfer incomplete");
+                stats.recordChunk(buffer.limit(), System.nanoTime() - queuedAt[slot]);
+                idle.add(done);
+            }
+        } catch (TimeoutException e) {
+            throw new IOException("USB bulk transfer timeout (" + TIMEOUT_MS + " ms)");
+        } finally {
+            for (UsbRequest request : requests) {
+                if (request == null) continue;
+                if (inFlight > 0) request.cancel();
+                request.close();
+            }
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int off, int len, int timeoutMs) throws IOException {
+        if (endpointIn == null) return -1;
+        if (!connected) throw new IOException("USB déconnecté");
+        int result = connection.bulkTransfer(endpointIn, buffer, off, len, Math.max(1, timeoutMs));
+        // bulkTransfer renvoie -1 aussi bien en cas de délai dépassé que d'erreur
+        return Math.max(0, result);
+    }
+
+    @Override
+    public void close() {
+        connected = false;
+        try {
+            connection.releaseInterface(usbInterface);
+            connection.close();
+        } catch (Exception e) {
+            Log.e(TAG, "Error during USB disconnect", e);
+        }
+    }
+}
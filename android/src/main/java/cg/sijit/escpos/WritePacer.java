@@ -0,0 +1,99 @@
+package cg.sijit.escpos;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Cadencement des écritures vers une imprimante à petit buffer (Bluetooth bas de gamme).
+ *
+ * Les octets partent par blocs de chunkSize avec une pause entre deux blocs.
+ * En mode adaptatif, la pause est doublée quand l'écriture d'un bloc bloque
+ * nettement plus longtemps que d'habitude (pile Bluetooth saturée : l'imprimante
+ * n'absorbe plus), puis réduite progressivement tant que les écritures restent fluides.
+ */
+public class WritePacer {
+
+    /**
+     * Réglages du cadencement
+     */
+    public static class Options {
+        public int chunkSize = 512;
+        /** Pause fixe entre deux blocs (plancher en mode adaptatif) */
+        public int chunkDelayMs = 0;
+        public boolean adaptive = false;
+        /** Pause max en mode adaptatif */
+        public int maxChunkDelayMs = 100;
+        /** Attendre après chaque job que l'imprimante ait traité ce qu'elle a reçu */
+        public boolean waitForDrain = false;
+        public int drainTimeoutMs = 5000;
+    }
+
+    // Un bloc est « bloqué » s'il dure plus de SPIKE_FACTOR fois la moyenne (et au moins SPIKE_MIN_NANOS)
+    private static final int SPIKE_FACTOR = 3;
+    private static final long SPIKE_MIN_NANOS = 2_000_000;
+    // Blocs fluides consécutifs avant de réduire la pause d'1 ms
+    private static final int SMOOTH_CHUNKS_BEFORE_DECREASE = 16;
+
+    private final Options options;
+    private long averageNanos = -1;
+    private int delayMs;
+    private int smoothChunks = 0;
+
+    public WritePacer(Options options) {
+        this.options = options != null ? options : new Options();
+        this.delayMs = Math.max(0, this.options.chunkDelayMs);
+    }
+
+    public Options getOptions() {
+        return options;
+    }
+
+    /**
+     * Blocs et pause du profil de l'imprimante, connu une fois la connexion ouverte
+     * (avant le premier job)
+     */
+    public void retune(int chunkSize, int chunkDelayMs) {
+        options.chunkSize = chunkSize;
+        options.chunkDelayMs = chunkDelayMs;
+        delayMs = Math.max(0, chunkDelayMs);
+    }
+
+    public int chunkSize() {
+        return Math.max(1, options.chunkSize);
+    }
+
+    public int currentDelayMs() {
+        return delayMs;
+    }
+
+    /**
+     * Durée d'écriture d'un bloc ; en mode adaptatif, ajuste la pause suivante
+     */
+    public void onChunkWritten(long nanos) {
+        if (!options.adaptive) return;
+        if (averageNanos < 0) {
+            averageNanos = nanos;
+            return;
+        }
+        if (nanos > averageNanos * SPIKE_FACTOR && nanos > SPIKE_MIN_NANOS) {
+            delayMs = Math.min(Math.max(options.maxChunkDelayMs, options.chunkDelayMs), Math.max(1, delayMs * 2));
+            smoothChunks = 0;
+        } else if (++smoothChunks >= SMOOTH_CHUNKS_BEFORE_DECREASE) {
+            delayMs = Math.max(options.chunkDelayMs, delayMs - 1);
+            smoothChunks = 0;
+        }
+        averageNanos += (nanos - averageNanos) / 8;
+    }
+
+    /**
+     * Pause entre deux blocs
+     */
+    public void pause() throws InterruptedIOException {
+        if (delayMs <= 0) return;
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Écriture interrompue");
+        }
+    }
+}
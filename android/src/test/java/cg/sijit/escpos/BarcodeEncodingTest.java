@@ -0,0 +1,81 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BarcodeEncodingTest {
+
+    @Test
+    public void encodesEan13WithSettings() {
+        byte[] bytes = new EscPosEncoder()
+            .barcode(EscPosEncoder.BarcodeType.EAN13, "400638133393", 100, 2, EscPosEncoder.HRI_BELOW, 0)
+            .toByteArray();
+
+        byte[] expectedHeader = { 0x1D, 0x68, 100, 0x1D, 0x77, 2, 0x1D, 0x48, 2, 0x1D, 0x66, 0, 0x1D, 0x6B, 67, 12 };
+        assertArrayEquals(expectedHeader, Arrays.copyOf(bytes, expectedHeader.length));
+        assertEquals("400638133393", new String(bytes, expectedHeader.length, 12));
+    }
+
+    @Test
+    public void code128DefaultsToCodeSetB() {
+        byte[] bytes = new EscPosEncoder()
+            .barcode(EscPosEncoder.BarcodeType.CODE128, "Ticket-42", 80, 3, EscPosEncoder.HRI_NONE, 0)
+            .toByteArray();
+
+        int start = 12;
+        assertEquals(73, bytes[start + 2]);
+        assertEquals(11, bytes[start + 3]);
+        assertEquals("{BTicket-42", new String(bytes, start + 4, 11));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidEan13() {
+        new EscPosEncoder().barcode(EscPosEncoder.BarcodeType.EAN13, "12AB", 80, 3, EscPosEncoder.HRI_BELOW, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOddItf() {
+        new EscPosEncoder().barcode(EscPosEncoder.BarcodeType.ITF, "12345", 80, 3, EscPosEncoder.HRI_BELOW, 0);
+    }
+
+    @Test
+    public void encodesQrCodeStoreLengthAfterUtf8() {
+        byte[] bytes = new EscPosEncoder().qrCode("é", 2, 6, EscPosEncoder.QR_EC_M).toByteArray();
+
+        // modèle (9) + taille (8) + correction (8) = 25 octets avant la commande de stockage
+        int store = 25;
+        assertArrayEquals(new byte[] { 0x1D, 0x28, 0x6B, 5, 0, 0x31, 0x50, 0x30, (byte) 0xC3, (byte) 0xA9 }, Arrays.copyOfRange(bytes, store, store + 10));
+        assertArrayEquals(new byte[] { 0x1D, 0x28, 0x6B, 3, 0, 0x31, 0x51, 0x30 }, Arrays.copyOfRange(bytes, store + 10, bytes.length));
+        assertEquals(6, bytes[16]); // taille du module
+    }
+
+    @Test
+    public void qrCodeDataStaysUtf8UnderCodePage() {
+        EscPosEncoder encoder = new EscPosEncoder().codePage(CodePage.CP858);
+        byte[] bytes = encoder.qrCode("é", 2, 6, EscPosEncoder.QR_EC_M).toByteArray();
+
+        // ESC t 19 (3) puis modèle, taille et correction (25)
+        int store = 28;
+        assertArrayEquals(new byte[] { 0x1D, 0x28, 0x6B, 5, 0, 0x31, 0x50, 0x30, (byte) 0xC3, (byte) 0xA9 }, Arrays.copyOfRange(bytes, store, store + 10));
+        // Le texte suivant reste dans la page de code
+        assertEquals((byte) 0x82, encoder.text("é").toByteArray()[bytes.length]);
+    }
+
+    @Test
+    public void oversizedQrCodeWritesNothing() {
+        char[] data = new char[7090];
+        Arrays.fill(data, 'a');
+        EscPosEncoder encoder = new EscPosEncoder().println("ticket");
+        int before = encoder.size();
+        try {
+            encoder.qrCode(new String(data), 2, 6, EscPosEncoder.QR_EC_M);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("QR code trop long", e.getMessage());
+        }
+        assertEquals(before, encoder.size());
+    }
+}
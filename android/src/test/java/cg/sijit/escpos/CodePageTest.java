@@ -0,0 +1,80 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class CodePageTest {
+
+    @Test
+    public void tablesMatchJdkCharsets() {
+        assertSameAsCharset(CodePage.CP437, "IBM437");
+        assertSameAsCharset(CodePage.CP850, "IBM850");
+        assertSameAsCharset(CodePage.CP858, "IBM00858");
+        assertSameAsCharset(CodePage.CP866, "IBM866");
+        assertSameAsCharset(CodePage.CP1252, "windows-1252");
+    }
+
+    @Test
+    public void encodesFrenchTextInSelectedPage() {
+        byte[] bytes = new EscPosEncoder().codePage(CodePage.CP858).text("Prix : 12 €, déjà payé").toByteArray();
+
+        assertArrayEquals(new byte[] { 0x1B, 0x74, 19 }, java.util.Arrays.copyOf(bytes, 3));
+        assertEquals("Prix : 12 €, déjà payé", new String(bytes, 3, bytes.length - 3, Charset.forName("IBM00858")));
+    }
+
+    @Test
+    public void switchesPageWhenCharacterIsMissing() {
+        byte[] bytes = new EscPosEncoder()
+            .alternateCodePages(CodePage.values())
+            .codePage(CodePage.CP850)
+            .text("é Я")
+            .toByteArray();
+
+        byte[] expected = { 0x1B, 0x74, 2, (byte) 0x82, ' ', 0x1B, 0x74, 17, (byte) 0x9F };
+        assertArrayEquals(expected, bytes);
+    }
+
+    @Test
+    public void unmappableCharactersUseFallback() {
+        byte[] bytes = new EscPosEncoder().codePage(CodePage.CP437).fallback('*').text("a€😀b").toByteArray();
+
+        assertArrayEquals(new byte[] { 0x1B, 0x74, 0, 'a', '*', '*', 'b' }, bytes);
+    }
+
+    @Test
+    public void textStaysUtf8WithoutCodePage() {
+        byte[] bytes = new EscPosEncoder().text("é").toByteArray();
+
+        assertArrayEquals("é".getBytes(Charset.forName("UTF-8")), bytes);
+    }
+
+    @Test
+    public void resetForgetsCodePage() {
+        EscPosEncoder encoder = new EscPosEncoder().codePage(CodePage.CP1252);
+        encoder.reset();
+
+        assertNull(encoder.getCodePage());
+        assertArrayEquals("é".getBytes(Charset.forName("UTF-8")), encoder.text("é").toByteArray());
+    }
+
+    @Test
+    public void findsPagesByName() {
+        assertEquals(CodePage.CP858, CodePage.fromName("PC858"));
+        assertEquals(CodePage.CP1252, CodePage.fromName("windows-1252"));
+        assertEquals(CodePage.CP866, CodePage.fromName("cp866"));
+        assertNull(CodePage.fromName("CP999"));
+    }
+
+    private static void assertSameAsCharset(CodePage page, String charsetName) {
+        Charset charset = Charset.forName(charsetName);
+        for (int b = 0x80; b < 0x100; b++) {
+            char c = page.decode(b);
+            if (c == '�') continue;
+            assertEquals(page + " " + Integer.toHexString(b), c, new String(new byte[] { (byte) b }, charset).charAt(0));
+            assertEquals(page + " " + c, b, page.encode(c));
+        }
+    }
+}
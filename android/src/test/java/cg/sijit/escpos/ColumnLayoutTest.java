@@ -0,0 +1,106 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ColumnLayoutTest {
+
+    private static ColumnLayout.Column column(int width, ColumnLayout.Align align, ColumnLayout.Overflow overflow) {
+        ColumnLayout.Column column = new ColumnLayout.Column();
+        column.width = width;
+        column.align = align;
+        column.overflow = overflow;
+        return column;
+    }
+
+    private static String render(ColumnLayout layout, String... cells) {
+        EscPosEncoder encoder = new EscPosEncoder();
+        layout.writeRow(encoder, cells);
+        return new String(encoder.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void charsPerLineDependsOnFontAndSize() {
+        assertEquals(32, ColumnLayout.charsPerLine(384, false, 1));
+        assertEquals(42, ColumnLayout.charsPerLine(384, true, 1));
+        assertEquals(16, ColumnLayout.charsPerLine(384, false, 2));
+        assertEquals(48, ColumnLayout.charsPerLine(576, false, 1));
+    }
+
+    @Test
+    public void flexibleColumnTakesRemainingWidth() {
+        ColumnLayout layout = new ColumnLayout(32, 1, List.of(
+            column(0, ColumnLayout.Align.LEFT, ColumnLayout.Overflow.WRAP),
+            column(3, ColumnLayout.Align.RIGHT, ColumnLayout.Overflow.TRUNCATE),
+            column(8, ColumnLayout.Align.RIGHT, ColumnLayout.Overflow.TRUNCATE)
+        ));
+        assertArrayEquals(new int[] { 19, 3, 8 }, layout.getWidths());
+        assertEquals("Cafe                  2     5.00\n", render(layout, "Cafe", "2", "5.00"));
+    }
+
+    @Test
+    public void wrapsLongNamesOnWordBoundaries() {
+        ColumnLayout layout = new ColumnLayout(20, 1, List.of(
+            column(0, ColumnLayout.Align.LEFT, ColumnLayout.Overflow.WRAP),
+            column(6, ColumnLayout.Align.RIGHT, ColumnLayout.Overflow.TRUNCATE)
+        ));
+        String expected = "Poulet braise  12.50\n"
+            + "sauce tomate\n";
+        assertEquals(expected, render(layout, "Poulet braise sauce tomate", "12.50"));
+    }
+
+    @Test
+    public void cutsWordsLongerThanTheColumn() {
+        assertEquals(List.of("abcd", "efgh", "ij"), ColumnLayout.fit("abcdefghij", 4, ColumnLayout.Overflow.WRAP));
+    }
+
+    @Test
+    public void truncatesAndEllipsizes() {
+        assertEquals(List.of("Bissa"), ColumnLayout.fit("Bissap glacé", 5, ColumnLayout.Overflow.TRUNCATE));
+        assertEquals(List.of("Bissap..."), ColumnLayout.fit("Bissap glacé", 9, ColumnLayout.Overflow.ELLIPSIS));
+        assertEquals(List.of("Bi"), ColumnLayout.fit("Bissap", 2, ColumnLayout.Overflow.ELLIPSIS));
+    }
+
+    @Test
+    public void centersCells() {
+        ColumnLayout layout = new ColumnLayout(10, 0, List.of(column(0, ColumnLayout.Align.CENTER, ColumnLayout.Overflow.WRAP)));
+        assertEquals("   TVA\n", render(layout, "TVA"));
+    }
+
+    @Test
+    public void flexibleColumnsNeverGetZeroWidth() {
+        // 58 mm en taille 3 : 11 caractères, une colonne fixe de 8 et deux souples
+        try {
+            new ColumnLayout(11, 1, List.of(
+                column(8, ColumnLayout.Align.LEFT, ColumnLayout.Overflow.WRAP),
+                column(0, ColumnLayout.Align.LEFT, ColumnLayout.Overflow.WRAP),
+                column(0, ColumnLayout.Align.LEFT, ColumnLayout.Overflow.WRAP)
+            ));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Colonnes trop larges"));
+        }
+
+        ColumnLayout.Column heavy = column(0, ColumnLayout.Align.LEFT, ColumnLayout.Overflow.WRAP);
+        heavy.weight = 10;
+        ColumnLayout layout = new ColumnLayout(12, 1, List.of(
+            column(8, ColumnLayout.Align.LEFT, ColumnLayout.Overflow.WRAP),
+            heavy,
+            column(0, ColumnLayout.Align.LEFT, ColumnLayout.Overflow.WRAP)
+        ));
+        assertArrayEquals(new int[] { 8, 1, 1 }, layout.getWidths());
+        assertEquals(List.of("abc"), ColumnLayout.fit("abc", 0, ColumnLayout.Overflow.WRAP));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsColumnsWiderThanTheLine() {
+        new ColumnLayout(16, 1, List.of(
+            column(10, ColumnLayout.Align.LEFT, ColumnLayout.Overflow.WRAP),
+            column(10, ColumnLayout.Align.LEFT, ColumnLayout.Overflow.WRAP)
+        ));
+    }
+}
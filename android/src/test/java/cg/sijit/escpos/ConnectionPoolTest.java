@@ -0,0 +1,39 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ConnectionPoolTest {
+
+    @Test
+    public void resolvesRequestedPrinterOrDefaultOrder() throws Exception {
+        ConnectionPool pool = new ConnectionPool(null);
+        pool.open("kitchen", new InMemoryTransport("wifi"));
+        pool.open(ConnectionPool.DEFAULT_WIFI, new InMemoryTransport("wifi"));
+
+        assertEquals("kitchen", pool.resolve("kitchen").getId());
+        assertEquals(ConnectionPool.DEFAULT_WIFI, pool.resolve(null).getId());
+
+        pool.close(ConnectionPool.DEFAULT_WIFI);
+        assertEquals("kitchen", pool.resolve(null).getId());
+        pool.closeAll();
+    }
+
+    @Test
+    public void reopeningAnIdClosesThePreviousSession() throws Exception {
+        ConnectionPool pool = new ConnectionPool(null);
+        InMemoryTransport first = new InMemoryTransport("wifi");
+        pool.open("bar", first);
+        pool.open("bar", new InMemoryTransport("wifi"));
+
+        assertFalse(first.isConnected());
+        assertEquals(1, pool.list().size());
+        pool.closeAll();
+    }
+
+    @Test(expected = Exception.class)
+    public void unknownPrinterIsRejected() throws Exception {
+        new ConnectionPool(null).resolve("terrace");
+    }
+}
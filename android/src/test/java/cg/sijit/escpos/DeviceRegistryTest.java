@@ -0,0 +1,65 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class DeviceRegistryTest {
+
+    private static final UUID SPP_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+    private static final UUID OTHER_UUID = UUID.fromString("00001105-0000-1000-8000-00805F9B34FB");
+
+    @Test
+    public void findsByNormalizedAddress() {
+        DeviceRegistry<String> registry = new DeviceRegistry<>();
+        registry.put("aa:bb:cc:dd:ee:01", "MPT-II", "device-1");
+
+        assertEquals("device-1", registry.get("AA:BB:CC:DD:EE:01").device);
+        assertEquals("AA:BB:CC:DD:EE:01", registry.get(" aa:bb:cc:dd:ee:01 ").address);
+    }
+
+    @Test
+    public void sameModelNameReturnsAllPrinters() {
+        DeviceRegistry<String> registry = new DeviceRegistry<>();
+        registry.put("AA:BB:CC:DD:EE:01", "MPT-II", "kitchen");
+        registry.put("AA:BB:CC:DD:EE:02", "MPT-II", "bar");
+        registry.put("AA:BB:CC:DD:EE:03", "RPP02N", "desk");
+
+        assertEquals(2, registry.findByName("MPT-II").size());
+        assertEquals(1, registry.findByName("RPP02N").size());
+        assertTrue(registry.findByName("Inconnue").isEmpty());
+    }
+
+    @Test
+    public void lastGoodUuidIsTriedFirstAndSurvivesRefresh() {
+        DeviceRegistry<String> registry = new DeviceRegistry<>();
+        registry.put("AA:BB:CC:DD:EE:01", "MPT-II", "device");
+        registry.markConnected("aa:bb:cc:dd:ee:01", OTHER_UUID);
+
+        // Nouveau handle après un réappairage : l'UUID connu est conservé
+        registry.put("AA:BB:CC:DD:EE:01", "MPT-II", "device-again");
+
+        assertEquals(
+            Arrays.asList(OTHER_UUID, SPP_UUID),
+            registry.uuidCandidates("AA:BB:CC:DD:EE:01", SPP_UUID, OTHER_UUID)
+        );
+    }
+
+    @Test
+    public void unbondAndClearForgetDevices() {
+        DeviceRegistry<String> registry = new DeviceRegistry<>();
+        registry.put("AA:BB:CC:DD:EE:01", "MPT-II", "device");
+        registry.put("AA:BB:CC:DD:EE:02", "MPT-II", "device");
+        registry.setLoaded(true);
+
+        registry.remove("AA:BB:CC:DD:EE:01");
+        assertNull(registry.get("AA:BB:CC:DD:EE:01"));
+
+        registry.clear();
+        assertFalse(registry.isLoaded());
+        assertTrue(registry.entries().isEmpty());
+    }
+}
@@ -0,0 +1,291 @@
+package cg.sijit.escpos;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Décodage d'un flux ESC/POS en opérations, pour vérifier ce que reçoit
+ * l'imprimante simulée.
+ *
+ * Le flux peut arriver en morceaux quelconques : une commande ou un caractère
+ * UTF-8 coupé est complété au morceau suivant. Le texte est décodé dans la page
+ * de code sélectionnée par ESC t (UTF-8 tant qu'aucune ne l'est).
+ */
+public class EscPosDecoder {
+
+    public enum Kind {
+        INIT, TEXT, LF, BOLD, UNDERLINE, FONT, ALIGN, PRINT_MODE, SIZE, FEED, FEED_DOTS,
+        LINE_SPACING, CODE_PAGE, CUT, DRAWER_KICK, BARCODE_OPTION, BARCODE, SYMBOL,
+        RASTER, GRAPHICS, NV_GRAPHICS, STATUS_QUERY, PAPER_QUERY, ASB, PRINTER_INFO, UNKNOWN
+    }
+
+    /**
+     * Commande décodée ; arg et arg2 valent -1 quand la commande n'en a pas
+     */
+    public static final class Operation {
+        public final Kind kind;
+        public final int arg;
+        public final int arg2;
+        /** Données de la commande (image, code-barres, QR) ou octets du texte */
+        public final byte[] data;
+        /** Texte décodé (TEXT uniquement) */
+        public final String text;
+
+        Operation(Kind kind, int arg, int arg2, byte[] data, String text) {
+            this.kind = kind;
+            this.arg = arg;
+            this.arg2 = arg2;
+            this.data = data;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            if (kind == Kind.TEXT) return "TEXT(" + text + ")";
+            StringBuilder sb = new StringBuilder(kind.name());
+            if (arg >= 0) sb.append('(').append(arg).append(arg2 >= 0 ? "," + arg2 : "").append(')');
+            if (data != null) sb.append('[').append(data.length).append(']');
+            return sb.toString();
+        }
+    }
+
+    private static final int ESC = 0x1B;
+    private static final int GS = 0x1D;
+    private static final int DLE = 0x10;
+
+    private static final byte[] NO_DATA = new byte[0];
+
+    private byte[] pending = new byte[256];
+    private int pendingLength = 0;
+    private CodePage codePage;
+
+    /**
+     * Décoder un morceau du flux ; renvoie les opérations qu'il complète
+     */
+    public List<Operation> feed(byte[] data, int off, int len) {
+        if (pendingLength + len > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + len));
+        }
+        System.arraycopy(data, off, pending, pendingLength, len);
+        pendingLength += len;
+
+        List<Operation> out = new ArrayList<>();
+        int pos = 0;
+        while (pos < pendingLength) {
+            int consumed = decode(pos, false, out);
+            if (consumed == 0) break;
+            pos += consumed;
+        }
+        System.arraycopy(pending, pos, pending, 0, pendingLength - pos);
+        pendingLength -= pos;
+        return out;
+    }
+
+    /**
+     * Fin du flux : le texte en attente est émis, une commande incomplète devient UNKNOWN
+     */
+    public List<Operation> finish() {
+        List<Operation> out = new ArrayList<>();
+        int pos = 0;
+        while (pos < pendingLength) {
+            int consumed = decode(pos, true, out);
+            // Commande tronquée : déjà émise en UNKNOWN avec le reste du flux
+            if (consumed == 0) break;
+            pos += consumed;
+        }
+        pendingLength = 0;
+        return out;
+    }
+
+    /**
+     * Décoder l'opération qui commence à pos ; 0 si elle n'est pas encore complète
+     */
+    private int decode(int pos, boolean eof, List<Operation> out) {
+        int b = pending[pos] & 0xFF;
+        if (b == ESC) return needs(pos, 2, eof, out) ? escape(pos, eof, out) : 0;
+        if (b == GS) return needs(pos, 2, eof, out) ? group(pos, eof, out) : 0;
+        if (b == DLE) {
+            if (!needs(pos, 2, eof, out)) return 0;
+            if (pending[pos + 1] == 0x04) return simple(pos, 3, Kind.STATUS_QUERY, eof, out);
+            if (pending[pos + 1] == 0x14) return simple(pos, 5, Kind.DRAWER_KICK, eof, out);
+            return unknown(pos, 1, out);
+        }
+        if (b == '\n') {
+            out.add(new Operation(Kind.LF, -1, -1, null, null));
+            return 1;
+        }
+        if (b == '\r') return 1;
+        if (b < 0x20 && b != '\t') return unknown(pos, 1, out);
+        return text(pos, eof, out);
+    }
+
+    private int escape(int pos, boolean eof, List<Operation> out) {
+        switch (pending[pos + 1]) {
+            case '@':
+                codePage = null;
+                out.add(new Operation(Kind.INIT, -1, -1, null, null));
+                return 2;
+            case 'E': return simple(pos, 3, Kind.BOLD, eof, out);
+            case '-': return simple(pos, 3, Kind.UNDERLINE, eof, out);
+            case 'M': return simple(pos, 3, Kind.FONT, eof, out);
+            case 'a': return simple(pos, 3, Kind.ALIGN, eof, out);
+            case '!': return simple(pos, 3, Kind.PRINT_MODE, eof, out);
+            case 'd': return simple(pos, 3, Kind.FEED, eof, out);
+            case 'J': return simple(pos, 3, Kind.FEED_DOTS, eof, out);
+            case '3': return simple(pos, 3, Kind.LINE_SPACING, eof, out);
+            case '2':
+                out.add(new Operation(Kind.LINE_SPACING, -1, -1, null, null));
+                return 2;
+            case 'p': return simple(pos, 5, Kind.DRAWER_KICK, eof, out);
+            case 't': {
+                int consumed = simple(pos, 3, Kind.CODE_PAGE, eof, out);
+                if (consumed == 3) codePage = pageOf(pending[pos + 2] & 0xFF);
+                return consumed;
+            }
+            default: return unknown(pos, 2, out);
+        }
+    }
+
+    private int group(int pos, boolean eof, List<Operation> out) {
+        switch (pending[pos + 1]) {
+            case '!': return simple(pos, 3, Kind.SIZE, eof, out);
+            case 'V': {
+                if (!needs(pos, 3, eof, out)) return 0;
+                int m = pending[pos + 2] & 0xFF;
+                // Modes 65 et 66 : avance de n points avant la coupe
+                int length = m == 65 || m == 66 ? 4 : 3;
+                if (!needs(pos, length, eof, out)) return 0;
+                out.add(new Operation(Kind.CUT, m, length == 4 ? pending[pos + 3] & 0xFF : -1, null, null));
+                return length;
+            }
+            case 'h':
+            case 'w':
+            case 'H':
+            case 'f': {
+                if (!needs(pos, 3, eof, out)) return 0;
+                out.add(new Operation(Kind.BARCODE_OPTION, pending[pos + 1], pending[pos + 2] & 0xFF, null, null));
+                return 3;
+            }
+            case 'k': return barcode(pos, eof, out);
+            case 'v': {
+                // GS v 0 m xL xH yL yH d1...dk
+                if (!needs(pos, 8, eof, out)) return 0;
+                int widthBytes = u16(pos + 4);
+                int height = u16(pos + 6);
+                int length = 8 + widthBytes * height;
+                if (!needs(pos, length, eof, out)) return 0;
+                out.add(new Operation(Kind.RASTER, widthBytes, height, copy(pos + 8, widthBytes * height), null));
+                return length;
+            }
+            case '(': {
+                // GS ( c pL pH ... : fonction = premier octet après m
+                if (!needs(pos, 5, eof, out)) return 0;
+                int p = u16(pos + 3);
+                if (!needs(pos, 5 + p, eof, out)) return 0;
+                int c = pending[pos + 2];
+                Kind kind = c == 'L' ? Kind.GRAPHICS : c == 'k' ? Kind.SYMBOL : Kind.UNKNOWN;
+                int fn = p >= 2 ? pending[pos + 6] & 0xFF : -1;
+                out.add(new Operation(kind, fn, -1, copy(pos + 5, p), null));
+                return 5 + p;
+            }
+            case '8': {
+                // GS 8 L p1 p2 p3 p4 ... : longueur sur 32 bits
+                if (!needs(pos, 7, eof, out)) return 0;
+                long p = u16(pos + 3) | (long) u16(pos + 5) << 16;
+                if (!needs(pos, (int) (7 + p), eof, out)) return 0;
+                int fn = p >= 2 ? pending[pos + 8] & 0xFF : -1;
+                out.add(new Operation(Kind.NV_GRAPHICS, fn, -1, copy(pos + 7, (int) p), null));
+                return (int) (7 + p);
+            }
+            case 'r': return simple(pos, 3, Kind.PAPER_QUERY, eof, out);
+            case 'a': return simple(pos, 3, Kind.ASB, eof, out);
+            case 'I': return simple(pos, 3, Kind.PRINTER_INFO, eof, out);
+            default: return unknown(pos, 2, out);
+        }
+    }
+
+    /**
+     * GS k m : format A (m ≤ 6) terminé par NUL, format B (m ≥ 65) précédé de sa longueur
+     */
+    private int barcode(int pos, boolean eof, List<Operation> out) {
+        if (!needs(pos, 3, eof, out)) return 0;
+        int m = pending[pos + 2] & 0xFF;
+        if (m >= 65) {
+            if (!needs(pos, 4, eof, out)) return 0;
+            int n = pending[pos + 3] & 0xFF;
+            if (!needs(pos, 4 + n, eof, out)) return 0;
+            out.add(new Operation(Kind.BARCODE, m, -1, copy(pos + 4, n), null));
+            return 4 + n;
+        }
+        for (int i = pos + 3; i < pendingLength; i++) {
+            if (pending[i] == 0) {
+                out.add(new Operation(Kind.BARCODE, m, -1, copy(pos + 3, i - pos - 3), null));
+                return i - pos + 1;
+            }
+        }
+        return eof ? unknown(pos, pendingLength - pos, out) : 0;
+    }
+
+    private int text(int pos, boolean eof, List<Operation> out) {
+        int end = pos;
+        while (end < pendingLength) {
+            int b = pending[end] & 0xFF;
+            if (b < 0x20 && b != '\t') break;
+            end++;
+        }
+        if (end == pendingLength && !eof) {
+            // Texte peut-être coupé (jusque dans un caractère UTF-8) : attendre la suite
+            return 0;
+        }
+        byte[] bytes = copy(pos, end - pos);
+        out.add(new Operation(Kind.TEXT, -1, -1, bytes, decodeText(bytes)));
+        return end - pos;
+    }
+
+    private String decodeText(byte[] bytes) {
+        if (codePage == null) return new String(bytes, StandardCharsets.UTF_8);
+        char[] chars = new char[bytes.length];
+        for (int i = 0; i < bytes.length; i++) chars[i] = codePage.decode(bytes[i] & 0xFF);
+        return new String(chars);
+    }
+
+    private static CodePage pageOf(int number) {
+        for (CodePage page : CodePage.values()) {
+            if (page.escPosNumber == number) return page;
+        }
+        return null;
+    }
+
+    private int simple(int pos, int length, Kind kind, boolean eof, List<Operation> out) {
+        if (!needs(pos, length, eof, out)) return 0;
+        int arg = length > 2 ? pending[pos + 2] & 0xFF : -1;
+        int arg2 = length > 3 ? pending[pos + 3] & 0xFF : -1;
+        out.add(new Operation(kind, arg, arg2, null, null));
+        return length;
+    }
+
+    private int unknown(int pos, int length, List<Operation> out) {
+        out.add(new Operation(Kind.UNKNOWN, pending[pos] & 0xFF, -1, copy(pos, length), null));
+        return length;
+    }
+
+    /**
+     * length octets disponibles à partir de pos ? En fin de flux, une commande
+     * tronquée est émise en UNKNOWN
+     */
+    private boolean needs(int pos, int length, boolean eof, List<Operation> out) {
+        if (pos + length <= pendingLength) return true;
+        if (eof) unknown(pos, pendingLength - pos, out);
+        return false;
+    }
+
+    private int u16(int pos) {
+        return (pending[pos] & 0xFF) | (pending[pos + 1] & 0xFF) << 8;
+    }
+
+    private byte[] copy(int pos, int length) {
+        return length == 0 ? NO_DATA : Arrays.copyOfRange(pending, pos, pos + length);
+    }
+}
@@ -0,0 +1,54 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class EscPosEncoderTest {
+
+    @Test
+    public void encodesCommands() {
+        EscPosEncoder encoder = new EscPosEncoder();
+        encoder.bold(true).align("center").textSize(2).feed(3).cut();
+        assertArrayEquals(
+            new byte[] { 0x1B, 0x45, 0x01, 0x1B, 0x61, 0x01, 0x1D, 0x21, 0x11, 0x1B, 0x64, 0x03, 0x1D, 0x56, 0x00 },
+            encoder.toByteArray()
+        );
+    }
+
+    @Test
+    public void encodesTextLikeStringGetBytes() {
+        String text = "Café crème 10€ 🍕 \uD800 fin";
+        EscPosEncoder encoder = new EscPosEncoder(16);
+        encoder.text(text);
+        assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), encoder.toByteArray());
+    }
+
+    @Test
+    public void growsAndResets() {
+        EscPosEncoder encoder = new EscPosEncoder(16);
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 500; i++) line.append('x');
+        encoder.println(line);
+        assertEquals(501, encoder.size());
+        assertEquals('\n', encoder.buffer()[500]);
+
+        byte[] buffer = encoder.buffer();
+        encoder.reset().text("ok");
+        assertSame(buffer, encoder.buffer());
+        assertEquals(2, encoder.size());
+    }
+
+    @Test
+    public void poolReusesRecycledEncoders() {
+        EscPosEncoder encoder = EscPosEncoder.obtain();
+        encoder.text("ticket");
+        encoder.recycle();
+        EscPosEncoder reused = EscPosEncoder.obtain();
+        assertSame(encoder, reused);
+        assertEquals(0, reused.size());
+        reused.recycle();
+    }
+}
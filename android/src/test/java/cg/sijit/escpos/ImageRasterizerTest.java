@@ -0,0 +1,146 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ImageRasterizerTest {
+
+    private static final int BLACK = 0xFF000000;
+    private static final int WHITE = 0xFFFFFFFF;
+
+    private static int[] fill(int width, int height, int color) {
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, color);
+        return pixels;
+    }
+
+    @Test
+    public void packsBitsMostSignificantFirst() {
+        // 10 points de large : noir, blanc, noir... sur une ligne
+        int[] pixels = new int[10];
+        for (int x = 0; x < 10; x++) pixels[x] = (x % 2 == 0) ? BLACK : WHITE;
+
+        ImageRasterizer.Raster raster = ImageRasterizer.rasterize(pixels, 10, 1, 10, ImageRasterizer.Dither.THRESHOLD, 128);
+
+        assertEquals(2, raster.widthBytes);
+        assertEquals(1, raster.height);
+        assertArrayEquals(new byte[] { (byte) 0xAA, (byte) 0x80 }, raster.data);
+    }
+
+    @Test
+    public void scalesToTargetWidthKeepingRatio() {
+        ImageRasterizer.Raster raster = ImageRasterizer.rasterize(fill(800, 400, BLACK), 800, 400, 384, ImageRasterizer.Dither.THRESHOLD, 128);
+
+        assertEquals(48, raster.widthBytes);
+        assertEquals(192, raster.height);
+        for (byte b : raster.data) assertEquals((byte) 0xFF, b);
+    }
+
+    @Test
+    public void transparentPixelsPrintWhite() {
+        ImageRasterizer.Raster raster = ImageRasterizer.rasterize(fill(8, 8, 0x00000000), 8, 8, 8, ImageRasterizer.Dither.FLOYD_STEINBERG, 128);
+
+        for (byte b : raster.data) assertEquals(0, b);
+    }
+
+    @Test
+    public void ditheringMidGrayGivesAboutHalfBlack() {
+        int gray = 0xFF808080;
+        for (ImageRasterizer.Dither dither : new ImageRasterizer.Dither[] { ImageRasterizer.Dither.BAYER, ImageRasterizer.Dither.FLOYD_STEINBERG }) {
+            ImageRasterizer.Raster raster = ImageRasterizer.rasterize(fill(64, 64, gray), 64, 64, 64, dither, 128);
+            int black = 0;
+            for (byte b : raster.data) black += Integer.bitCount(b & 0xFF);
+            assertTrue(dither + " : " + black, black > 64 * 64 * 2 / 5 && black < 64 * 64 * 3 / 5);
+        }
+    }
+
+    @Test
+    public void encodesRasterCommandHeader() {
+        ImageRasterizer.Raster raster = new ImageRasterizer.Raster(2, 3, new byte[6]);
+        byte[] bytes = new EscPosEncoder().rasterImage(raster).toByteArray();
+
+        assertArrayEquals(new byte[] { 0x1D, 0x76, 0x30, 0x00, 0x02, 0x00, 0x03, 0x00 }, Arrays.copyOf(bytes, 8));
+        assertEquals(8 + 6, bytes.length);
+    }
+
+    /**
+     * Coupon de 48 octets de large : bloc noir de 4 octets au centre, 100 lignes blanches, puis 10 lignes de texte à gauche
+     */
+    private static ImageRasterizer.Raster coupon() {
+        int widthBytes = 48;
+        int height = 20 + 100 + 10 + 30;
+        byte[] data = new byte[widthBytes * height];
+        for (int y = 0; y < 20; y++) Arrays.fill(data, y * widthBytes + 22, y * widthBytes + 26, (byte) 0xFF);
+        for (int y = 120; y < 130; y++) Arrays.fill(data, y * widthBytes + 2, y * widthBytes + 12, (byte) 0x5A);
+        return new ImageRasterizer.Raster(widthBytes, height, data);
+    }
+
+    /**
+     * Ce qu'imprime l'imprimante : bandes placées selon l'alignement, avances en points
+     */
+    private static byte[] print(byte[] commands, int widthBytes, int align) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (EscPosDecoder.Operation op : new EscPosDecoder().feed(commands, 0, commands.length)) {
+            if (op.kind == EscPosDecoder.Kind.FEED_DOTS) {
+                out.write(new byte[op.arg * widthBytes], 0, op.arg * widthBytes);
+            } else if (op.kind == EscPosDecoder.Kind.RASTER) {
+                int margin = widthBytes - op.arg;
+                int left = align == EscPosEncoder.ALIGN_LEFT ? 0 : align == EscPosEncoder.ALIGN_RIGHT ? margin : margin / 2;
+                for (int y = 0; y < op.arg2; y++) {
+                    byte[] row = new byte[widthBytes];
+                    System.arraycopy(op.data, y * op.arg, row, left, op.arg);
+                    out.write(row, 0, widthBytes);
+                }
+            } else {
+                fail("Commande inattendue : " + op);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void compactRasterPrintsSameImage() {
+        ImageRasterizer.Raster raster = coupon();
+        for (int align : new int[] { EscPosEncoder.ALIGN_LEFT, EscPosEncoder.ALIGN_CENTER, EscPosEncoder.ALIGN_RIGHT }) {
+            byte[] compact = new EscPosEncoder().compactRasterImage(raster, align, 1).toByteArray();
+            assertTrue("align " + align, Arrays.equals(raster.data, print(compact, raster.widthBytes, align)));
+            assertTrue(compact.length < raster.data.length / 4);
+        }
+    }
+
+    @Test
+    public void compactRasterSkipsBlankBandsAndTrimsMargins() {
+        byte[] compact = new EscPosEncoder().compactRasterImage(coupon(), EscPosEncoder.ALIGN_LEFT, 2).toByteArray();
+        List<EscPosDecoder.Operation> ops = new EscPosDecoder().feed(compact, 0, compact.length);
+
+        // Bloc, 100 lignes sautées (2 unités par point), texte, 30 lignes de fin
+        assertEquals("[RASTER(26,20)[520], FEED_DOTS(200), RASTER(12,10)[120], FEED_DOTS(60)]", ops.toString());
+    }
+
+    @Test
+    public void compactRasterCentersBySymmetricTrim() {
+        byte[] compact = new EscPosEncoder().compactRasterImage(coupon(), EscPosEncoder.ALIGN_CENTER, 1).toByteArray();
+        List<EscPosDecoder.Operation> ops = new EscPosDecoder().feed(compact, 0, compact.length);
+
+        // Bloc centré : 22 octets blancs de chaque côté ; texte : marge gauche de 2 seulement
+        assertEquals(4, ops.get(0).arg);
+        assertEquals(44, ops.get(2).arg);
+    }
+
+    @Test
+    public void compactRasterKeepsWidthWithoutTrim() {
+        byte[] compact = new EscPosEncoder().compactRasterImage(coupon(), EscPosEncoder.TRIM_NONE, 1).toByteArray();
+        for (EscPosDecoder.Operation op : new EscPosDecoder().feed(compact, 0, compact.length)) {
+            if (op.kind == EscPosDecoder.Kind.RASTER) assertEquals(48, op.arg);
+        }
+
+        ImageRasterizer.Raster white = new ImageRasterizer.Raster(48, 300, new byte[48 * 300]);
+        byte[] feed = new EscPosEncoder().compactRasterImage(white, EscPosEncoder.ALIGN_LEFT, 1).toByteArray();
+        assertArrayEquals(new byte[] { 0x1B, 0x4A, (byte) 255, 0x1B, 0x4A, 45 }, feed);
+    }
+}
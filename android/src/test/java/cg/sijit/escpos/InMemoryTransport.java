@@ -0,0 +1,130 @@
+package cg.sijit.escpos;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PrinterTransport en mémoire pour les tests unitaires : garde tout ce qui est
+ * écrit, le fait décoder et répondre par une SimulatedPrinter, et peut simuler
+ * une coupure au milieu d'un envoi. Déterministe : ni socket ni thread.
+ */
+public class InMemoryTransport implements PrinterTransport {
+
+    private final String name;
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    private final BlockingQueue<Byte> replies = new LinkedBlockingQueue<>();
+    private final SimulatedPrinter printer = new SimulatedPrinter(this::queueReply);
+    private final TransportStats stats = new TransportStats();
+
+    private volatile boolean connected = true;
+    private long failAfterBytes = -1;
+    private int writeDelayMs = 0;
+
+    public InMemoryTransport() {
+        this("memory");
+    }
+
+    public InMemoryTransport(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public synchronized void write(byte[] data, int off, int len) throws IOException {
+        if (!connected) throw new IOException("Connexion fermée");
+        long start = System.nanoTime();
+        int accepted = len;
+        if (failAfterBytes >= 0) accepted = (int) Math.min(len, failAfterBytes - written.size());
+        written.write(data, off, accepted);
+        printer.receive(data, off, accepted);
+        if (accepted < len) {
+            failAfterBytes = -1;
+            connected = false;
+            printer.endOfStream();
+            throw new IOException("Connexion coupée après " + written.size() + " octets");
+        }
+        if (writeDelayMs > 0) {
+            try {
+                Thread.sleep(writeDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Écriture interrompue");
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        stats.recordChunk(len, nanos);
+        stats.recordWrite(nanos);
+    }
+
+    @Override
+    public int read(byte[] buffer, int off, int len, int timeoutMs) throws IOException {
+        try {
+            Byte b = replies.poll(timeoutMs, TimeUnit.MILLISECONDS);
+            if (b == null) return 0;
+            buffer[off] = b;
+            int n = 1;
+            while (n < len && (b = replies.poll()) != null) buffer[off + n++] = b;
+            return n;
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void queueReply(byte[] reply) {
+        for (byte b : reply) replies.add(b);
+    }
+
+    @Override
+    public TransportStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        connected = false;
+    }
+
+    public SimulatedPrinter printer() {
+        return printer;
+    }
+
+    /**
+     * Tous les octets écrits depuis l'ouverture
+     */
+    public synchronized byte[] bytes() {
+        return written.toByteArray();
+    }
+
+    /**
+     * Couper la connexion une fois totalBytes octets écrits : l'écriture en cours échoue
+     */
+    public synchronized void failAfter(long totalBytes) {
+        failAfterBytes = totalBytes;
+    }
+
+    /**
+     * Durée de chaque écriture, comme une imprimante lente
+     */
+    public synchronized void setWriteDelay(int ms) {
+        writeDelayMs = ms;
+    }
+
+    /**
+     * Rétablir la connexion après une coupure
+     */
+    public void reconnect() {
+        connected = true;
+    }
+}
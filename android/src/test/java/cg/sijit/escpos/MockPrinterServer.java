@@ -0,0 +1,190 @@
+package cg.sijit.escpos;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Imprimante réseau simulée (équivalent local du port 9100), pour reproduire
+ * sans matériel les problèmes de débit et les régressions de connectWifi et
+ * printText, y compris sur une machine d'intégration continue.
+ *
+ * Le flux reçu est décodé par une SimulatedPrinter. On peut en plus simuler :
+ * un vidage lent (débit de lecture limité : le buffer TCP se remplit et
+ * l'écriture côté plugin bloque), un blocage complet pendant une durée, la fin
+ * de papier (réponses d'état) et une coupure de connexion.
+ */
+public class MockPrinterServer implements Closeable {
+
+    // Buffer de réception volontairement petit pour que le vidage lent se ressente vite
+    private static final int RECEIVE_BUFFER = 16 * 1024;
+    private static final int READ_SIZE = 4096;
+
+    private final ServerSocket server;
+    private final SimulatedPrinter printer = new SimulatedPrinter(this::sendReply);
+
+    private final Object connectionLock = new Object();
+    private Socket current;
+    private int connectionCount = 0;
+
+    private volatile int drainBytesPerSecond = 0;
+    private volatile long stalledUntil = 0;
+    private volatile long disconnectAt = -1;
+    private volatile boolean closed = false;
+
+    public MockPrinterServer() throws IOException {
+        server = new ServerSocket();
+        server.setReceiveBufferSize(RECEIVE_BUFFER);
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread acceptor = new Thread(this::acceptLoop, "mock-printer-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public String getHost() {
+        return server.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public SimulatedPrinter printer() {
+        return printer;
+    }
+
+    /**
+     * Connexions acceptées depuis le démarrage (une reconnexion en ajoute une)
+     */
+    public int getConnectionCount() {
+        synchronized (connectionLock) {
+            return connectionCount;
+        }
+    }
+
+    /**
+     * Débit de lecture en octets par seconde, comme une tête d'impression lente (0 = illimité)
+     */
+    public void setDrainRate(int bytesPerSecond) {
+        drainBytesPerSecond = Math.max(0, bytesPerSecond);
+    }
+
+    /**
+     * Ne plus rien lire pendant ms millisecondes (buffer plein, bourrage)
+     */
+    public void stall(int ms) {
+        stalledUntil = System.currentTimeMillis() + ms;
+    }
+
+    /**
+     * Couper la connexion une fois totalBytes octets reçus depuis le démarrage
+     */
+    public void disconnectAfter(long totalBytes) {
+        disconnectAt = totalBytes;
+    }
+
+    /**
+     * Couper la connexion en cours tout de suite
+     */
+    public void disconnect() {
+        synchronized (connectionLock) {
+            closeQuietly(current);
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                int number;
+                synchronized (connectionLock) {
+                    // Un seul client à la fois, comme la plupart des imprimantes réseau
+                    closeQuietly(current);
+                    current = socket;
+                    number = ++connectionCount;
+                }
+                Thread reader = new Thread(() -> readLoop(socket), "mock-printer-read-" + number);
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (closed) return;
+            }
+        }
+    }
+
+    private void readLoop(Socket socket) {
+        byte[] buffer = new byte[READ_SIZE];
+        long drainStart = System.nanoTime();
+        long drained = 0;
+        try (InputStream in = socket.getInputStream()) {
+            while (!closed) {
+                int rate = drainBytesPerSecond;
+                // Petites lectures quand le débit est limité, pour un rythme régulier
+                int want = rate > 0 ? Math.max(1, Math.min(buffer.length, rate / 50)) : buffer.length;
+                long limit = disconnectAt;
+                if (limit >= 0) want = (int) Math.max(0, Math.min(want, limit - printer.getBytesReceived()));
+                if (want == 0) {
+                    disconnectAt = -1;
+                    break;
+                }
+                int n = in.read(buffer, 0, want);
+                if (n < 0) break;
+                // Bloquée : les octets déjà lus ne sont traités qu'à la reprise
+                long stall = stalledUntil - System.currentTimeMillis();
+                if (stall > 0) {
+                    Thread.sleep(stall);
+                    drainStart = System.nanoTime();
+                    drained = 0;
+                }
+                printer.receive(buffer, 0, n);
+                if (rate > 0) {
+                    drained += n;
+                    long due = drainStart + drained * 1_000_000_000L / rate;
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // connexion coupée
+        } finally {
+            printer.endOfStream();
+            closeQuietly(socket);
+        }
+    }
+
+    private void sendReply(byte[] reply) {
+        synchronized (connectionLock) {
+            if (current == null) return;
+            try {
+                OutputStream out = current.getOutputStream();
+                out.write(reply);
+                out.flush();
+            } catch (IOException e) {
+                // client parti
+            }
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException ignore) {
+        }
+        disconnect();
+    }
+}
@@ -0,0 +1,218 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MockPrinterServerTest {
+
+    private MockPrinterServer server;
+    private TcpTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockPrinterServer();
+        TcpTransport.Options options = new TcpTransport.Options();
+        options.connectTimeoutMs = 1000;
+        options.writeTimeoutMs = 5000;
+        options.initialRetryDelayMs = 10;
+        options.maxRetryDelayMs = 50;
+        transport = TcpTransport.open(server.getHost(), server.getPort(), options, null);
+    }
+
+    @After
+    public void tearDown() {
+        transport.close();
+        server.close();
+    }
+
+    private static byte[] receipt() {
+        byte[] logo = new byte[4 * 10];
+        Arrays.fill(logo, (byte) 0xAA);
+        return new EscPosEncoder()
+            .initialize()
+            .codePage(CodePage.CP858)
+            .bold(true).println("Crème brûlée").bold(false)
+            .rasterImage(new ImageRasterizer.Raster(4, 10, logo))
+            .qrCode("https://sijit.cg", 2, 6, 1)
+            .feed(3)
+            .cut()
+            .toByteArray();
+    }
+
+    @Test
+    public void decodesReceiptOverTcp() throws Exception {
+        transport.write(receipt(), 0, receipt().length);
+        SimulatedPrinter printer = server.printer();
+        assertTrue(printer.awaitOperations(EscPosDecoder.Kind.CUT, 1, 2000));
+
+        assertEquals("Crème brûlée\n", printer.printedText());
+        List<EscPosDecoder.Operation> raster = printer.operations(EscPosDecoder.Kind.RASTER);
+        assertEquals(1, raster.size());
+        assertEquals(4, raster.get(0).arg);
+        assertEquals(10, raster.get(0).arg2);
+        // Modèle, taille, correction, stockage, impression
+        assertEquals(5, printer.operations(EscPosDecoder.Kind.SYMBOL).size());
+        assertEquals(0, printer.operations(EscPosDecoder.Kind.UNKNOWN).size());
+    }
+
+    @Test
+    public void decodesCommandsSplitAcrossChunks() {
+        byte[] data = receipt();
+        List<EscPosDecoder.Operation> whole = new EscPosDecoder().feed(data, 0, data.length);
+
+        EscPosDecoder decoder = new EscPosDecoder();
+        List<EscPosDecoder.Operation> split = new ArrayList<>();
+        for (int i = 0; i < data.length; i++) split.addAll(decoder.feed(data, i, 1));
+        split.addAll(decoder.finish());
+
+        assertEquals(whole.toString(), split.toString());
+    }
+
+    @Test
+    public void reportsPaperOutToStatusQueries() throws Exception {
+        Object ioLock = new Object();
+        assertTrue(StatusPoller.query(transport, ioLock).canPrint());
+
+        server.printer().setPaperOut(true);
+        PrinterStatus status = StatusPoller.query(transport, ioLock);
+        assertTrue(status.paperOut);
+        assertFalse(status.online);
+        assertFalse(status.canPrint());
+    }
+
+    @Test
+    public void slowDrainThrottlesDelivery() throws Exception {
+        server.setDrainRate(64 * 1024);
+        byte[] job = new byte[32 * 1024];
+        Arrays.fill(job, (byte) 'x');
+
+        long start = System.nanoTime();
+        transport.write(job, 0, job.length);
+        assertTrue(server.printer().awaitBytes(job.length, 5000));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        // 32 Ko à 64 Ko/s : une demi-seconde environ
+        assertTrue("elapsed " + elapsedMs, elapsedMs >= 400);
+    }
+
+    @Test
+    public void slowButSteadyJobOutlivesWriteTimeout() throws Exception {
+        TcpTransport.Options options = new TcpTransport.Options();
+        options.writeTimeoutMs = 1000;
+        TcpTransport slow = TcpTransport.open(server.getHost(), server.getPort(), options, null);
+        try {
+            // 12 Mo à 4 Mo/s : trois fois writeTimeoutMs, mais sans jamais bloquer
+            server.setDrainRate(4 * 1024 * 1024);
+            byte[] job = new byte[12 * 1024 * 1024];
+            Arrays.fill(job, (byte) 'x');
+            // Des lignes courtes, que l'imprimante simulée décode au fil de l'eau
+            for (int i = 63; i < job.length; i += 64) job[i] = '\n';
+
+            long start = System.nanoTime();
+            slow.write(job, 0, job.length);
+            assertTrue((System.nanoTime() - start) / 1_000_000 > options.writeTimeoutMs);
+            assertTrue(server.printer().awaitBytes(job.length, 10000));
+            assertEquals(0, slow.getStats().snapshot().retries);
+        } finally {
+            slow.close();
+        }
+    }
+
+    @Test
+    public void stallHoldsBytesUntilResume() throws Exception {
+        server.stall(300);
+        long start = System.nanoTime();
+        transport.write(receipt(), 0, receipt().length);
+        assertTrue(server.printer().awaitOperations(EscPosDecoder.Kind.CUT, 1, 2000));
+        assertTrue((System.nanoTime() - start) / 1_000_000 >= 250);
+    }
+
+    @Test
+    public void disconnectMidJobFailsWithoutResending() throws Exception {
+        // Plus gros que les buffers TCP : l'écriture est encore en cours à la coupure
+        byte[] job = new byte[8 * 1024 * 1024];
+        Arrays.fill(job, (byte) 'x');
+        server.disconnectAfter(1000);
+
+        try {
+            transport.write(job, 0, job.length);
+            fail("write should fail");
+        } catch (IOException expected) {
+        }
+        // Seul le début du job a été reçu, et il n'est pas réimprimé
+        long received = server.printer().getBytesReceived();
+        assertTrue("received " + received, received >= 1000 && received < job.length);
+        assertEquals(1, server.getConnectionCount());
+        assertEquals(0, transport.getStats().snapshot().retries);
+
+        // Le job suivant part sur une nouvelle connexion
+        transport.write(new byte[] { 0x0A }, 0, 1);
+        assertTrue(server.printer().awaitBytes(received + 1, 2000));
+        Thread.sleep(50);
+        assertEquals(received + 1, server.printer().getBytesReceived());
+        assertEquals(2, server.getConnectionCount());
+    }
+
+    @Test
+    public void inMemoryTransportFailsMidJobThenRecovers() throws Exception {
+        InMemoryTransport memory = new InMemoryTransport();
+        List<String> events = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        PrintQueue queue = new PrintQueue("memory", memory::write, new PrintQueue.Listener() {
+            @Override
+            public void onJobCompleted(String jobId, int bytes) {
+                events.add("ok " + bytes);
+                done.countDown();
+            }
+
+            @Override
+            public void onJobFailed(String jobId, Exception error) {
+                events.add("failed");
+                memory.reconnect();
+                done.countDown();
+            }
+        });
+
+        memory.failAfter(5);
+        queue.submit(EscPosEncoder.obtain().println("ticket 1"));
+        queue.submit(EscPosEncoder.obtain().println("ticket 2"));
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        queue.shutdown();
+
+        assertEquals("[failed, ok 9]", events.toString());
+        // Début du ticket 1 reçu avant la coupure, puis le ticket 2 entier
+        assertEquals("ticketicket 2\n", memory.printer().printedText());
+        assertEquals(14, memory.bytes().length);
+    }
+
+    @Test
+    public void inMemoryTransportPushesAsbFrames() throws Exception {
+        InMemoryTransport memory = new InMemoryTransport();
+        List<PrinterStatus> statuses = new ArrayList<>();
+        CountDownLatch paperOut = new CountDownLatch(1);
+        StatusPoller poller = new StatusPoller(memory, new Object(), 100, true, status -> {
+            synchronized (statuses) {
+                statuses.add(status);
+            }
+            if (status.paperOut) paperOut.countDown();
+        });
+        poller.start();
+        assertTrue(memory.printer().awaitOperations(EscPosDecoder.Kind.ASB, 1, 2000));
+        memory.printer().setPaperOut(true);
+        assertTrue(paperOut.await(2, TimeUnit.SECONDS));
+        poller.stop();
+
+        synchronized (statuses) {
+            assertTrue(statuses.get(0).canPrint());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+public class NetworkDiscoveryTest {
+
+    @Test
+    public void expandsCidrWithoutNetworkAndBroadcast() {
+        List<String> hosts = NetworkDiscovery.expandCidr("192.168.1.77/24");
+
+        assertEquals(254, hosts.size());
+        assertEquals("192.168.1.1", hosts.get(0));
+        assertEquals("192.168.1.254", hosts.get(253));
+    }
+
+    @Test
+    public void singleAddressIsSlash32() {
+        List<String> hosts = NetworkDiscovery.expandCidr("10.0.0.5");
+
+        assertEquals(1, hosts.size());
+        assertEquals("10.0.0.5", hosts.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooLargeRanges() {
+        NetworkDiscovery.expandCidr("10.0.0.0/8");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidAddress() {
+        NetworkDiscovery.expandCidr("192.168.300.1/24");
+    }
+
+    @Test
+    public void findsLocalListenersOnly() throws Exception {
+        // Port libéré avant le scan : personne n'y écoute
+        ServerSocket closed = new ServerSocket(0);
+        int closedPort = closed.getLocalPort();
+        closed.close();
+        try (ServerSocket printer = new ServerSocket(0)) {
+
+            NetworkDiscovery.Options options = new NetworkDiscovery.Options();
+            options.ports = new int[] { printer.getLocalPort(), closedPort };
+            options.timeoutMs = 300;
+            List<String> events = new CopyOnWriteArrayList<>();
+
+            List<NetworkDiscovery.Result> found = new NetworkDiscovery().scan("127.0.0.1/32", options, (host, port) -> events.add(host + ":" + port));
+
+            assertEquals(1, found.size());
+            assertEquals("127.0.0.1", found.get(0).host);
+            assertEquals(printer.getLocalPort(), found.get(0).port);
+            assertEquals(1, events.size());
+        }
+    }
+
+    @Test
+    public void unreachableHostsTimeOut() throws Exception {
+        NetworkDiscovery.Options options = new NetworkDiscovery.Options();
+        options.timeoutMs = 200;
+
+        long start = System.currentTimeMillis();
+        // TEST-NET-1 (RFC 5737) : jamais routé
+        List<NetworkDiscovery.Result> found = new NetworkDiscovery().scan("192.0.2.0/28", options, null);
+
+        assertTrue(found.isEmpty());
+        assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+
+    @Test
+    public void stopBeforeScanIsHonoured() throws Exception {
+        try (ServerSocket printer = new ServerSocket(0)) {
+            NetworkDiscovery.Options options = new NetworkDiscovery.Options();
+            options.ports = new int[] { printer.getLocalPort() };
+            NetworkDiscovery discovery = new NetworkDiscovery();
+
+            // Arrêt reçu avant que le thread du balayage ait démarré
+            discovery.cancel();
+            List<NetworkDiscovery.Result> found = discovery.scan("127.0.0.1/32", options, null);
+
+            assertTrue(found.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PrintMetricsTest {
+
+    @Test
+    public void bucketsArePowersOfTwoMicros() {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(1, LatencyHistogram.bucketOf(1));
+        assertEquals(2, LatencyHistogram.bucketOf(3));
+        assertEquals(11, LatencyHistogram.bucketOf(1500));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesUseBucketUpperBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) histogram.recordNanos(1_000_000); // 1 ms
+        for (int i = 0; i < 10; i++) histogram.recordNanos(50_000_000); // 50 ms
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.count);
+        assertEquals(5.9, snapshot.meanMs, 0.001);
+        assertEquals(50.0, snapshot.maxMs, 0.001);
+        // 1000 µs tombe dans [512, 1024[
+        assertEquals(1.024, snapshot.p50Ms, 0.001);
+        assertEquals(1.024, snapshot.p90Ms, 0.001);
+        // Borne haute 65,536 ms, ramenée au maximum observé
+        assertEquals(50.0, snapshot.p99Ms, 0.001);
+    }
+
+    @Test
+    public void emptyHistogramIsZero() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.count);
+        assertEquals(0.0, snapshot.p99Ms, 0.0);
+    }
+
+    @Test
+    public void queueRecordsCompletedFailedAndCancelledJobs() throws Exception {
+        PrintMetrics metrics = new PrintMetrics();
+        PrintMetrics.Channel channel = metrics.channel("wifi");
+        CountDownLatch done = new CountDownLatch(2);
+        PrintQueue queue = new PrintQueue("bar", (data, off, len) -> {
+            if (data[off] == 'x') throw new IOException("Broken pipe");
+        }, new PrintQueue.Listener() {
+            @Override
+            public void onJobCompleted(String jobId, int bytes) {
+                done.countDown();
+            }
+
+            @Override
+            public void onJobFailed(String jobId, Exception error) {
+                done.countDown();
+            }
+        }, 8, null, channel);
+
+        queue.hold();
+        queue.submit(EscPosEncoder.obtain().text("ticket"));
+        queue.submit(EscPosEncoder.obtain().text("x"));
+        String cancelled = queue.submit(EscPosEncoder.obtain().text("reprint"));
+        Thread.sleep(50);
+        assertTrue(queue.cancel(cancelled));
+        queue.resume();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, channel.jobs.sum());
+        assertEquals(6, channel.bytes.sum());
+        assertEquals(1, channel.failures.sum());
+        assertEquals(1, channel.cancelled.sum());
+        // Retenu 50 ms avant d'être écrit
+        assertTrue(channel.queueWait.snapshot().maxMs >= 40);
+        assertEquals(1, channel.total.snapshot().count);
+        queue.shutdown();
+
+        metrics.reset();
+        assertEquals(0, metrics.channels().get("wifi").jobs.sum());
+    }
+}
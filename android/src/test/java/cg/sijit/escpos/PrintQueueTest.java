@@ -0,0 +1,67 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PrintQueueTest {
+
+    private static class RecordingListener implements PrintQueue.Listener {
+        final List<String> completed = new CopyOnWriteArrayList<>();
+        final List<String> failed = new CopyOnWriteArrayList<>();
+        final CountDownLatch done;
+
+        RecordingListener(int jobs) {
+            done = new CountDownLatch(jobs);
+        }
+
+        @Override
+        public void onJobCompleted(String jobId, int bytes) {
+            completed.add(jobId);
+            done.countDown();
+        }
+
+        @Override
+        public void onJobFailed(String jobId, Exception error) {
+            failed.add(jobId);
+            done.countDown();
+        }
+    }
+
+    @Test
+    public void writesJobsInOrderOnWriterThread() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RecordingListener listener = new RecordingListener(3);
+        PrintQueue queue = new PrintQueue("test", out::write, listener);
+
+        String first = queue.submit(EscPosEncoder.obtain().text("a"));
+        String second = queue.submit(EscPosEncoder.obtain().text("b"));
+        String third = queue.submit(EscPosEncoder.obtain().text("c"));
+
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertEquals("abc", out.toString("UTF-8"));
+        assertEquals(List.of(first, second, third), listener.completed);
+        queue.shutdown();
+    }
+
+    @Test
+    public void reportsWriteFailures() throws Exception {
+        RecordingListener listener = new RecordingListener(1);
+        PrintQueue queue = new PrintQueue("test", (data, off, len) -> {
+            throw new IOException("Broken pipe");
+        }, listener);
+
+        String jobId = queue.submit(EscPosEncoder.obtain().text("x"));
+
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(jobId), listener.failed);
+        queue.shutdown();
+    }
+}
@@ -0,0 +1,92 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PrinterProfileTest {
+
+    @Test
+    public void detectsProfileFromPrinterInfo() throws Exception {
+        InMemoryTransport memory = new InMemoryTransport();
+        memory.printer().setPrinterInfo("EPSON", "TM-T88V");
+
+        assertSame(PrinterProfile.EPSON_TM88, PrinterProfile.detect(memory));
+        assertEquals(2, memory.printer().operations(EscPosDecoder.Kind.PRINTER_INFO).size());
+    }
+
+    @Test
+    public void silentPrinterIsNotDetected() throws Exception {
+        InMemoryTransport memory = new InMemoryTransport();
+
+        assertNull(PrinterProfile.detect(memory));
+        // Sans réponse au fabricant, le modèle n'est pas demandé
+        assertEquals(1, memory.printer().operations(EscPosDecoder.Kind.PRINTER_INFO).size());
+    }
+
+    @Test
+    public void matchesKnownFamilies() {
+        assertSame(PrinterProfile.EPSON_80, PrinterProfile.match("EPSON", "TM-T20II"));
+        assertSame(PrinterProfile.STAR_80, PrinterProfile.match("STAR", "TSP100IV"));
+        assertSame(PrinterProfile.XPRINTER_58, PrinterProfile.match("Printer", "XP-58IIH"));
+        assertSame(PrinterProfile.XPRINTER_80, PrinterProfile.match("Xprinter", "XP-Q800"));
+        assertNull(PrinterProfile.match("POS", null));
+        assertSame(PrinterProfile.GENERIC_80, PrinterProfile.forId("GENERIC-80"));
+        assertNull(PrinterProfile.forId("inconnu"));
+    }
+
+    @Test
+    public void profileSelectsCommandVariants() {
+        byte[] generic = new EscPosEncoder().cut().toByteArray();
+        byte[] epson = new EscPosEncoder().profile(PrinterProfile.EPSON_80).cut().toByteArray();
+        byte[] noCutter = new EscPosEncoder().profile(PrinterProfile.XPRINTER_58).cut().toByteArray();
+
+        assertArrayEquals(new byte[] { 0x1D, 0x56, 0x00 }, generic);
+        assertArrayEquals(new byte[] { 0x1D, 0x56, 0x42, 0x00 }, epson);
+        assertArrayEquals(new byte[] { 0x1B, 0x64, 0x04 }, noCutter);
+
+        // 1 à 3 inchangés, au-delà borné par le profil
+        assertArrayEquals(new byte[] { 0x1D, 0x21, 0x11 }, new EscPosEncoder().textSize(2).toByteArray());
+        assertArrayEquals(new byte[] { 0x1D, 0x21, 0x55 }, new EscPosEncoder().profile(PrinterProfile.STAR_80).textSize(8).toByteArray());
+    }
+
+    @Test
+    public void sessionEncodersFollowProfile() throws Exception {
+        InMemoryTransport memory = new InMemoryTransport();
+        PrinterSession session = new PrinterSession("test", memory, null);
+        try {
+            session.setProfile(PrinterProfile.EPSON_TM88);
+            session.submit(session.obtainEncoder().println("ticket").cut());
+            assertTrue(memory.printer().awaitOperations(EscPosDecoder.Kind.CUT, 1, 2000));
+
+            List<EscPosDecoder.Operation> cuts = memory.printer().operations(EscPosDecoder.Kind.CUT);
+            assertEquals(66, cuts.get(0).arg);
+            assertEquals(2, session.getFeedUnitsPerDot());
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    public void cacheSurvivesRestart() throws Exception {
+        File file = File.createTempFile("profiles", ".properties");
+        file.delete();
+        try {
+            ProfileCache cache = new ProfileCache(file);
+            cache.put("00:11:22:aa:bb:cc", PrinterProfile.XPRINTER_58);
+            cache.put("192.168.1.50:9100", PrinterProfile.EPSON_80);
+            cache.remove("192.168.1.50:9100");
+
+            ProfileCache reloaded = new ProfileCache(file);
+            assertSame(PrinterProfile.XPRINTER_58, reloaded.get("00:11:22:AA:BB:CC"));
+            assertNull(reloaded.get("192.168.1.50:9100"));
+            assertEquals(7, PrinterProfile.all().size());
+            assertFalse(new File(file.getPath() + ".tmp").exists());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class RasterCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsedOverMemoryBound() {
+        RasterCache cache = new RasterCache(100);
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+        assertNotNull(cache.get("a")); // "b" devient le moins récent
+        cache.put("c", new byte[40]);
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(80, cache.sizeBytes());
+        assertEquals(3, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(0.75, cache.hitRate(), 1e-9);
+    }
+
+    @Test
+    public void ignoresValuesLargerThanTheBound() {
+        RasterCache cache = new RasterCache(10);
+        cache.put("big", new byte[11]);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void keyDependsOnContentAndVariant() {
+        String logo = "iVBORw0KGgoAAAANSUhEUg";
+        assertEquals(RasterCache.key(logo, "384"), RasterCache.key(logo, "384"));
+        assertNotEquals(RasterCache.key(logo, "384"), RasterCache.key(logo, "576"));
+        assertNotEquals(RasterCache.key(logo, "384"), RasterCache.key(logo + "A", "384"));
+    }
+
+    @Test
+    public void encodesNvGraphicsRecall() {
+        byte[] recall = new EscPosEncoder().printNvGraphics("LG").toByteArray();
+        assertArrayEquals(new byte[] { 0x1D, 0x28, 0x4C, 0x06, 0x00, 0x30, 0x45, 'L', 'G', 0x01, 0x01 }, recall);
+    }
+}
@@ -0,0 +1,115 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ReceiptTemplateTest {
+
+    private static String print(ReceiptTemplate template, Map<String, ?> data) {
+        EscPosEncoder encoder = new EscPosEncoder();
+        template.writeTo(encoder, data);
+        return new String(encoder.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void fillsFieldsWithPadding() {
+        ReceiptTemplate template = ReceiptTemplate.compile("{{name:-6}}|{{price:5}}\n");
+        assertEquals("Cafe  | 2.50\n", print(template, Map.of("name", "Cafe", "price", "2.50")));
+        assertEquals("Croiss|12.00\n", print(template, Map.of("name", "Croissant", "price", "12.00")));
+    }
+
+    @Test
+    public void missingFieldPrintsNothing() {
+        ReceiptTemplate template = ReceiptTemplate.compile("Table {{table}}!");
+        assertEquals("Table !", print(template, Map.of()));
+    }
+
+    @Test
+    public void tagsBecomeCommands() {
+        ReceiptTemplate template = ReceiptTemplate.compile("[center][b]{{shop}}[/b][/center][cut]");
+        String expected = "\u001Ba\u0001\u001BE\u0001Chez Lulu\u001BE\u0000\u001Ba\u0000\u001DV\u0000";
+        assertEquals(expected, print(template, Map.of("shop", "Chez Lulu")));
+
+        // [cut] et [size] suivent le profil de l'encodeur de sortie
+        EscPosEncoder noCutter = new EscPosEncoder().profile(PrinterProfile.XPRINTER_58);
+        template.writeTo(noCutter, Map.of("shop", "Chez Lulu"));
+        assertTrue(new String(noCutter.toByteArray(), StandardCharsets.ISO_8859_1).endsWith("\u001Ba\u0000\u001Bd\u0004"));
+
+        EscPosEncoder star = new EscPosEncoder().profile(PrinterProfile.STAR_80);
+        ReceiptTemplate.compile("[size=8]X[/size]").writeTo(star, Map.of());
+        assertEquals("\u001D!\u0055X\u001D!\u0000", new String(star.toByteArray(), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void unknownTagIsLiteral() {
+        ReceiptTemplate template = ReceiptTemplate.compile("[x] [size=a]");
+        assertEquals("[x] [size=a]", print(template, Map.of()));
+    }
+
+    @Test
+    public void repeatsSectionsWithOuterScope() {
+        ReceiptTemplate template = ReceiptTemplate.compile("{{#items}}{{qty}}x{{name}} {{currency}}\n{{/items}}Total");
+        Map<String, Object> data = Map.of(
+            "currency", "EUR",
+            "items", List.of(Map.of("qty", 2, "name", "the"), Map.of("qty", 1, "name", "pain"))
+        );
+        assertEquals("2xthe EUR\n1xpain EUR\nTotal", print(template, data));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unclosedSectionIsRejected() {
+        ReceiptTemplate.compile("{{#items}}{{name}}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mismatchedSectionIsRejected() {
+        ReceiptTemplate.compile("{{#items}}{{/lines}}");
+    }
+
+    @Test
+    public void staticTextUsesEncoderCodePage() {
+        ReceiptTemplate template = ReceiptTemplate.compile("Reçu {{n}}");
+        EscPosEncoder encoder = new EscPosEncoder().codePage(CodePage.CP858);
+        template.writeTo(encoder, Map.of("n", "é"));
+        byte[] bytes = encoder.toByteArray();
+        // ESC t 19, puis "Reçu " et "é" en CP858
+        assertEquals(3 + 6, bytes.length);
+        assertEquals((byte) 0x87, bytes[5]);
+        assertEquals((byte) 0x82, bytes[8]);
+    }
+
+    @Test
+    public void restoresCodePageAfterSwitchingField() {
+        ReceiptTemplate template = ReceiptTemplate.compile("{{n}}ç");
+        EscPosEncoder encoder = new EscPosEncoder().alternateCodePages(CodePage.CP866).codePage(CodePage.CP858);
+        template.writeTo(encoder, Map.of("n", "Ж"));
+        assertEquals(CodePage.CP858, encoder.getCodePage());
+        byte[] bytes = encoder.toByteArray();
+        assertEquals((byte) 0x87, bytes[bytes.length - 1]);
+    }
+
+    @Test
+    public void staticTextFollowsEncoderAlternatePagesAndFallback() {
+        ReceiptTemplate template = ReceiptTemplate.compile("Итог {{n}}→");
+        EscPosEncoder encoder = new EscPosEncoder().alternateCodePages(CodePage.CP866).fallback('*').codePage(CodePage.CP858);
+        template.writeTo(encoder, Map.of("n", "é"));
+        byte[] bytes = encoder.toByteArray();
+
+        // ESC t 19, bascule ESC t 17 pour le texte cyrillique, retour ESC t 19 avant le champ
+        assertArrayEquals(new byte[] { 0x1B, 0x74, 17, (byte) 0x88 }, Arrays.copyOfRange(bytes, 3, 7));
+        assertArrayEquals(new byte[] { 0x1B, 0x74, 19, (byte) 0x82, '*' }, Arrays.copyOfRange(bytes, bytes.length - 5, bytes.length));
+        assertEquals(CodePage.CP858, encoder.getCodePage());
+    }
+
+    @Test
+    public void formatNeverSplitsSurrogatePairs() {
+        assertEquals("\uD83D\uDE00", ReceiptTemplate.format("\uD83D\uDE00\uD83D\uDE00", 1));
+        assertEquals("\uD83D\uDE00 ", ReceiptTemplate.format("\uD83D\uDE00", -2));
+    }
+}
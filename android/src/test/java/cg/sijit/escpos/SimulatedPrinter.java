@@ -0,0 +1,216 @@
+package cg.sijit.escpos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Imprimante simulée, sans socket ni thread : décode ce qu'elle reçoit et
+ * répond aux requêtes d'état (DLE EOT, GS r, ASB) et d'identité (GS I) selon son état courant.
+ * Partagée par MockPrinterServer (TCP) et InMemoryTransport.
+ */
+public class SimulatedPrinter {
+
+    /**
+     * Voie retour vers l'hôte (réponses d'état, trames ASB)
+     */
+    public interface ReplySink {
+        void send(byte[] reply);
+    }
+
+    private final ReplySink replies;
+    private final EscPosDecoder decoder = new EscPosDecoder();
+    private final List<EscPosDecoder.Operation> operations = new ArrayList<>();
+    private long bytesReceived = 0;
+
+    private boolean paperOut = false;
+    private boolean paperNearEnd = false;
+    private boolean coverOpen = false;
+    private boolean offline = false;
+    private boolean drawerOpen = false;
+    private boolean mute = false;
+    private int asbFlags = 0;
+    // Réponses à GS I 66 / 67 (null = pas de réponse, comme beaucoup de clones)
+    private String maker;
+    private String model;
+
+    public SimulatedPrinter(ReplySink replies) {
+        this.replies = replies;
+    }
+
+    /**
+     * Octets reçus de l'hôte : décodés, avec réponse immédiate aux requêtes d'état
+     */
+    public synchronized void receive(byte[] data, int off, int len) {
+        bytesReceived += len;
+        for (EscPosDecoder.Operation op : decoder.feed(data, off, len)) {
+            operations.add(op);
+            if (mute) continue;
+            switch (op.kind) {
+                case STATUS_QUERY: replies.send(new byte[] { (byte) realTimeStatus(op.arg) }); break;
+                case PAPER_QUERY: replies.send(new byte[] { (byte) paperSensorStatus() }); break;
+                case PRINTER_INFO: replyPrinterInfo(op.arg); break;
+                case ASB:
+                    asbFlags = op.arg;
+                    // L'imprimante envoie son état dès l'activation
+                    if (asbFlags != 0) replies.send(asbFrame());
+                    break;
+                default:
+                    break;
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Fin de connexion : émettre le texte resté en attente de décodage
+     */
+    public synchronized void endOfStream() {
+        operations.addAll(decoder.finish());
+        notifyAll();
+    }
+
+    // État de l'imprimante ; chaque changement est signalé par ASB s'il est activé
+
+    public void setPaperOut(boolean paperOut) {
+        update(() -> this.paperOut = paperOut);
+    }
+
+    public void setPaperNearEnd(boolean paperNearEnd) {
+        update(() -> this.paperNearEnd = paperNearEnd);
+    }
+
+    public void setCoverOpen(boolean coverOpen) {
+        update(() -> this.coverOpen = coverOpen);
+    }
+
+    public void setOffline(boolean offline) {
+        update(() -> this.offline = offline);
+    }
+
+    public void setDrawerOpen(boolean drawerOpen) {
+        update(() -> this.drawerOpen = drawerOpen);
+    }
+
+    /**
+     * Fabricant et modèle renvoyés par GS I (null : l'imprimante ne répond pas)
+     */
+    public synchronized void setPrinterInfo(String maker, String model) {
+        this.maker = maker;
+        this.model = model;
+    }
+
+    private void replyPrinterInfo(int n) {
+        String text = n == PrinterProfile.INFO_MAKER ? maker : n == PrinterProfile.INFO_MODEL ? model : null;
+        if (text == null) return;
+        byte[] reply = new byte[text.length() + 2];
+        reply[0] = 0x5F;
+        for (int i = 0; i < text.length(); i++) reply[i + 1] = (byte) text.charAt(i);
+        replies.send(reply);
+    }
+
+    /**
+     * Ne plus répondre aux requêtes d'état (imprimante sans voie retour ou figée)
+     */
+    public synchronized void setMute(boolean mute) {
+        this.mute = mute;
+    }
+
+    private synchronized void update(Runnable change) {
+        change.run();
+        if (asbFlags != 0 && !mute) replies.send(asbFrame());
+    }
+
+    /**
+     * Réponse à DLE EOT n : bits 1 et 4 toujours à 1
+     */
+    synchronized int realTimeStatus(int n) {
+        switch (n) {
+            case StatusParser.STATUS_PRINTER:
+                return 0x12 | (drawerOpen ? 0x04 : 0) | (offline || coverOpen || paperOut ? 0x08 : 0);
+            case StatusParser.STATUS_OFFLINE_CAUSE:
+                return 0x12 | (coverOpen ? 0x04 : 0) | (paperOut ? 0x20 : 0);
+            case StatusParser.STATUS_PAPER:
+                return 0x12 | (paperNearEnd ? 0x0C : 0) | (paperOut ? 0x60 : 0);
+            default:
+                return 0x12;
+        }
+    }
+
+    /**
+     * Réponse à GS r 1 : fin de papier proche (bits 0-1), papier épuisé (bits 2-3)
+     */
+    private int paperSensorStatus() {
+        return (paperNearEnd ? 0x03 : 0) | (paperOut ? 0x0C : 0);
+    }
+
+    /**
+     * Trame ASB de 4 octets ; seul le premier a le bit 4 à 1
+     */
+    private byte[] asbFrame() {
+        int b1 = 0x10 | (drawerOpen ? 0x04 : 0) | (offline || coverOpen || paperOut ? 0x08 : 0) | (coverOpen ? 0x20 : 0);
+        int b3 = (paperNearEnd ? 0x03 : 0) | (paperOut ? 0x0C : 0);
+        return new byte[] { (byte) b1, 0x00, (byte) b3, 0x00 };
+    }
+
+    public synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Copie des opérations décodées jusqu'ici
+     */
+    public synchronized List<EscPosDecoder.Operation> operations() {
+        return new ArrayList<>(operations);
+    }
+
+    public synchronized List<EscPosDecoder.Operation> operations(EscPosDecoder.Kind kind) {
+        List<EscPosDecoder.Operation> matching = new ArrayList<>();
+        for (EscPosDecoder.Operation op : operations) {
+            if (op.kind == kind) matching.add(op);
+        }
+        return matching;
+    }
+
+    /**
+     * Texte imprimé, lignes séparées par \n
+     */
+    public synchronized String printedText() {
+        StringBuilder sb = new StringBuilder();
+        for (EscPosDecoder.Operation op : operations) {
+            if (op.kind == EscPosDecoder.Kind.TEXT) sb.append(op.text);
+            else if (op.kind == EscPosDecoder.Kind.LF) sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    public synchronized void clear() {
+        operations.clear();
+        bytesReceived = 0;
+    }
+
+    /**
+     * Attendre d'avoir reçu au moins count octets
+     */
+    public synchronized boolean awaitBytes(long count, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (bytesReceived < count) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return false;
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Attendre count opérations du type donné
+     */
+    public synchronized boolean awaitOperations(EscPosDecoder.Kind kind, int count, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (operations(kind).size() < count) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return false;
+            wait(remaining);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,179 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpoolJournalTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("spool", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void pendingJobsSurviveReopen() throws Exception {
+        SpoolJournal journal = new SpoolJournal(file);
+        journal.recordSubmitted("kitchen", "kitchen-1", 0, bytes("ticket 1"), 8);
+        journal.recordSubmitted("kitchen", "kitchen-2", 5, bytes("ticket 2"), 8);
+        journal.recordSubmitted("bar", "bar-3", 0, bytes("ticket 3"), 8);
+        journal.recordFinished("kitchen-1");
+        journal.close();
+
+        SpoolJournal reopened = new SpoolJournal(file);
+        List<SpoolJournal.Entry> kitchen = reopened.takeRecovered("kitchen");
+        assertEquals(1, kitchen.size());
+        assertEquals("kitchen-2", kitchen.get(0).jobId);
+        assertEquals(5, kitchen.get(0).priority);
+        assertArrayEquals(bytes("ticket 2"), kitchen.get(0).data);
+        assertTrue(reopened.takeRecovered("kitchen").isEmpty());
+        assertEquals(1, reopened.takeRecovered("bar").size());
+        reopened.close();
+    }
+
+    @Test
+    public void oneSyncCoversABurstOfSmallCommands() throws Exception {
+        SpoolJournal journal = new SpoolJournal(file);
+        // Gras, alignement, coupe : pas d'attente du disque
+        for (int i = 0; i < 20; i++) journal.recordSubmitted("bar", "bar-" + i, 0, new byte[] { 0x1B, 0x45, 1 }, 3);
+        assertEquals(0, journal.syncCount());
+        Thread.sleep(SpoolJournal.LAZY_SYNC_DELAY_MS * 4);
+        assertEquals(1, journal.syncCount());
+
+        // Un ticket attend le disque, et couvre les commandes ajoutées avant lui
+        journal.recordSubmitted("bar", "bar-a", 0, bytes("x"), 1);
+        byte[] ticket = new byte[1024];
+        journal.recordSubmitted("bar", "bar-ticket", 0, ticket, ticket.length);
+        assertEquals(2, journal.syncCount());
+        Thread.sleep(SpoolJournal.LAZY_SYNC_DELAY_MS * 4);
+        assertEquals(2, journal.syncCount());
+        assertEquals(22, journal.pendingCount());
+        journal.close();
+    }
+
+    @Test
+    public void truncatedTailIsDropped() throws Exception {
+        SpoolJournal journal = new SpoolJournal(file);
+        journal.recordSubmitted("bar", "bar-1", 0, bytes("complete"), 8);
+        journal.recordSubmitted("bar", "bar-2", 0, bytes("interrupted"), 11);
+        long fullSize = journal.size();
+        journal.close();
+
+        // Coupure pendant l'écriture du second enregistrement
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(fullSize - 4);
+        }
+
+        SpoolJournal reopened = new SpoolJournal(file);
+        List<SpoolJournal.Entry> entries = reopened.takeRecovered("bar");
+        assertEquals(1, entries.size());
+        assertEquals("bar-1", entries.get(0).jobId);
+        assertTrue(reopened.size() < fullSize - 4);
+        reopened.close();
+    }
+
+    @Test
+    public void corruptedRecordStopsReplay() throws Exception {
+        SpoolJournal journal = new SpoolJournal(file);
+        journal.recordSubmitted("bar", "bar-1", 0, bytes("abc"), 3);
+        journal.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 1);
+            raf.write('x');
+        }
+
+        SpoolJournal reopened = new SpoolJournal(file);
+        assertTrue(reopened.recovered().isEmpty());
+        assertEquals(0, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    public void emptiesWhenNothingIsPending() throws Exception {
+        SpoolJournal journal = new SpoolJournal(file);
+        journal.recordSubmitted("bar", "bar-1", 0, bytes("a"), 1);
+        journal.recordSubmitted("bar", "bar-2", 0, bytes("b"), 1);
+        journal.recordFinished("bar-1");
+        assertTrue(journal.size() > 0);
+        journal.recordFinished("bar-2");
+        assertEquals(0, journal.size());
+        assertEquals(0, file.length());
+        journal.close();
+    }
+
+    @Test
+    public void compactsFinishedJobs() throws Exception {
+        SpoolJournal journal = new SpoolJournal(file);
+        byte[] ticket = new byte[64 * 1024];
+        journal.recordSubmitted("bar", "bar-keep", 0, bytes("keep"), 4);
+        for (int i = 0; i < 20; i++) {
+            journal.recordSubmitted("bar", "bar-" + i, 0, ticket, ticket.length);
+            journal.recordFinished("bar-" + i);
+        }
+        assertTrue(journal.size() < SpoolJournal.COMPACT_THRESHOLD_BYTES);
+        journal.close();
+
+        SpoolJournal reopened = new SpoolJournal(file);
+        List<SpoolJournal.Entry> entries = reopened.takeRecovered("bar");
+        assertEquals(1, entries.size());
+        assertArrayEquals(bytes("keep"), entries.get(0).data);
+        reopened.close();
+    }
+
+    @Test
+    public void queueResumesSpooledJobsByPriority() throws Exception {
+        SpoolJournal journal = new SpoolJournal(file);
+        PrintQueue held = new PrintQueue("kitchen", (data, off, len) -> {}, null, 8, journal);
+        held.hold();
+        held.submit(EscPosEncoder.obtain().text("a"));
+        held.submit(EscPosEncoder.obtain().text("b"), 10);
+        String cancelled = held.submit(EscPosEncoder.obtain().text("c"));
+        Thread.sleep(100);
+        assertTrue(held.cancel(cancelled));
+        assertFalse(held.cancel(cancelled));
+        // Arrêt de l'application : les jobs restent dans le journal
+        held.shutdown(true);
+        journal.close();
+
+        SpoolJournal reopened = new SpoolJournal(file);
+        InMemoryTransport printer = new InMemoryTransport();
+        CountDownLatch done = new CountDownLatch(2);
+        ConnectionPool pool = new ConnectionPool(new PrintQueue.Listener() {
+            @Override
+            public void onJobCompleted(String jobId, int bytes) {
+                done.countDown();
+            }
+
+            @Override
+            public void onJobFailed(String jobId, Exception error) {}
+        }, reopened, null);
+        pool.open("kitchen", printer);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("ba", new String(printer.bytes(), StandardCharsets.UTF_8));
+        pool.closeAll();
+        assertEquals(0, reopened.size());
+        reopened.close();
+    }
+}
@@ -0,0 +1,168 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class StatusPollerTest {
+
+    /**
+     * Imprimante simulée : répond à DLE EOT n avec les octets d'état configurés
+     */
+    private static class FakePrinter implements PrinterTransport {
+        final int[] status = { 0x12, 0x12, 0x12, 0x12 };
+        final BlockingQueue<Byte> replies = new LinkedBlockingQueue<>();
+        final BlockingQueue<byte[]> written = new LinkedBlockingQueue<>();
+        volatile boolean mute = false;
+
+        @Override
+        public String getName() {
+            return "fake";
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public void write(byte[] data, int off, int len) {
+            byte[] copy = new byte[len];
+            System.arraycopy(data, off, copy, 0, len);
+            written.add(copy);
+            if (!mute && len == 3 && data[off] == StatusParser.DLE && data[off + 1] == StatusParser.EOT) {
+                replies.add((byte) status[data[off + 2] - 1]);
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len, int timeoutMs) throws IOException {
+            try {
+                Byte b = replies.poll(timeoutMs, TimeUnit.MILLISECONDS);
+                if (b == null) return 0;
+                buffer[off] = b;
+                return 1;
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public TransportStats getStats() {
+            return new TransportStats();
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    @Test
+    public void parsesRealTimeStatus() {
+        PrinterStatus ok = StatusParser.fromRealTime(0x12, 0x12, 0x12, 0x12);
+        assertTrue(ok.canPrint());
+
+        // Hors ligne, capot ouvert, capteur fin de papier
+        PrinterStatus paperOut = StatusParser.fromRealTime(0x1A, 0x16, 0x12, 0x72);
+        assertFalse(paperOut.online);
+        assertTrue(paperOut.coverOpen);
+        assertTrue(paperOut.paperOut);
+        assertFalse(paperOut.canPrint());
+
+        assertTrue(StatusParser.fromRealTime(0x12, 0x12, 0x12, 0x1E).paperNearEnd);
+        assertTrue(StatusParser.fromRealTime(0x16, 0x12, 0x12, 0x12).drawerOpen);
+        assertTrue(StatusParser.fromRealTime(0x12, 0x12, 0x1A, 0x12).error);
+    }
+
+    @Test
+    public void drainReplyLeavesAsbFramesForThePoller() {
+        StatusParser.DrainReplyFilter filter = new StatusParser.DrainReplyFilter();
+        // Trame ASB (sans papier), réponse DLE EOT tardive, puis la réponse à GS r
+        byte[] stream = { 0x18, 0x00, 0x0C, 0x00, 0x12, 0x00 };
+
+        StatusParser.AsbDecoder decoder = new StatusParser.AsbDecoder();
+        PrinterStatus status = null;
+        int reply = -1;
+        for (int i = 0; i < stream.length; i++) {
+            if (filter.isDrainReply(stream[i])) {
+                reply = i;
+                break;
+            }
+            PrinterStatus decoded = decoder.feed(stream[i]);
+            if (decoded != null) status = decoded;
+        }
+
+        assertEquals(5, reply);
+        assertNotNull(status);
+        assertTrue(status.paperOut);
+    }
+
+    @Test
+    public void decodesAsbFramesAndSkipsOtherBytes() {
+        StatusParser.AsbDecoder decoder = new StatusParser.AsbDecoder();
+        byte[] stream = { 0x12, 0x18, 0x00, 0x0C, 0x00 };
+
+        PrinterStatus status = null;
+        for (byte b : stream) {
+            PrinterStatus decoded = decoder.feed(b);
+            if (decoded != null) status = decoded;
+        }
+
+        assertNotNull(status);
+        assertFalse(status.online);
+        assertTrue(status.paperOut);
+        assertFalse(status.coverOpen);
+    }
+
+    @Test
+    public void queriesAllFourStatusBytes() throws Exception {
+        FakePrinter printer = new FakePrinter();
+        printer.status[1] = 0x16;
+
+        PrinterStatus status = StatusPoller.query(printer, new Object());
+
+        assertTrue(status.responding);
+        assertTrue(status.coverOpen);
+        assertEquals(4, printer.written.size());
+    }
+
+    @Test
+    public void silentPrinterIsNotResponding() throws Exception {
+        FakePrinter printer = new FakePrinter();
+        printer.mute = true;
+
+        assertEquals(PrinterStatus.NOT_RESPONDING, StatusPoller.query(printer, new Object()));
+    }
+
+    @Test
+    public void holdsQueueWhilePaperIsOut() throws Exception {
+        FakePrinter printer = new FakePrinter();
+        printer.status[3] = 0x72;
+        CountDownLatch paperOut = new CountDownLatch(1);
+        CountDownLatch paperBack = new CountDownLatch(1);
+        PrinterSession session = new PrinterSession("test", printer, null);
+        session.startStatusPolling(20, false, status -> {
+            if (status.paperOut) paperOut.countDown();
+            else paperBack.countDown();
+        });
+
+        assertTrue(paperOut.await(2, TimeUnit.SECONDS));
+        assertTrue(session.getQueue().isHeld());
+        session.submit(new EscPosEncoder().text("ticket"));
+        Thread.sleep(100);
+        assertEquals(1, session.getQueue().pending());
+
+        printer.status[3] = 0x12;
+        assertTrue(paperBack.await(2, TimeUnit.SECONDS));
+        assertFalse(session.getQueue().isHeld());
+        long deadline = System.currentTimeMillis() + 2000;
+        while (session.getQueue().pending() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(0, session.getQueue().pending());
+        session.close();
+    }
+}
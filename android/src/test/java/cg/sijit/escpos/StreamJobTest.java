@@ -0,0 +1,201 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamJobTest {
+
+    private InMemoryTransport memory;
+    private PrintQueue queue;
+    private final List<String> events = new ArrayList<>();
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        memory = new InMemoryTransport();
+        queue = new PrintQueue("stream", memory::write, new PrintQueue.Listener() {
+            @Override
+            public void onJobCompleted(String jobId, int bytes) {
+                synchronized (events) {
+                    events.add("ok " + bytes);
+                }
+                done.countDown();
+            }
+
+            @Override
+            public void onJobFailed(String jobId, Exception error) {
+                synchronized (events) {
+                    events.add("failed " + error.getMessage());
+                }
+                done.countDown();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        queue.shutdown();
+    }
+
+    private static EscPosEncoder line(int n) {
+        return EscPosEncoder.obtain().println("ligne " + n);
+    }
+
+    @Test
+    public void printsChunksInOrderAndCompletes() throws Exception {
+        StreamJob stream = queue.openStream(PrintQueue.PRIORITY_NORMAL);
+        for (int i = 0; i < 10; i++) stream.append(line(i), 1000);
+        stream.end(1000);
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10; i++) expected.append("ligne ").append(i).append('\n');
+        assertEquals(expected.toString(), memory.printer().printedText());
+        assertEquals("[ok " + memory.bytes().length + "]", events.toString());
+    }
+
+    @Test
+    public void slowPrinterBoundsPendingChunks() throws Exception {
+        memory.setWriteDelay(20);
+        StreamJob stream = queue.openStream(PrintQueue.PRIORITY_NORMAL, 2, 5000);
+        int maxPending = 0;
+        for (int i = 0; i < 20; i++) {
+            stream.append(line(i), 2000);
+            maxPending = Math.max(maxPending, stream.pendingChunks());
+        }
+        stream.end(2000);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue("pending " + maxPending, maxPending <= 2);
+        assertTrue(memory.printer().printedText().endsWith("ligne 19\n"));
+    }
+
+    @Test
+    public void appendTimesOutWhenPrinterStalls() throws Exception {
+        memory.setWriteDelay(500);
+        StreamJob stream = queue.openStream(PrintQueue.PRIORITY_NORMAL, 1, 5000);
+        stream.append(line(0), 1000);
+        stream.append(line(1), 1000);
+        try {
+            // Le premier s'écrit, le second attend : plus de place
+            stream.append(line(2), 100);
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.getMessage().startsWith("Imprimante trop lente"));
+        }
+        stream.abort(new Exception("fin du test"));
+    }
+
+    @Test
+    public void writeFailureAbortsStream() throws Exception {
+        memory.failAfter(20);
+        StreamJob stream = queue.openStream(PrintQueue.PRIORITY_NORMAL);
+        for (int i = 0; i < 3; i++) stream.append(line(i), 1000);
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertTrue(stream.isFailed());
+        try {
+            stream.append(line(3), 1000);
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.getMessage().startsWith("Flux interrompu"));
+        }
+        assertTrue(events.get(0).startsWith("failed"));
+    }
+
+    @Test
+    public void abortStopsWriterAndNextJobRuns() throws Exception {
+        StreamJob stream = queue.openStream(PrintQueue.PRIORITY_NORMAL);
+        stream.append(line(0), 1000);
+        queue.submit(EscPosEncoder.obtain().println("après"));
+        assertTrue(memory.printer().awaitBytes(8, 1000));
+
+        stream.abort(new Exception("Flux annulé"));
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertTrue(memory.printer().awaitOperations(EscPosDecoder.Kind.LF, 2, 1000));
+        synchronized (events) {
+            assertEquals("failed Flux annulé", events.get(0));
+        }
+        assertEquals("ligne 0\naprès\n", memory.printer().printedText());
+    }
+
+    @Test
+    public void idleStreamIsAbandoned() throws Exception {
+        StreamJob stream = queue.openStream(PrintQueue.PRIORITY_NORMAL, 4, 100);
+        stream.append(line(0), 1000);
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertTrue(events.get(0).startsWith("failed Flux abandonné"));
+        assertTrue(stream.isFailed());
+    }
+
+    @Test
+    public void heldQueuePausesBetweenChunks() throws Exception {
+        StreamJob stream = queue.openStream(PrintQueue.PRIORITY_NORMAL);
+        stream.append(line(0), 1000);
+        assertTrue(memory.printer().awaitBytes(8, 1000));
+
+        queue.hold();
+        stream.append(line(1), 1000);
+        Thread.sleep(100);
+        assertEquals("ligne 0\n", memory.printer().printedText());
+
+        queue.resume();
+        stream.end(1000);
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals("ligne 0\nligne 1\n", memory.printer().printedText());
+    }
+
+    @Test
+    public void blockedStreamDoesNotDelayOtherPrinters() throws Exception {
+        InMemoryTransport otherMemory = new InMemoryTransport();
+        PrintQueue other = new PrintQueue("autre", otherMemory::write, null);
+        try {
+            // Imprimante A retenue : son flux bloque sur une file de morceaux pleine
+            other.hold();
+            StreamJob blocked = other.openStream(PrintQueue.PRIORITY_NORMAL, 1, 5000);
+            SerialExecutor blockedWriter = new SerialExecutor();
+            CountDownLatch blockedDone = new CountDownLatch(2);
+            for (int i = 0; i < 2; i++) {
+                int n = i;
+                blockedWriter.execute(() -> {
+                    try {
+                        blocked.append(line(n), 2000);
+                    } catch (Exception e) {
+                        // Attendu si A reste bloquée
+                    }
+                    blockedDone.countDown();
+                });
+            }
+
+            // Imprimante B : son flux avance sans attendre A
+            StreamJob stream = queue.openStream(PrintQueue.PRIORITY_NORMAL);
+            SerialExecutor writer = new SerialExecutor();
+            writer.execute(() -> {
+                try {
+                    stream.append(line(0), 1000);
+                    stream.end(1000);
+                } catch (Exception e) {
+                    stream.abort(e);
+                }
+            });
+            assertTrue(done.await(1, TimeUnit.SECONDS));
+            assertEquals("ligne 0\n", memory.printer().printedText());
+            assertEquals(1, blockedDone.getCount());
+
+            other.resume();
+            assertTrue(blockedDone.await(2, TimeUnit.SECONDS));
+            blocked.abort(new Exception("fin du test"));
+        } finally {
+            other.shutdown();
+        }
+    }
+}
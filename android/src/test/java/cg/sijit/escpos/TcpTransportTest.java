@@ -0,0 +1,125 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TcpTransportTest {
+
+    private ServerSocket server;
+    private Thread acceptor;
+    private final LinkedBlockingQueue<Socket> accepted = new LinkedBlockingQueue<>();
+
+    @Before
+    public void startServer() throws IOException {
+        server = new ServerSocket(0);
+        acceptor = new Thread(() -> {
+            try {
+                while (true) accepted.add(server.accept());
+            } catch (IOException ignore) {
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.close();
+        for (Socket socket : accepted) socket.close();
+    }
+
+    private static TcpTransport.Options fastOptions() {
+        TcpTransport.Options options = new TcpTransport.Options();
+        options.connectTimeoutMs = 1000;
+        options.writeTimeoutMs = 2000;
+        options.initialRetryDelayMs = 10;
+        options.maxRetryDelayMs = 50;
+        options.maxRetries = 3;
+        options.idleProbeMs = 50;
+        return options;
+    }
+
+    private static byte[] readExactly(Socket socket, int length) throws IOException {
+        socket.setSoTimeout(2000);
+        InputStream in = socket.getInputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (out.size() < length) {
+            int b = in.read();
+            if (b < 0) break;
+            out.write(b);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void writesToServer() throws Exception {
+        TcpTransport transport = TcpTransport.open("127.0.0.1", server.getLocalPort(), fastOptions(), null);
+        Socket peer = accepted.poll(2, TimeUnit.SECONDS);
+
+        transport.write("Bonjour".getBytes("UTF-8"), 0, 7);
+
+        assertEquals("Bonjour", new String(readExactly(peer, 7), "UTF-8"));
+        assertEquals(TcpTransport.State.CONNECTED, transport.getState());
+        assertEquals(7, transport.getStats().snapshot().bytes);
+        transport.close();
+        assertFalse(transport.isConnected());
+    }
+
+    @Test
+    public void reconnectsWhenPrinterDropsConnection() throws Exception {
+        List<TcpTransport.State> states = new CopyOnWriteArrayList<>();
+        TcpTransport transport = TcpTransport.open("127.0.0.1", server.getLocalPort(), fastOptions(), (t, state) -> states.add(state));
+        Socket first = accepted.poll(2, TimeUnit.SECONDS);
+        first.close(); // imprimante en veille
+        Thread.sleep(100);
+
+        transport.write(new byte[] { 0x1B, 0x40 }, 0, 2);
+
+        Socket second = accepted.poll(2, TimeUnit.SECONDS);
+        assertNotNull(second);
+        assertArrayEquals(new byte[] { 0x1B, 0x40 }, readExactly(second, 2));
+        assertEquals(1, transport.getReconnectCount());
+        assertTrue(states.contains(TcpTransport.State.RECONNECTING));
+        assertEquals(TcpTransport.State.CONNECTED, transport.getState());
+        transport.close();
+    }
+
+    @Test
+    public void failsAfterRetriesWhenPrinterIsGone() throws Exception {
+        TcpTransport transport = TcpTransport.open("127.0.0.1", server.getLocalPort(), fastOptions(), null);
+        accepted.poll(2, TimeUnit.SECONDS).close();
+        server.close();
+        Thread.sleep(100);
+
+        try {
+            transport.write(new byte[] { 0x0A }, 0, 1);
+            fail("write should fail");
+        } catch (IOException expected) {
+        }
+        assertEquals(TcpTransport.State.FAILED, transport.getState());
+        assertFalse(transport.isConnected());
+        transport.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void connectFailsWithoutListener() throws Exception {
+        int port = server.getLocalPort();
+        server.close();
+        // La socket d'écoute n'est vraiment fermée qu'une fois accept() sorti
+        acceptor.join(1000);
+        TcpTransport.open("127.0.0.1", port, fastOptions(), null);
+    }
+}
@@ -0,0 +1,40 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TransportStatsTest {
+
+    @Test
+    public void computesThroughputFromWriteTime() {
+        TransportStats stats = new TransportStats();
+        stats.recordChunk(1000, 2_000_000);
+        stats.recordChunk(1000, 6_000_000);
+        stats.recordWrite(4_000_000);
+        stats.recordRetry();
+
+        TransportStats.Snapshot snapshot = stats.snapshot();
+        assertEquals(2000, snapshot.bytes);
+        assertEquals(2, snapshot.chunks);
+        assertEquals(1, snapshot.writes);
+        assertEquals(1, snapshot.retries);
+        // Blocs pipelinés : 2000 octets en 4 ms de write(), pas en 8 ms cumulées
+        assertEquals(500_000.0, snapshot.bytesPerSecond, 0.001);
+        assertEquals(4.0, snapshot.avgChunkLatencyMs, 0.001);
+        assertEquals(6.0, snapshot.maxChunkLatencyMs, 0.001);
+        assertEquals(6.0, snapshot.lastChunkLatencyMs, 0.001);
+    }
+
+    @Test
+    public void emptyStatsAreZero() {
+        TransportStats stats = new TransportStats();
+        stats.recordChunk(10, 1_000_000);
+        stats.reset();
+
+        TransportStats.Snapshot snapshot = stats.snapshot();
+        assertEquals(0, snapshot.bytes);
+        assertEquals(0.0, snapshot.bytesPerSecond, 0.0);
+        assertEquals(0.0, snapshot.avgChunkLatencyMs, 0.0);
+    }
+}
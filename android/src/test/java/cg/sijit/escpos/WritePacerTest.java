@@ -0,0 +1,61 @@
+package cg.sijit.escpos;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class WritePacerTest {
+
+    private static WritePacer.Options adaptiveOptions() {
+        WritePacer.Options options = new WritePacer.Options();
+        options.adaptive = true;
+        options.chunkDelayMs = 2;
+        options.maxChunkDelayMs = 20;
+        return options;
+    }
+
+    @Test
+    public void fixedDelayIsNotAdjusted() {
+        WritePacer.Options options = new WritePacer.Options();
+        options.chunkDelayMs = 5;
+        WritePacer pacer = new WritePacer(options);
+
+        pacer.onChunkWritten(1_000_000);
+        pacer.onChunkWritten(50_000_000);
+
+        assertEquals(5, pacer.currentDelayMs());
+    }
+
+    @Test
+    public void backsOffWhenWritesBlock() {
+        WritePacer pacer = new WritePacer(adaptiveOptions());
+        pacer.onChunkWritten(1_000_000);
+        pacer.onChunkWritten(1_000_000);
+
+        pacer.onChunkWritten(30_000_000);
+        assertEquals(4, pacer.currentDelayMs());
+
+        for (int i = 0; i < 10; i++) pacer.onChunkWritten(300_000_000);
+        assertEquals(20, pacer.currentDelayMs());
+    }
+
+    @Test
+    public void recoversTowardsFloorWhenWritesAreSmooth() {
+        WritePacer pacer = new WritePacer(adaptiveOptions());
+        pacer.onChunkWritten(1_000_000);
+        pacer.onChunkWritten(30_000_000);
+        assertEquals(4, pacer.currentDelayMs());
+
+        for (int i = 0; i < 200; i++) pacer.onChunkWritten(1_000_000);
+
+        assertEquals(2, pacer.currentDelayMs());
+    }
+
+    @Test
+    public void chunkSizeIsAtLeastOneByte() {
+        WritePacer.Options options = new WritePacer.Options();
+        options.chunkSize = 0;
+
+        assertEquals(1, new WritePacer(options).chunkSize());
+    }
+}
@@ -0,0 +1,91 @@
+package cg.sijit.escpos.bench;
+
+import cg.sijit.escpos.CodePage;
+import cg.sijit.escpos.ColumnLayout;
+import cg.sijit.escpos.EscPosEncoder;
+import cg.sijit.escpos.ReceiptTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Construction du tampon de commandes d'un ticket de 3 Ko : encodeur du pool,
+ * encodeur neuf à chaque ticket, et modèle compilé rempli par champs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommandBuildingBenchmark {
+
+    private static final String TEMPLATE =
+        "[center][size=2][b]{{shop}}[/b][/size]\n{{address}}\n[left]"
+        + "{{#items}}{{name:-33}} {{qty:4}} {{price:9}}\n{{/items}}"
+        + "[b][size=2]TOTAL {{total}} F[/size][/b]\n[center]Merci de votre visite !\n[feed=3][cut]";
+
+    private ColumnLayout layout;
+    private ReceiptTemplate template;
+    private Map<String, Object> data;
+
+    @Setup
+    public void setUp() {
+        layout = Receipts.itemLayout();
+        template = ReceiptTemplate.compile(TEMPLATE);
+        data = new HashMap<>();
+        data.put("shop", "CHEZ MAMAN SIJIT");
+        data.put("address", "Avenue de la Paix, Brazzaville");
+        List<Map<String, Object>> items = new ArrayList<>();
+        long total = 0;
+        for (int i = 0; i < Receipts.ITEM_COUNT; i++) {
+            Map<String, Object> item = new HashMap<>();
+            int qty = 1 + i % 3;
+            long price = 500L * (1 + i % 7);
+            total += qty * price;
+            item.put("name", Receipts.ITEMS[i % Receipts.ITEMS.length]);
+            item.put("qty", qty);
+            item.put("price", price + " F");
+            items.add(item);
+        }
+        data.put("items", items);
+        data.put("total", total);
+    }
+
+    /** Chemin du plugin : encodeur repris du pool puis rendu */
+    @Benchmark
+    public int pooledEncoder() {
+        EscPosEncoder encoder = EscPosEncoder.obtain();
+        try {
+            return Receipts.receipt(encoder, layout).size();
+        } finally {
+            encoder.recycle();
+        }
+    }
+
+    /** Encodeur neuf et copie finale, sans pool */
+    @Benchmark
+    public byte[] freshEncoder() {
+        return Receipts.receipt(new EscPosEncoder(), layout).toByteArray();
+    }
+
+    @Benchmark
+    public int compiledTemplate() {
+        EscPosEncoder encoder = EscPosEncoder.obtain();
+        try {
+            encoder.initialize().codePage(CodePage.CP858);
+            template.writeTo(encoder, data);
+            return encoder.size();
+        } finally {
+            encoder.recycle();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package cg.sijit.escpos.bench;
+
+import cg.sijit.escpos.EscPosEncoder;
+import cg.sijit.escpos.ImageRasterizer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Tramage et compactage 1 bit d'un logo, puis mise en commandes GS v 0.
+ * La source fait 1,5 fois la largeur du papier, comme une photo redimensionnée.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RasterBenchmark {
+
+    @Param({"THRESHOLD", "BAYER", "FLOYD_STEINBERG"})
+    public ImageRasterizer.Dither dither;
+
+    /** 384 points = papier 58 mm, 576 = 80 mm */
+    @Param({"384", "576"})
+    public int width;
+
+    private int[] argb;
+    private int srcWidth;
+    private int srcHeight;
+    private ImageRasterizer.Raster raster;
+    private EscPosEncoder encoder;
+
+    @Setup
+    public void setUp() {
+        srcWidth = width * 3 / 2;
+        srcHeight = Receipts.LOGO_HEIGHT * 3 / 2;
+        argb = Receipts.logo(srcWidth, srcHeight);
+        raster = ImageRasterizer.rasterize(argb, srcWidth, srcHeight, width, dither, ImageRasterizer.DEFAULT_THRESHOLD);
+        encoder = new EscPosEncoder(raster.data.length + 1024);
+    }
+
+    /** Redimensionnement, niveaux de gris, tramage et compactage en bits */
+    @Benchmark
+    public ImageRasterizer.Raster rasterize() {
+        return ImageRasterizer.rasterize(argb, srcWidth, srcHeight, width, dither, ImageRasterizer.DEFAULT_THRESHOLD);
+    }
+
+    /** Découpage en bandes GS v 0 d'une image déjà tramée */
+    @Benchmark
+    public int rasterCommands() {
+        return encoder.reset().rasterImage(raster).size();
+    }
+
+    /** Même image compactée (bandes blanches sautées, marges retirées) : la taille renvoyée est celle envoyée */
+    @Benchmark
+    public int compactRasterCommands() {
+        return encoder.reset().compactRasterImage(raster, EscPosEncoder.ALIGN_CENTER, 1).size();
+    }
+}
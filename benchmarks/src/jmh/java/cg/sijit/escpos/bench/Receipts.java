@@ -0,0 +1,111 @@
+package cg.sijit.escpos.bench;
+
+import cg.sijit.escpos.CodePage;
+import cg.sijit.escpos.ColumnLayout;
+import cg.sijit.escpos.EscPosEncoder;
+import cg.sijit.escpos.ImageRasterizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tickets de référence partagés par les benchmarks, proches de ce qu'envoie
+ * une caisse : papier 80 mm (576 points, 48 caractères en police A).
+ */
+final class Receipts {
+
+    static final int PAPER_DOTS = 576;
+    static final int LINE_WIDTH = 48;
+
+    // Nombre d'articles du ticket type : environ 3 Ko une fois encodé
+    static final int ITEM_COUNT = 55;
+
+    // Hauteur du logo pour un ticket d'environ 30 Ko (72 octets par ligne à 576 points)
+    static final int LOGO_HEIGHT = 380;
+
+    static final String[] ITEMS = {
+        "Poulet braisé", "Poisson salé", "Saka-saka", "Crème brûlée", "Café noir",
+        "Jus de gingembre", "Bière Primus 65 cl", "Pain de manioc", "Beignets", "Eau minérale 1,5 l"
+    };
+
+    private Receipts() {}
+
+    static ColumnLayout itemLayout() {
+        List<ColumnLayout.Column> columns = new ArrayList<>();
+        ColumnLayout.Column name = new ColumnLayout.Column();
+        name.overflow = ColumnLayout.Overflow.ELLIPSIS;
+        columns.add(name);
+        ColumnLayout.Column qty = new ColumnLayout.Column();
+        qty.width = 4;
+        qty.align = ColumnLayout.Align.RIGHT;
+        columns.add(qty);
+        ColumnLayout.Column price = new ColumnLayout.Column();
+        price.width = 10;
+        price.align = ColumnLayout.Align.RIGHT;
+        columns.add(price);
+        return new ColumnLayout(LINE_WIDTH, 1, columns);
+    }
+
+    /**
+     * Ticket de caisse : en-tête, articles en colonnes, totaux, QR code et coupe
+     */
+    static EscPosEncoder receipt(EscPosEncoder out, ColumnLayout layout) {
+        out.initialize().codePage(CodePage.CP858)
+            .align("center").textSize(2).bold(true).println("CHEZ MAMAN SIJIT")
+            .textSize(1).bold(false).println("Avenue de la Paix, Brazzaville")
+            .println("Tél. 06 123 45 67 - RCCM CG-BZV-01-2024")
+            .align("left");
+        layout.writeSeparator(out, '-');
+        long total = 0;
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            int qty = 1 + i % 3;
+            long price = 500L * (1 + i % 7);
+            total += qty * price;
+            layout.writeRow(out, ITEMS[i % ITEMS.length], Integer.toString(qty), price + " F");
+        }
+        layout.writeSeparator(out, '-');
+        out.bold(true).textSize(2).println("TOTAL " + total + " F").textSize(1).bold(false)
+            .println("Espèces : " + (total + 1000) + " F   Rendu : 1000 F")
+            .align("center")
+            .qrCode("https://sijit.cg/r/2024-000123?t=" + total, 2, 6, 1)
+            .println("Merci de votre visite !")
+            .feed(3)
+            .cut();
+        return out;
+    }
+
+    /**
+     * Logo ARGB synthétique (dégradé et disque plein) : des aplats et des
+     * demi-tons, comme un logo de marque photographié
+     */
+    static int[] logo(int width, int height) {
+        int[] argb = new int[width * height];
+        int cx = width / 2;
+        int cy = height / 2;
+        int r2 = (height / 3) * (height / 3);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int dx = x - cx;
+                int dy = y - cy;
+                int gray = dx * dx + dy * dy < r2 ? 0 : 255 * x / width;
+                argb[y * width + x] = 0xFF000000 | gray << 16 | gray << 8 | gray;
+            }
+        }
+        return argb;
+    }
+
+    /**
+     * Ticket précédé du logo pleine largeur
+     */
+    static EscPosEncoder logoReceipt(EscPosEncoder out, ColumnLayout layout, ImageRasterizer.Raster logo) {
+        out.initialize().align("center").rasterImage(logo);
+        return receipt(out, layout);
+    }
+
+    static ImageRasterizer.Raster rasterLogo() {
+        return ImageRasterizer.rasterize(
+            logo(PAPER_DOTS, LOGO_HEIGHT), PAPER_DOTS, LOGO_HEIGHT, PAPER_DOTS,
+            ImageRasterizer.Dither.FLOYD_STEINBERG, ImageRasterizer.DEFAULT_THRESHOLD
+        );
+    }
+}
@@ -0,0 +1,99 @@
+package cg.sijit.escpos.bench;
+
+import cg.sijit.escpos.EscPosEncoder;
+import cg.sijit.escpos.TcpTransport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Envoi d'un ticket par TcpTransport vers une imprimante simulée en boucle
+ * locale, qui lit et jette les octets aussi vite que possible. Mesure le coût
+ * du transport lui-même, pas celui d'une vraie imprimante (voir getMetrics).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TcpWriteBenchmark {
+
+    /** receipt3k : ticket texte, logo30k : même ticket précédé d'un logo 576 points */
+    @Param({"receipt3k", "logo30k"})
+    public String payload;
+
+    @Param({"true", "false"})
+    public boolean tcpNoDelay;
+
+    private ServerSocket server;
+    private Thread sink;
+    private final AtomicLong received = new AtomicLong();
+    private TcpTransport transport;
+    private byte[] data;
+    private long sent;
+
+    @Setup
+    public void setUp() throws IOException {
+        EscPosEncoder encoder = new EscPosEncoder();
+        if ("logo30k".equals(payload)) {
+            Receipts.logoReceipt(encoder, Receipts.itemLayout(), Receipts.rasterLogo());
+        } else {
+            Receipts.receipt(encoder, Receipts.itemLayout());
+        }
+        data = encoder.toByteArray();
+
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        sink = new Thread(this::drain, "escpos-bench-sink");
+        sink.setDaemon(true);
+        sink.start();
+
+        TcpTransport.Options options = new TcpTransport.Options();
+        options.tcpNoDelay = tcpNoDelay;
+        options.autoReconnect = false;
+        transport = TcpTransport.open(server.getInetAddress().getHostAddress(), server.getLocalPort(), options, null);
+    }
+
+    private void drain() {
+        byte[] buffer = new byte[64 * 1024];
+        try (Socket socket = server.accept(); InputStream in = socket.getInputStream()) {
+            int n;
+            while ((n = in.read(buffer)) > 0) received.addAndGet(n);
+        } catch (IOException ignore) {
+            // fin du benchmark
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        transport.close();
+        server.close();
+    }
+
+    /** Retour dès que les octets sont confiés à la socket */
+    @Benchmark
+    public void write() throws IOException {
+        transport.write(data, 0, data.length);
+        sent += data.length;
+    }
+
+    /** Jusqu'à la lecture du dernier octet par l'imprimante simulée */
+    @Benchmark
+    public void writeUntilReceived() throws IOException {
+        transport.write(data, 0, data.length);
+        sent += data.length;
+        while (received.get() < sent) Thread.onSpinWait();
+    }
+}
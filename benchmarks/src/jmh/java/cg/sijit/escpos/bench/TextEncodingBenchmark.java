@@ -0,0 +1,75 @@
+package cg.sijit.escpos.bench;
+
+import cg.sijit.escpos.CodePage;
+import cg.sijit.escpos.EscPosEncoder;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Encodage d'une page de texte (48 lignes de 48 caractères) : UTF-8, tables
+ * de pages de code du plugin, et Charset du JDK comme point de comparaison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TextEncodingBenchmark {
+
+    /** ascii : menu sans accent, latin : français, mixed : français et cyrillique (changements de page) */
+    @Param({"ascii", "latin", "mixed"})
+    public String text;
+
+    private String page;
+    private EscPosEncoder encoder;
+    private Charset ibm858;
+
+    @Setup
+    public void setUp() {
+        String line;
+        switch (text) {
+            case "ascii":
+                line = "Grilled chicken x2                   3000 F\n";
+                break;
+            case "latin":
+                line = "Crème brûlée à l'érable x2          3000 €\n";
+                break;
+            default:
+                line = "Crème brûlée / Пельмени x2          3000 €\n";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 48; i++) sb.append(line);
+        page = sb.toString();
+        encoder = new EscPosEncoder(page.length() * 3 + 64);
+        ibm858 = Charset.forName("IBM00858");
+    }
+
+    @Benchmark
+    public int utf8() {
+        return encoder.reset().text(page).size();
+    }
+
+    @Benchmark
+    public int codePage() {
+        return encoder.reset().codePage(CodePage.CP858).text(page).size();
+    }
+
+    @Benchmark
+    public int codePageWithAlternates() {
+        return encoder.reset().codePage(CodePage.CP858).alternateCodePages(CodePage.CP858, CodePage.CP866).text(page).size();
+    }
+
+    /** Chemin naïf : un tableau intermédiaire par appel */
+    @Benchmark
+    public int jdkCharset() {
+        return encoder.reset().raw(page.getBytes(ibm858)).size();
+    }
+}
@@ -1,23 +1,63 @@
+import type { PluginListenerHandle } from '@capacitor/core';
+
 export interface ESCPOSPrinterPlugin {
   // Bluetooth
   listPairedDevices(): Promise<{ devices: { name: string; address: string }[] }>;
-  connect(options: { deviceName: string }): Promise<{ connected: boolean }>;
-  disconnect(): Promise<{ disconnected: boolean }>;
-  isConnected(): Promise<{ connected: boolean }>;
+  connect(options: BluetoothConnectOptions): Promise<{ connected: boolean }>;
+  disconnect(options?: { printerId?: string }): Promise<{ disconnected: boolean }>;
+  isConnected(options?: { printerId?: string }): Promise<{ connected: boolean }>;
+  listPrinters(): Promise<{ printers: ConnectedPrinter[] }>;
+  listPrinterProfiles(): Promise<{ profiles: PrinterProfile[] }>;
+  getPrinterProfile(options?: { printerId?: string }): Promise<PrinterProfile>;
+  setPrinterProfile(options: { profile: string; printerId?: string }): Promise<PrinterProfile>;
+  getTransportStats(options?: { printerId?: string }): Promise<TransportStats>;
+  getCacheStats(): Promise<{ image: CacheStats; text: CacheStats }>;
+  getMetrics(options?: { reset?: boolean }): Promise<PrintMetrics>;
+  startMetricsEvents(options?: { interval?: number }): Promise<void>;
+  stopMetricsEvents(): Promise<void>;
 
   // Impression texte
-  printText(options: { text: string }): Promise<{ success: boolean }>;
+  printText(options: PrintTextOptions): Promise<{ success: boolean; jobId: string }>;
+  printBatch(options: {
+    operations: PrintOperation[];
+    printerId?: string;
+    priority?: number;
+  }): Promise<{ success: boolean; jobId: string }>;
+  printBarcode(options: PrintBarcodeOptions): Promise<{ success: boolean; jobId: string }>;
+  printQRCode(options: PrintQRCodeOptions): Promise<{ success: boolean; jobId: string }>;
+  printImage(options: PrintImageOptions): Promise<{ success: boolean; jobId: string }>;
+  uploadLogo(options: UploadLogoOptions): Promise<{ success: boolean; jobId: string }>;
+  printLogo(options: { key: string; printerId?: string; align?: 'left' | 'center' | 'right' }): Promise<{ success: boolean; jobId: string }>;
+  deleteLogo(options: { key: string; printerId?: string }): Promise<{ success: boolean; jobId: string }>;
+  cancelJob(options: { jobId: string }): Promise<{ cancelled: boolean }>;
+
+  // Mise en colonnes
+  printTable(options: PrintTableOptions): Promise<{ success: boolean; jobId: string }>;
+  printColumns(options: PrintColumnsOptions): Promise<{ success: boolean; jobId: string }>;
+
+  // Impression en flux (longs documents)
+  beginStream(options?: BeginStreamOptions): Promise<{ streamId: string }>;
+  appendChunk(options: AppendChunkOptions): Promise<{ success: boolean }>;
+  endStream(options: { streamId: string }): Promise<{ success: boolean }>;
+
+  // Modèles de tickets
+  registerTemplate(options: RegisterTemplateOptions): Promise<{ success: boolean }>;
+  printTemplate(options: PrintTemplateOptions): Promise<{ success: boolean; jobId: string }>;
 
   // ESC/POS avancé
-  setBold(options: { bold: boolean }): Promise<{ success: boolean }>;
-  setAlignment(options: { align: 'left' | 'center' | 'right' }): Promise<{ success: boolean }>;
-  setTextSize(options: { size: number }): Promise<{ success: boolean }>;
-  cutPaper(): Promise<{ success: boolean }>;
+  setBold(options: { bold: boolean; printerId?: string }): Promise<{ success: boolean }>;
+  setAlignment(options: { align: 'left' | 'center' | 'right'; printerId?: string }): Promise<{ success: boolean }>;
+  setTextSize(options: { size: number; printerId?: string }): Promise<{ success: boolean }>;
+  setCodePage(options: SetCodePageOptions): Promise<{ success: boolean }>;
+  setRasterCompression(options: RasterCompressionOptions): Promise<{ success: boolean }>;
+  cutPaper(options?: { printerId?: string }): Promise<{ success: boolean }>;
 
   // Wifi
-  connectWifi(options: { ip: string; port: number }): Promise<{ connected: boolean }>;
-  disconnectWifi(): Promise<{ disconnected: boolean }>;
-  isWifiConnected(): Promise<{ connected: boolean }>;
+  connectWifi(options: WifiConnectOptions): Promise<{ connected: boolean }>;
+  disconnectWifi(options?: { printerId?: string }): Promise<{ disconnected: boolean }>;
+  isWifiConnected(options?: { printerId?: string }): Promise<{ connected: boolean }>;
+  discoverNetworkPrinters(options?: DiscoveryOptions): Promise<{ printers: NetworkPrinter[] }>;
+  stopNetworkDiscovery(): Promise<{ success: boolean }>;
 
   // Permissions Bluetooth
   checkPermissions(): Promise<{ bluetooth: string }>;
@@ -25,8 +65,420 @@ export interface ESCPOSPrinterPlugin {
 
   // USB
   listUsbDevices(): Promise<{ devices: { name: string; vendorId: number; productId: number }[] }>;
-  connectUsb(options: { vendorId: number; productId: number }): Promise<{ connected: boolean }>;
-  disconnectUsb(): Promise<{ disconnected: boolean }>;
-  isUsbConnected(): Promise<{ connected: boolean }>;
+  connectUsb(options: {
+    vendorId: number;
+    productId: number;
+    printerId?: string;
+    pipelined?: boolean;
+    profile?: string;
+  }): Promise<{ connected: boolean }>;
+  disconnectUsb(options?: { printerId?: string }): Promise<{ disconnected: boolean }>;
+  isUsbConnected(options?: { printerId?: string }): Promise<{ connected: boolean }>;
+
+  // État de l'imprimante
+  startStatusPolling(options?: StatusPollingOptions): Promise<{ success: boolean }>;
+  stopStatusPolling(options?: { printerId?: string }): Promise<{ success: boolean }>;
+  getPrinterStatus(options?: { printerId?: string }): Promise<PrinterStatus>;
+
+  // Événements de la file d'impression
+  addListener(
+    eventName: 'printJobCompleted',
+    listenerFunc: (event: { jobId: string; bytes: number }) => void,
+  ): Promise<PluginListenerHandle>;
+  addListener(
+    eventName: 'printJobFailed',
+    listenerFunc: (event: { jobId: string; error: string }) => void,
+  ): Promise<PluginListenerHandle>;
+  addListener(
+    eventName: 'connectionStateChange',
+    listenerFunc: (event: { printerId: string; state: ConnectionState }) => void,
+  ): Promise<PluginListenerHandle>;
+  addListener(
+    eventName: 'printerFound',
+    listenerFunc: (event: NetworkPrinter) => void,
+  ): Promise<PluginListenerHandle>;
+  addListener(
+    eventName: 'printerStatusChange',
+    listenerFunc: (event: PrinterStatus) => void,
+  ): Promise<PluginListenerHandle>;
+  addListener(
+    eventName: 'metrics',
+    listenerFunc: (event: PrintMetrics) => void,
+  ): Promise<PluginListenerHandle>;
+  removeAllListeners(): Promise<void>;
+
+}
+
+export interface ConnectedPrinter {
+  printerId: string;
+  transport: 'bluetooth' | 'wifi' | 'usb';
+  connected: boolean;
+  state: ConnectionState;
+  pendingJobs: number;
+  /** Jobs retenus en file tant que l'imprimante signale ne pas pouvoir imprimer */
+  held: boolean;
+}
+
+export interface PrinterProfile {
+  /** 'generic-58', 'generic-80', 'epson-80', 'epson-tm88', 'star-80', 'xprinter-58' ou 'xprinter-80' */
+  id: string;
+  label: string;
+  /** Largeur imprimable en points, largeur par défaut et maximale des images */
+  paperWidth: number;
+  /** Agrandissement max du texte (setTextSize, [size=N]) */
+  maxTextSize: number;
+  /** Coupe complète, partielle après avance jusqu'au couteau, ou simple avance (sans massicot) */
+  cut: 'full' | 'partial' | 'none';
+  /** Unités d'avance ESC J par point d'image */
+  feedUnitsPerDot: number;
+  /** Taille des blocs Bluetooth en octets */
+  chunkSize: number;
+  /** Pause entre deux blocs Bluetooth en ms */
+  chunkDelay: number;
+}
+
+export interface StatusPollingOptions {
+  printerId?: string;
+  /** Intervalle entre deux interrogations en ms (défaut 2000) */
+  interval?: number;
+  /** Laisser l'imprimante envoyer ses changements d'état (GS a) au lieu de l'interroger (défaut false) */
+  asb?: boolean;
+}
+
+export interface PrinterStatus {
+  printerId: string;
+  /** false si l'imprimante n'a pas répondu aux requêtes d'état */
+  responding: boolean;
+  online: boolean;
+  coverOpen: boolean;
+  paperOut: boolean;
+  paperNearEnd: boolean;
+  drawerOpen: boolean;
+  error: boolean;
+  canPrint: boolean;
+}
+
+export interface TransportStats {
+  printerId: string;
+  transport: 'bluetooth' | 'wifi' | 'usb';
+  /** Octets envoyés depuis la connexion */
+  bytes: number;
+  chunks: number;
+  writes: number;
+  /** Débit mesuré sur le temps d'écriture */
+  bytesPerSecond: number;
+  avgChunkLatencyMs: number;
+  maxChunkLatencyMs: number;
+  lastChunkLatencyMs: number;
+  /** Renvois après reconnexion (Wi-Fi) */
+  retries: number;
+  /** Pause actuelle entre deux blocs (Bluetooth) */
+  chunkDelayMs?: number;
+}
+
+export interface BluetoothConnectOptions {
+  /** Nom de l'imprimante appairée (ignoré si address est fourni) */
+  deviceName?: string;
+  /** Adresse MAC, ex. '00:11:22:33:44:55' : évite la recherche et distingue deux imprimantes de même nom */
+  address?: string;
+  printerId?: string;
+  /** Profil de l'imprimante (listPrinterProfiles) ou 'auto' : détecté par GS I puis retenu pour cette adresse (défaut 'auto') */
+  profile?: string;
+  /** Taille des blocs envoyés en octets (défaut : celle du profil, 512 en générique) */
+  chunkSize?: number;
+  /** Pause entre deux blocs en ms (défaut : celle du profil, 0 en générique) */
+  chunkDelay?: number;
+  /** Ajuster la pause selon la latence d'écriture observée (défaut false) */
+  adaptivePacing?: boolean;
+  /** Pause max en mode adaptatif en ms (défaut 100) */
+  maxChunkDelay?: number;
+  /** Attendre après chaque job que l'imprimante ait traité les données reçues (défaut false) */
+  waitForDrain?: boolean;
+  /** Attente max de l'imprimante en ms (défaut 5000) */
+  drainTimeout?: number;
+}
+
+export interface WifiConnectOptions {
+  ip: string;
+  port: number;
+  printerId?: string;
+  /** Profil de l'imprimante (listPrinterProfiles) ou 'auto' : détecté par GS I puis retenu pour cette adresse (défaut 'auto') */
+  profile?: string;
+  /** Délai de connexion en ms (défaut 5000) */
+  connectTimeout?: number;
+  /** Temps max sans progression d'une écriture en ms (défaut 10000) */
+  writeTimeout?: number;
+  /** TCP_NODELAY (défaut true) */
+  tcpNoDelay?: boolean;
+  /** SO_KEEPALIVE (défaut true) */
+  keepAlive?: boolean;
+  /** Reconnexion transparente si l'imprimante a décroché (défaut true) */
+  autoReconnect?: boolean;
+  /** Nombre de tentatives de reconnexion (défaut 5) */
+  maxRetries?: number;
+  /** Premier délai entre deux tentatives en ms, doublé à chaque échec (défaut 200) */
+  retryDelay?: number;
+  /** Délai max entre deux tentatives en ms (défaut 5000) */
+  maxRetryDelay?: number;
+}
+
+export interface DiscoveryOptions {
+  /** Plage à balayer, ex. '192.168.1.0/24' (de /16 à /32) ; par défaut le sous-réseau du Wifi */
+  cidr?: string;
+  /** Ports testés (défaut [9100] ; 515 = LPD, 631 = IPP) */
+  ports?: number[];
+  /** Délai de connexion par adresse en ms (défaut 500) */
+  timeout?: number;
+}
+
+export interface NetworkPrinter {
+  ip: string;
+  port: number;
+}
+
+export type CodePage = 'UTF8' | 'CP437' | 'CP850' | 'CP858' | 'CP1252' | 'CP866';
+
+export interface SetCodePageOptions {
+  /** Page de code du texte (ESC t n) ; 'UTF8' pour envoyer le texte en UTF-8 */
+  codePage: CodePage;
+  printerId?: string;
+  /** Basculer vers une autre page quand un caractère manque (défaut true) */
+  autoSwitch?: boolean;
+  /** Caractère ASCII imprimé à la place d'un caractère introuvable (défaut '?') */
+  fallback?: string;
+}
+
+export interface RasterCompressionOptions {
+  /**
+   * Images raster compactées (activé par défaut) : bandes blanches remplacées
+   * par une avance papier et marges blanches retirées, sans perte
+   */
+  enabled: boolean;
+  /** Unités d'avance ESC J par point d'image : 1 à 203 dpi (défaut), 2 sur les modèles 180 dpi */
+  feedUnitsPerDot?: number;
+  printerId?: string;
+}
+
+export interface PrintTextOptions {
+  text: string;
+  printerId?: string;
+  priority?: number;
+  /** 'raster' dessine le texte en image côté natif (arabe, chinois, emoji...), 'text' par défaut */
+  mode?: 'text' | 'raster';
+  /** Mode raster : taille du texte en points d'impression (défaut 24) */
+  fontSize?: number;
+  /** Mode raster : texte en gras */
+  bold?: boolean;
+  /** Mode raster : alignement dans l'image */
+  align?: 'left' | 'center' | 'right';
+  /** Mode raster : largeur de l'image en points (défaut 384) */
+  width?: number;
+}
+
+export interface RasterTextStyle {
+  /** Taille du texte en points d'impression (défaut 24) */
+  fontSize?: number;
+  bold?: boolean;
+  align?: 'left' | 'center' | 'right';
+  /** Largeur de l'image en points (défaut 384) */
+  width?: number;
+}
+
+export interface CacheStats {
+  entries: number;
+  bytes: number;
+  hits: number;
+  misses: number;
+  /** Part des lectures servies par le cache, de 0 à 1 */
+  hitRate: number;
+}
+
+export interface PrintMetrics {
+  /** Mesures par transport ('bluetooth', 'wifi', 'usb') */
+  transports: { [transport: string]: TransportMetrics };
+}
+
+export interface TransportMetrics {
+  /** Jobs écrits en entier */
+  jobs: number;
+  failures: number;
+  cancelled: number;
+  bytes: number;
+  /** Renvois après reconnexion, sur les connexions ouvertes */
+  retries: number;
+  /** Construction du job, de l'obtention de l'encodeur à la mise en file */
+  encode: LatencyStats;
+  /** Attente en file jusqu'au premier octet écrit */
+  queueWait: LatencyStats;
+  /** Écriture, du premier au dernier octet (attente de vidage comprise si waitForDrain) */
+  write: LatencyStats;
+  /** De la mise en file au dernier octet écrit */
+  total: LatencyStats;
+}
+
+export interface LatencyStats {
+  count: number;
+  meanMs: number;
+  /** Percentiles arrondis à la puissance de 2 supérieure (en µs) */
+  p50Ms: number;
+  p90Ms: number;
+  p99Ms: number;
+  maxMs: number;
+}
+
+export interface TableColumn {
+  /** Largeur en caractères (absente = part de la place restante) */
+  width?: number;
+  /** Part de la place restante (défaut 1) */
+  weight?: number;
+  align?: 'left' | 'center' | 'right';
+  /** Cellule trop longue : retour à la ligne (défaut), coupe ou points de suspension */
+  overflow?: 'wrap' | 'truncate' | 'ellipsis';
+}
+
+export interface TableLayout {
+  columns: TableColumn[];
+  /** Police A (12 points, défaut) ou B (9 points) */
+  font?: 'A' | 'B';
+  /** Multiplicateur de taille 1 à 3 : divise le nombre de caractères par ligne */
+  size?: number;
+  /** Largeur imprimable en points (défaut 384, 576 pour 80 mm) */
+  paperWidth?: number;
+  /** Espaces entre deux colonnes (défaut 1) */
+  gap?: number;
+}
+
+export interface PrintTableOptions extends TableLayout {
+  rows: (string | number)[][];
+  /** Ligne d'en-tête en gras, suivie d'un trait */
+  header?: string[];
+  printerId?: string;
+  priority?: number;
+}
+
+export interface PrintColumnsOptions extends TableLayout {
+  values: (string | number)[];
+  printerId?: string;
+  priority?: number;
+}
 
+export interface BeginStreamOptions {
+  printerId?: string;
+  /** Plus haute = imprimé plus tôt (défaut 0) */
+  priority?: number;
 }
+
+export interface AppendChunkOptions {
+  /** Identifiant renvoyé par beginStream (aussi celui du job pour cancelJob et les événements) */
+  streamId: string;
+  /** Texte du morceau, de préférence coupé en fin de ligne */
+  text?: string;
+  /** Opérations du morceau, comme pour printBatch (encodées après text) */
+  operations?: PrintOperation[];
+}
+
+export interface RegisterTemplateOptions {
+  templateId: string;
+  /**
+   * Modèle compilé une fois côté natif : {{champ}}, {{champ:8}} (cadré à droite),
+   * {{champ:-20}} (cadré à gauche), {{#liste}}...{{/liste}}, balises [b] [u]
+   * [left] [center] [right] [size=N] [feed=N] [cut]
+   */
+  template: string;
+}
+
+export interface PrintTemplateOptions {
+  templateId: string;
+  /** Valeurs des champs (tableau d'objets pour une section) */
+  data: Record<string, unknown>;
+  printerId?: string;
+  /** Plus haute = imprimé plus tôt (défaut 0) */
+  priority?: number;
+}
+
+export type BarcodeType = 'CODE128' | 'EAN13' | 'EAN8' | 'UPC_A' | 'UPC_E' | 'CODE39' | 'ITF' | 'CODABAR' | 'CODE93';
+
+export interface PrintBarcodeOptions {
+  data: string;
+  /** Symbologie (défaut 'CODE128') */
+  type?: BarcodeType;
+  printerId?: string;
+  /** Hauteur en points, 1-255 (défaut 80) */
+  height?: number;
+  /** Largeur d'un module en points, 2-6 (défaut 3) */
+  width?: number;
+  /** Position du texte lisible (défaut 'below') */
+  hriPosition?: 'none' | 'above' | 'below' | 'both';
+  /** Police du texte lisible (défaut 'A') */
+  hriFont?: 'A' | 'B';
+  /** Alignement (défaut 'center') */
+  align?: 'left' | 'center' | 'right';
+}
+
+export interface PrintQRCodeOptions {
+  data: string;
+  printerId?: string;
+  /** Taille d'un module en points, 1-16 (défaut 6) */
+  size?: number;
+  /** Niveau de correction d'erreur (défaut 'M') */
+  errorCorrection?: 'L' | 'M' | 'Q' | 'H';
+  /** Modèle QR (défaut 2) */
+  model?: 1 | 2;
+  /** Alignement (défaut 'center') */
+  align?: 'left' | 'center' | 'right';
+}
+
+export interface PrintImageOptions {
+  /** Image PNG ou JPEG en base64 (préfixe data: accepté) */
+  image: string;
+  printerId?: string;
+  /** Largeur cible en points (384 pour 58 mm, 576 pour 80 mm) ; par défaut la largeur de l'image, limitée à 384 */
+  width?: number;
+  /** Tramage (défaut 'threshold') */
+  dither?: 'threshold' | 'bayer' | 'floydSteinberg';
+  /** Seuil noir/blanc 0-255 (défaut 128) */
+  threshold?: number;
+  /** Commande utilisée : GS v 0 ('raster', défaut) ou GS ( L ('graphics') */
+  mode?: 'raster' | 'graphics';
+  /** Alignement de l'image (défaut 'center') */
+  align?: 'left' | 'center' | 'right';
+  /** Réutiliser le rendu d'une image déjà imprimée avec les mêmes réglages (défaut true) */
+  cache?: boolean;
+}
+
+export interface UploadLogoOptions {
+  /** Clé de 2 caractères ASCII sous laquelle le logo est stocké dans l'imprimante */
+  key: string;
+  /** Image PNG ou JPEG en base64 (préfixe data: accepté) */
+  image: string;
+  printerId?: string;
+  /** Largeur cible en points ; par défaut la largeur de l'image, limitée à 384 */
+  width?: number;
+  /** Tramage (défaut 'threshold') */
+  dither?: 'threshold' | 'bayer' | 'floydSteinberg';
+  /** Seuil noir/blanc 0-255 (défaut 128) */
+  threshold?: number;
+}
+
+export type ConnectionState = 'CONNECTED' | 'RECONNECTING' | 'DISCONNECTED' | 'FAILED';
+
+export type PrintOperation =
+  | { type: 'text'; text: string }
+  | { type: 'bold'; bold: boolean }
+  | { type: 'align'; align: 'left' | 'center' | 'right' }
+  | { type: 'size'; size: number }
+  | { type: 'codePage'; codePage: CodePage }
+  | { type: 'feed'; lines: number }
+  | { type: 'cut' }
+  | ({ type: 'table'; rows: (string | number)[][]; header?: string[] } & TableLayout)
+  | ({ type: 'rasterText'; text: string } & RasterTextStyle)
+  | {
+      type: 'barcode';
+      data: string;
+      barcodeType?: BarcodeType;
+      height?: number;
+      width?: number;
+      hriPosition?: 'none' | 'above' | 'below' | 'both';
+      hriFont?: 'A' | 'B';
+    }
+  | { type: 'qrcode'; data: string; size?: number; errorCorrection?: 'L' | 'M' | 'Q' | 'H'; model?: 1 | 2 };
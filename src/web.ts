@@ -1,5 +1,14 @@
 import { WebPlugin } from '@capacitor/core';
-import type { ESCPOSPrinterPlugin } from './definitions';
+import type {
+  CacheStats,
+  ConnectedPrinter,
+  ESCPOSPrinterPlugin,
+  NetworkPrinter,
+  PrintMetrics,
+  PrinterProfile,
+  PrinterStatus,
+  TransportStats,
+} from './definitions';
 
 export class ESCPOSPrinterWeb extends WebPlugin implements ESCPOSPrinterPlugin {
   // Bluetooth
@@ -23,12 +32,127 @@ export class ESCPOSPrinterWeb extends WebPlugin implements ESCPOSPrinterPlugin {
     return { connected: false };
   }
 
+  async listPrinters(): Promise<{ printers: ConnectedPrinter[] }> {
+    console.warn('Web: listPrinters not available');
+    return { printers: [] };
+  }
+
+  async getTransportStats(): Promise<TransportStats> {
+    console.warn('Web: getTransportStats not available');
+    return {
+      printerId: '',
+      transport: 'wifi',
+      bytes: 0,
+      chunks: 0,
+      writes: 0,
+      bytesPerSecond: 0,
+      avgChunkLatencyMs: 0,
+      maxChunkLatencyMs: 0,
+      lastChunkLatencyMs: 0,
+      retries: 0,
+    };
+  }
+
   // Impression texte
-  async printText(): Promise<{ success: boolean }> {
+  async getCacheStats(): Promise<{ image: CacheStats; text: CacheStats }> {
+    console.warn('Web: getCacheStats not available');
+    const empty: CacheStats = { entries: 0, bytes: 0, hits: 0, misses: 0, hitRate: 0 };
+    return { image: empty, text: empty };
+  }
+
+  async getMetrics(): Promise<PrintMetrics> {
+    console.warn('Web: getMetrics not available');
+    return { transports: {} };
+  }
+
+  async startMetricsEvents(): Promise<void> {
+    console.warn('Web: startMetricsEvents not available');
+  }
+
+  async stopMetricsEvents(): Promise<void> {
+    console.warn('Web: stopMetricsEvents not available');
+  }
+
+  async printText(): Promise<{ success: boolean; jobId: string }> {
     console.warn('Web: printText not available');
+    return { success: false, jobId: '' };
+  }
+
+  async printBatch(): Promise<{ success: boolean; jobId: string }> {
+    console.warn('Web: printBatch not available');
+    return { success: false, jobId: '' };
+  }
+
+  async beginStream(): Promise<{ streamId: string }> {
+    console.warn('Web: beginStream not available');
+    return { streamId: '' };
+  }
+
+  async appendChunk(): Promise<{ success: boolean }> {
+    console.warn('Web: appendChunk not available');
     return { success: false };
   }
 
+  async endStream(): Promise<{ success: boolean }> {
+    console.warn('Web: endStream not available');
+    return { success: false };
+  }
+
+  async printTable(): Promise<{ success: boolean; jobId: string }> {
+    console.warn('Web: printTable not available');
+    return { success: false, jobId: '' };
+  }
+
+  async printColumns(): Promise<{ success: boolean; jobId: string }> {
+    console.warn('Web: printColumns not available');
+    return { success: false, jobId: '' };
+  }
+
+  async registerTemplate(): Promise<{ success: boolean }> {
+    console.warn('Web: registerTemplate not available');
+    return { success: false };
+  }
+
+  async printTemplate(): Promise<{ success: boolean; jobId: string }> {
+    console.warn('Web: printTemplate not available');
+    return { success: false, jobId: '' };
+  }
+
+  async cancelJob(): Promise<{ cancelled: boolean }> {
+    console.warn('Web: cancelJob not available');
+    return { cancelled: false };
+  }
+
+  async printBarcode(): Promise<{ success: boolean; jobId: string }> {
+    console.warn('Web: printBarcode not available');
+    return { success: false, jobId: '' };
+  }
+
+  async printQRCode(): Promise<{ success: boolean; jobId: string }> {
+    console.warn('Web: printQRCode not available');
+    return { success: false, jobId: '' };
+  }
+
+  async printImage(): Promise<{ success: boolean; jobId: string }> {
+    console.warn('Web: printImage not available');
+    return { success: false, jobId: '' };
+  }
+
+  async uploadLogo(): Promise<{ success: boolean; jobId: string }> {
+    console.warn('Web: uploadLogo not available');
+    return { success: false, jobId: '' };
+  }
+
+  async printLogo(): Promise<{ success: boolean; jobId: string }> {
+    console.warn('Web: printLogo not available');
+    return { success: false, jobId: '' };
+  }
+
+  async deleteLogo(): Promise<{ success: boolean; jobId: string }> {
+    console.warn('Web: deleteLogo not available');
+    return { success: false, jobId: '' };
+  }
+
   async setBold(): Promise<{ success: boolean }> {
     console.warn('Web: setBold not available');
     return { success: false };
@@ -44,6 +168,49 @@ export class ESCPOSPrinterWeb extends WebPlugin implements ESCPOSPrinterPlugin {
     return { success: false };
   }
 
+  async setCodePage(): Promise<{ success: boolean }> {
+    console.warn('Web: setCodePage not available');
+    return { success: false };
+  }
+
+  async listPrinterProfiles(): Promise<{ profiles: PrinterProfile[] }> {
+    console.warn('Web: listPrinterProfiles not available');
+    return { profiles: [] };
+  }
+
+  async getPrinterProfile(): Promise<PrinterProfile> {
+    console.warn('Web: getPrinterProfile not available');
+    return {
+      id: 'generic-58',
+      label: 'Générique 58 mm',
+      paperWidth: 384,
+      maxTextSize: 8,
+      cut: 'full',
+      feedUnitsPerDot: 1,
+      chunkSize: 512,
+      chunkDelay: 0,
+    };
+  }
+
+  async setPrinterProfile(): Promise<PrinterProfile> {
+    console.warn('Web: setPrinterProfile not available');
+    return {
+      id: 'generic-58',
+      label: 'Générique 58 mm',
+      paperWidth: 384,
+      maxTextSize: 8,
+      cut: 'full',
+      feedUnitsPerDot: 1,
+      chunkSize: 512,
+      chunkDelay: 0,
+    };
+  }
+
+  async setRasterCompression(): Promise<{ success: boolean }> {
+    console.warn('Web: setRasterCompression not available');
+    return { success: false };
+  }
+
   async cutPaper(): Promise<{ success: boolean }> {
     console.warn('Web: cutPaper not available');
     return { success: false };
@@ -55,6 +222,16 @@ export class ESCPOSPrinterWeb extends WebPlugin implements ESCPOSPrinterPlugin {
     return { connected: false };
   }
 
+  async discoverNetworkPrinters(): Promise<{ printers: NetworkPrinter[] }> {
+    console.warn('Web: discoverNetworkPrinters not available');
+    return { printers: [] };
+  }
+
+  async stopNetworkDiscovery(): Promise<{ success: boolean }> {
+    console.warn('Web: stopNetworkDiscovery not available');
+    return { success: false };
+  }
+
   async disconnectWifi(): Promise<{ disconnected: boolean }> {
     console.warn('Web: disconnectWifi not available');
     return { disconnected: true };
@@ -96,4 +273,30 @@ export class ESCPOSPrinterWeb extends WebPlugin implements ESCPOSPrinterPlugin {
     console.warn('Web: isUsbConnected not available');
     return { connected: false };
   }
+
+  // État de l'imprimante
+  async startStatusPolling(): Promise<{ success: boolean }> {
+    console.warn('Web: startStatusPolling not available');
+    return { success: false };
+  }
+
+  async stopStatusPolling(): Promise<{ success: boolean }> {
+    console.warn('Web: stopStatusPolling not available');
+    return { success: false };
+  }
+
+  async getPrinterStatus(): Promise<PrinterStatus> {
+    console.warn('Web: getPrinterStatus not available');
+    return {
+      printerId: '',
+      responding: false,
+      online: false,
+      coverOpen: false,
+      paperOut: false,
+      paperNearEnd: false,
+      drawerOpen: false,
+      error: false,
+      canPrint: false,
+    };
+  }
 }